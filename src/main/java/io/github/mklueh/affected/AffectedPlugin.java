@@ -2,11 +2,20 @@ package io.github.mklueh.affected;
 
 import io.github.mklueh.affected.configuration.AffectedConfiguration;
 import io.github.mklueh.affected.configuration.ArgumentsExtractor;
+import io.github.mklueh.affected.providers.ChangedFilesProvider;
+import io.github.mklueh.affected.providers.ProjectDependencyProvider;
+import io.github.mklueh.affected.replay.AffectedReplay;
+import io.github.mklueh.affected.settings.AffectedSettingsPlugin;
+import io.github.mklueh.affected.settings.ProjectGraph;
 import io.github.mklueh.affected.utils.Extension;
+import io.github.mklueh.affected.watch.AffectedWatcher;
 import lombok.experimental.ExtensionMethod;
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
 import org.gradle.api.Task;
+import org.gradle.api.plugins.ExtraPropertiesExtension;
+
+import java.io.File;
 
 /**
  *
@@ -29,13 +38,42 @@ public class AffectedPlugin implements Plugin<Project> {
 
         Task task = project.getTasks().register("affected").get();
 
+        project.getTasks().register("affectedWatch", watchTask -> {
+            watchTask.setDescription("Watches the project directories and runs the target on projects affected by each change");
+            watchTask.doLast(t -> new AffectedWatcher(project, configuration).watch());
+        });
+
+        project.getTasks().register("affectedReplay", replayTask -> {
+            replayTask.setDescription("Computes the affected projects of past commits and reports their number and computation time");
+            replayTask.doLast(t -> new AffectedReplay(project, configuration).replay());
+        });
+
+        //keeps the project graph of the settings plugin up to date whenever all projects are configured
+        project.getGradle().projectsEvaluated(g -> saveProjectGraph(project, configuration));
+
         if (false && Extension.hasBothRunCommands(project)) {
             throw new IllegalArgumentException("You may either use run or runCommandLine, not both");
         }
 
         if (Extension.isAffectedPluginEnabled(project)) {
+            //git runs while the projects are configured
+            ChangedFilesProvider.prefetch(project, configuration);
             AffectedTaskRunner.configureAndRun(project, task, configuration);
-        } else System.out.println("affected plugin: disabled");
+        } else {
+            System.out.println("affected plugin: disabled");
+            AffectedTaskRunner.configureDisabled(project, task, configuration);
+        }
+
+    }
+
+    private void saveProjectGraph(Project project, AffectedConfiguration configuration) {
+        ExtraPropertiesExtension extraProperties = project.getGradle().getExtensions().getExtraProperties();
+
+        if (!extraProperties.has(AffectedSettingsPlugin.PROJECT_GRAPH_TO_UPDATE)) {
+            return;
+        }
 
+        File graphFile = new File((String) extraProperties.get(AffectedSettingsPlugin.PROJECT_GRAPH_TO_UPDATE));
+        ProjectGraph.create(project, new ProjectDependencyProvider(project, configuration)).save(graphFile);
     }
 }
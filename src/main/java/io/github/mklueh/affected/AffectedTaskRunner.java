@@ -1,20 +1,38 @@
 package io.github.mklueh.affected;
 
+import io.github.mklueh.affected.cache.CacheKeyProvider;
+import io.github.mklueh.affected.cache.ComputationCache;
 import io.github.mklueh.affected.configuration.*;
+import io.github.mklueh.affected.decision.Decision;
+import io.github.mklueh.affected.decision.DecisionReason;
+import io.github.mklueh.affected.decision.DecisionTable;
+import io.github.mklueh.affected.execution.CommandLineExecutor;
+import io.github.mklueh.affected.providers.BuildScriptDependencyExtractor;
 import io.github.mklueh.affected.providers.ChangedFilesProvider;
 import io.github.mklueh.affected.providers.ProjectDependencyProvider;
+import io.github.mklueh.affected.providers.PseudoProjectProvider;
+import io.github.mklueh.affected.providers.catalog.VersionCatalogChangesProvider;
+import io.github.mklueh.affected.providers.fingerprint.FingerprintProvider;
+import io.github.mklueh.affected.providers.git.GitUtil;
+import io.github.mklueh.affected.providers.git.LastSuccessfulCommits;
+import io.github.mklueh.affected.providers.git.SparseCheckoutPatterns;
+import io.github.mklueh.affected.testselection.TestSelection;
 import io.github.mklueh.affected.utils.Extension;
+import io.github.mklueh.affected.utils.JsonWriter;
 import io.github.mklueh.affected.utils.LogUtil;
-import io.github.mklueh.affected.utils.LoggingOutputStream;
 import lombok.SneakyThrows;
-import org.apache.commons.exec.CommandLine;
-import org.apache.commons.exec.DefaultExecutor;
-import org.apache.commons.exec.PumpStreamHandler;
 import org.gradle.api.Project;
 import org.gradle.api.Task;
 import org.gradle.api.logging.Logger;
+import org.gradle.api.tasks.Exec;
 
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -23,13 +41,24 @@ import java.util.stream.Stream;
  */
 public class AffectedTaskRunner {
 
+    private static final long DEFAULT_CACHE_MAX_SIZE = 10 * 1024 * 1024;
+
     private final Logger logger;
     private final Project rootProject;
     private final Task affectedTask;
     private AffectedProjectConfiguration extension;
     private final AffectedConfiguration configuration;
+    private final CommandLineExecutor commandLineExecutor;
+
+    private boolean queryOnly = false;
+
+    private volatile boolean affectedTaskScheduled = false;
 
-    private boolean affectsAll = false;
+    //the target tasks by target and project in DIRECT_EXECUTION, whose state tells after the build if they succeeded
+    private final Map<String, Map<Project, Task>> targetTasksByTarget = new ConcurrentHashMap<>();
+
+    //the projects whose targets succeeded in COMMAND_LINE_EXECUTION by target
+    private final Map<String, Set<Project>> commandLineSucceededProjects = new ConcurrentHashMap<>();
 
     // may run if affected
     private Set<Project> allowedToRunProjects = new HashSet<>();
@@ -40,45 +69,296 @@ public class AffectedTaskRunner {
     //never run, affected or not - but dependents still will
     private Set<Project> neverRunProjects = new HashSet<>();
 
-    private Set<Project> affectedProjects = new HashSet<>();
+    //the names of the projects and pseudo projects that may run and never run
+    private Set<String> allowedToRunNames = new HashSet<>();
+    private Set<String> neverRunNames = new HashSet<>();
+
+    //the affected projects by the configured patterns, shared by all targets without patterns of their own
+    private AffectedProjects affectedProjects = new AffectedProjects();
+
+    //the affected projects of targets with their own patterns
+    private Map<String, AffectedProjects> targetAffectedProjects = new HashMap<>();
+
+    //dependent projects by directly affected projects, so targets with the same changed projects share one traversal
+    private final Map<Set<Project>, Map<Project, Project>> dependentAffectedProjectsCache = new HashMap<>();
+
+    //projects by changed file, shared by all targets
+    private final Map<File, Set<Project>> changedFileProjects = new HashMap<>();
+
+    //projects affected by a changed version catalog, empty if it affects all projects
+    private final Map<String, Optional<Map<Project, String>>> changedVersionCatalogProjects = new HashMap<>();
+
+    //cache keys by target and project
+    private Map<String, Map<Project, String>> cacheKeys = new HashMap<>();
+
+    //published once after evaluation and only read afterwards, possibly from parallel workers
+    private volatile Map<String, DecisionTable> decisionTables = Collections.emptyMap();
+
+    //the decisions of the pseudo projects by name, which run their command once for all targets
+    private volatile DecisionTable pseudoProjectDecisions = new DecisionTable(Collections.emptyMap());
+
+    private ComputationCache computationCache;
+
+    private FingerprintProvider fingerprintProvider;
+
+    private ProjectDependencyProvider projectDependencyProvider;
+
+    private PseudoProjectProvider pseudoProjectProvider;
 
     private AffectedTaskRunner(Project rootProject, Task affectedTask, AffectedConfiguration configuration) {
         this.rootProject = rootProject;
         this.logger = rootProject.getLogger();
         this.configuration = configuration;
         this.affectedTask = affectedTask;
+        this.commandLineExecutor = new CommandLineExecutor(rootProject, configuration);
     }
 
     public static void configureAndRun(Project project, Task task, AffectedConfiguration configuration) {
         AffectedTaskRunner affectedTaskRunner = new AffectedTaskRunner(project, task, configuration);
 
+        Optional<String> queryFormat = ArgumentsExtractor.getQueryParameter(project);
+        if (queryFormat.isPresent()) {
+            //only the affected projects are evaluated, target tasks are neither looked up nor configured
+            project.getGradle().projectsEvaluated(g -> affectedTaskRunner.query(queryFormat.get()));
+            return;
+        }
+
         var executionMode = ConfigurationLoader.getExecutionMode(configuration, project);
 
         if (executionMode.equals(ExecutionMode.DIRECT_EXECUTION)) {
             affectedTaskRunner.configureTargetTasksForProjects();
+            affectedTaskRunner.configurePseudoProjectTasks();
         }
 
+        registerExplainTask(project, affectedTaskRunner);
+
         //pure evaluation that enabled or disables the previously configured target tasks
         project.getGradle().projectsEvaluated(g -> affectedTaskRunner.afterEvaluate(executionMode));
+
+        //other tasks like affectedExplain or help must not record anything
+        project.getGradle().getTaskGraph().whenReady(graph -> affectedTaskRunner.affectedTaskScheduled = graph.hasTask(task));
+
+        affectedTaskRunner.recordLastSuccessfulCommit();
+    }
+
+    /**
+     * Registers the explain task of a build with the affected plugin disabled, which reports every project as skipped
+     */
+    public static void configureDisabled(Project project, Task task, AffectedConfiguration configuration) {
+        registerExplainTask(project, new AffectedTaskRunner(project, task, configuration));
+    }
+
+    private static void registerExplainTask(Project project, AffectedTaskRunner affectedTaskRunner) {
+        project.getTasks().register("affectedExplain", explainTask -> {
+            explainTask.setDescription("Explains why the target runs or is skipped, for all projects or the one given by -P" + Arguments.EXPLAIN);
+            explainTask.doLast(t -> affectedTaskRunner.explain());
+        });
+    }
+
+    /**
+     * Records the compared commit as the last successful one of the target, once a build running the affected task succeeded
+     */
+    private void recordLastSuccessfulCommit() {
+        Project project = getRootProject();
+
+        //the detection mode is only configured once the build scripts have been evaluated
+        project.getGradle().buildFinished(result -> {
+            if (result.getFailure() != null || !affectedTaskScheduled || !isAffectedPluginEnabled()
+                    || DetectionMode.GIT != ConfigurationLoader.getDetectionMode(configuration, project)) {
+                return;
+            }
+
+            File gitRoot = GitUtil.getGitRootDir(project);
+            if (gitRoot != null) {
+                new LastSuccessfulCommits(gitRoot, project.getProjectDir(), logger)
+                        .record(GitUtil.getCommitId(project), ConfigurationLoader.getTarget(configuration, project));
+            }
+        });
     }
 
     private void afterEvaluate(ExecutionMode executionMode) {
         evaluateAffectedProjects();
 
-        if (executionMode.equals(ExecutionMode.COMMAND_LINE_EXECUTION)) {
+        Map<String, DecisionTable> tables = new LinkedHashMap<>();
+        for (String target : getTargets()) {
+            AffectedProjects affected = getAffectedProjects(target);
+            Map<Project, Decision> decisions = getRootProject().getAllprojects().stream()
+                    .collect(Collectors.toMap(Function.identity(), p -> decide(affected, p)));
+            skipProjectsWithCachedSuccess(target, decisions);
+            tables.put(target, createDecisionTable(target, decisions));
+        }
+        decisionTables = tables;
+        pseudoProjectDecisions = createPseudoProjectDecisionTable();
+
+        //other tasks like affectedExplain only need the decisions
+        if (executionMode.equals(ExecutionMode.COMMAND_LINE_EXECUTION) && isAffectedTaskRequested()) {
             commandLineRunProjects();
         }
     }
 
+    private boolean isAffectedTaskRequested() {
+        return getRootProject().getGradle().getStartParameter().getTaskNames().stream()
+                .anyMatch(name -> name.equals(affectedTask.getName()) || name.equals(affectedTask.getPath()));
+    }
+
+    /**
+     * Writes the affected projects to the query output file or stdout
+     */
+    @SneakyThrows
+    private void query(String format) {
+        boolean sparseCheckout = "sparse-checkout".equalsIgnoreCase(format);
+        if (!"json".equalsIgnoreCase(format) && !sparseCheckout) {
+            throw new IllegalArgumentException(String.format("affected plugin: unsupported query format %s, only json and sparse-checkout are supported", format));
+        }
+
+        queryOnly = true;
+        evaluateAffectedProjects();
+
+        String result = sparseCheckout
+                ? String.join(System.lineSeparator(), createSparseCheckoutDirectories())
+                : JsonWriter.toJson(createQueryResult());
+        Optional<String> output = ArgumentsExtractor.extractParameterValue(rootProject, Arguments.QUERY_OUTPUT);
+
+        if (output.isPresent()) {
+            File outputFile = rootProject.file(output.get());
+            Files.createDirectories(outputFile.getAbsoluteFile().getParentFile().toPath());
+            Files.writeString(outputFile.toPath(), result + System.lineSeparator(), StandardCharsets.UTF_8);
+            logger.lifecycle("affected plugin: query result written to {}", outputFile);
+        } else {
+            System.out.println(result);
+        }
+    }
+
+    /**
+     * Finds the directories needed to build the projects affected for any target
+     */
+    private List<String> createSparseCheckoutDirectories() {
+        Project project = getRootProject();
+        File gitRoot = GitUtil.getGitRootDir(project);
+
+        if (gitRoot == null) {
+            throw new IllegalStateException("affected plugin: a sparse checkout requires a git repository");
+        }
+
+        Set<Project> projects = new HashSet<>(alwaysRunProjects);
+        for (String target : getTargets()) {
+            AffectedProjects affected = getAffectedProjects(target);
+            if (affected.affectsAll) {
+                projects.addAll(project.getAllprojects());
+            } else {
+                projects.addAll(affected.directlyAffectedProjects.keySet());
+                projects.addAll(affected.dependentAffectedProjects.keySet());
+            }
+        }
+
+        //the affected pseudo projects and the projects they use
+        Set<File> pseudoProjectDirs = new HashSet<>();
+        for (PseudoProject pseudoProject : getPseudoProjectProvider().getPseudoProjects()) {
+            if (findPseudoProjectAffected(affectedProjects, pseudoProject.getName()).isPresent()) {
+                pseudoProjectDirs.add(getPseudoProjectProvider().getDirectory(pseudoProject));
+                pseudoProject.getDependencies().forEach(dependency -> projects.add(project.project(dependency)));
+            }
+        }
+
+        return SparseCheckoutPatterns.create(project, gitRoot, configuration, projects, pseudoProjectDirs,
+                getProjectDependencyProvider()::getDependencies, getProjectDependencyProvider()::getTaskInputs);
+    }
+
+    private Map<String, Object> createQueryResult() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("changesDetected", affectedProjects.changesDetected);
+        result.put("affectsAll", affectedProjects.affectsAll);
+        result.put("projects", createQueryEntries(affectedProjects));
+
+        if (!getPseudoProjectProvider().isEmpty()) {
+            result.put("pseudoProjects", createPseudoProjectQueryEntries(affectedProjects));
+        }
+
+        //only targets with their own patterns can differ from the projects above
+        if (!targetAffectedProjects.isEmpty()) {
+            Map<String, Object> targets = new LinkedHashMap<>();
+            getTargets().forEach(target -> targets.put(target, createQueryEntries(getAffectedProjects(target))));
+            result.put("targets", targets);
+        }
+
+        return result;
+    }
+
+    private List<Object> createQueryEntries(AffectedProjects affected) {
+        Path projectDir = getRootProject().getProjectDir().toPath();
+        Map<String, Object> projects = new TreeMap<>();
+
+        if (affected.affectsAll) {
+            getRootProject().getAllprojects().forEach(p -> projects.put(p.getPath(),
+                    createQueryEntry(projectDir, p, DecisionReason.ALL_AFFECTED, affected.affectsAllCause)));
+        } else {
+            affected.dependentAffectedProjects.forEach((p, cause) -> projects.put(p.getPath(),
+                    createQueryEntry(projectDir, p, DecisionReason.DEPENDENT_AFFECTED, cause.getPath())));
+            affected.directlyAffectedProjects.forEach((p, cause) -> projects.put(p.getPath(),
+                    createQueryEntry(projectDir, p, DecisionReason.DIRECTLY_AFFECTED, cause)));
+        }
+
+        return new ArrayList<>(projects.values());
+    }
+
+    private List<Object> createPseudoProjectQueryEntries(AffectedProjects affected) {
+        List<Object> entries = new ArrayList<>();
+
+        for (PseudoProject pseudoProject : getPseudoProjectProvider().getPseudoProjects()) {
+            Optional<Decision> decision = findPseudoProjectAffected(affected, pseudoProject.getName());
+            if (decision.isEmpty()) {
+                continue;
+            }
+
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("name", pseudoProject.getName());
+            entry.put("directory", pseudoProject.getDirectory());
+            entry.put("command", pseudoProject.getCommand());
+            entry.put("reason", decision.get().getReason().name());
+            entry.put("cause", decision.get().getCause());
+            entries.add(entry);
+        }
+
+        return entries;
+    }
+
+    private Map<String, Object> createQueryEntry(Path rootDir, Project project, DecisionReason reason, String cause) {
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("path", project.getPath());
+        entry.put("projectDir", rootDir.relativize(project.getProjectDir().toPath()).toString().replace(File.separatorChar, '/'));
+        entry.put("reason", reason.name());
+        entry.put("cause", cause);
+        return entry;
+    }
+
     /**
      * TODO rename
      */
     private void commandLineRunProjects() {
+        //one process per project running all of its targets
+        Map<Project, List<String>> targetsByProject = new LinkedHashMap<>();
         for (Project project : rootProject.getAllprojects()) {
-            if (shouldProjectRun(project)) {
-                runProjectViaCommandLine(project);
+            List<String> targets = getTargets().stream()
+                    .filter(target -> shouldProjectRun(target, project))
+                    .collect(Collectors.toList());
+
+            if (!targets.isEmpty()) {
+                targetsByProject.put(project, targets);
             }
         }
+
+        Map<PseudoProject, File> pseudoProjectDirs = new LinkedHashMap<>();
+        for (PseudoProject pseudoProject : getPseudoProjectProvider().getPseudoProjects()) {
+            if (pseudoProjectDecisions.shouldRun(pseudoProject.getName())) {
+                pseudoProjectDirs.put(pseudoProject, getPseudoProjectProvider().getDirectory(pseudoProject));
+            }
+        }
+
+        commandLineExecutor.runAll(targetsByProject, pseudoProjectDirs,
+                project -> targetsByProject.get(project).forEach(target -> {
+                    commandLineSucceededProjects.computeIfAbsent(target, t -> ConcurrentHashMap.newKeySet()).add(project);
+                    recordSuccess(target, project);
+                }));
     }
 
     /**
@@ -86,6 +366,13 @@ public class AffectedTaskRunner {
      * Testability
      */
     private void configureTargetTasksForProjects() {
+        //after the task instead of a task action, which up to date and from cache targets do not run
+        rootProject.getGradle().getTaskGraph().afterTask(task -> targetTasksByTarget.forEach((target, targetTasks) -> {
+            if (targetTasks.get(task.getProject()) == task && hasTargetTaskSucceeded(target, task)) {
+                recordSuccess(target, task.getProject());
+            }
+        }));
+
         for (Project project : rootProject.getAllprojects()) {
 
             AffectedProjectConfiguration extension = project.getExtensions()
@@ -95,96 +382,222 @@ public class AffectedTaskRunner {
 
             project.afterEvaluate(p -> {
 
-                Task targetTask = p.getTasks().findByPath(resolvePathToTargetTask(p));
+                Map<String, Task> targetTasks = new LinkedHashMap<>();
+                for (String target : getTargets()) {
+                    Task targetTask = p.getTasks().findByPath(resolvePathToTargetTask(p, target));
 
-                if (targetTask == null) throw new RuntimeException("affected plugin called without target task");
+                    if (targetTask == null) throw new RuntimeException("affected plugin called without target task");
 
-                logger.lifecycle(targetTask.getPath());
+                    logger.lifecycle(targetTask.getPath());
+                    targetTasks.put(target, targetTask);
+                }
 
                 if (!extension.getEnabled().getOrElse(true)) {
                     logger.lifecycle("affected plugin: disabled for " + p.getName());
                     return;
                 }
 
-                //is it a problem that it depends on multiple tasks at the same time?
-                //make targetTask run after changedProjectsTask
-                affectedTask.dependsOn(targetTask);
+                targetTasks.forEach((target, targetTask) -> {
+                    targetTasksByTarget.computeIfAbsent(target, t -> new ConcurrentHashMap<>()).put(p, targetTask);
+
+                    //is it a problem that it depends on multiple tasks at the same time?
+                    //make targetTask run after changedProjectsTask
+                    affectedTask.dependsOn(targetTask);
+
+                    //conditionally enable / disable the specific project's task
+                    targetTask.onlyIf(t -> shouldProjectRun(target, p));
+                });
 
-                //conditionally enable / disable the specific project's task
-                targetTask.onlyIf(t -> shouldProjectRun(p));
+                if (ConfigurationLoader.isTestSelectionEnabled(configuration, p)) {
+                    TestSelection.configure(p, () -> targetTasks.keySet().stream().anyMatch(target -> shouldProjectRun(target, p)));
+                }
             });
         }
     }
 
-    @SuppressWarnings("RedundantIfStatement")
-    private boolean shouldProjectRun(Project p) {
+    /**
+     * Registers a task per pseudo project that runs its command if the pseudo project is affected,
+     * after the targets of the projects it depends on
+     */
+    private void configurePseudoProjectTasks() {
+        rootProject.afterEvaluate(p -> {
+            for (PseudoProject pseudoProject : getPseudoProjectProvider().getPseudoProjects()) {
+                String name = pseudoProject.getName();
+                String taskName = "affected" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+
+                affectedTask.dependsOn(p.getTasks().register(taskName, Exec.class, exec -> {
+                    exec.setDescription("Runs the command of the pseudo project " + name + " if it is affected");
+                    exec.setWorkingDir(getPseudoProjectProvider().getDirectory(pseudoProject));
+                    exec.commandLine(pseudoProject.getCommand());
+                    exec.onlyIf(t -> pseudoProjectDecisions.shouldRun(name));
+
+                    for (String dependency : pseudoProject.getDependencies()) {
+                        getTargets().forEach(target -> exec.mustRunAfter(resolvePathToTargetTask(p.project(dependency), target)));
+                    }
+                }));
+            }
+        });
+    }
+
+    private boolean shouldProjectRun(String target, Project p) {
+        DecisionTable decisionTable = decisionTables.get(target);
+        return decisionTable != null && decisionTable.shouldRun(p.getPath());
+    }
+
+    private Decision decide(AffectedProjects affected, Project p) {
+        if (!isAffectedPluginEnabled()) {
+            return new Decision(false, DecisionReason.PLUGIN_DISABLED);
+        }
+
+        if (!affected.changesDetected) {
+            return new Decision(false, DecisionReason.NO_CHANGES);
+        }
 
         //preventing conditions
         //negative list
         if (neverRunProjects.contains(p)) {
-            logger.lifecycle("affected plugin: " + p.getName() + " is marked as 'never run'");
-            return false;
+            return new Decision(false, DecisionReason.NEVER_RUN);
         }
 
         //positive list - if !never run && !allowed, not running. Never run higher order than allowed
         if (!allowedToRunProjects.contains(p)) {
-            logger.lifecycle("affected plugin: " + p.getName() + " is not allowed to run");
-            return false;
+            return new Decision(false, DecisionReason.NOT_ALLOWED);
         }
 
-        if (affectsAll) {
-            logger.lifecycle("affected plugin: all projects are affected");
-            return true;
+        if (affected.affectsAll) {
+            return new Decision(true, DecisionReason.ALL_AFFECTED, affected.affectsAllCause);
         }
 
         if (alwaysRunProjects.contains(p)) {
-            logger.lifecycle("affected plugin: " + p.getName() + " is marked as 'always run'");
-            return true;
+            return new Decision(true, DecisionReason.ALWAYS_RUN);
         }
 
-        if (affectedProjects.contains(p)) {
-            logger.lifecycle("affected plugin: " + p.getName() + " is affected");
-            return true;
+        if (affected.directlyAffectedProjects.containsKey(p)) {
+            return new Decision(true, DecisionReason.DIRECTLY_AFFECTED, affected.directlyAffectedProjects.get(p));
         }
 
-        return false;
+        if (affected.dependentAffectedProjects.containsKey(p)) {
+            return new Decision(true, DecisionReason.DEPENDENT_AFFECTED, affected.dependentAffectedProjects.get(p).getPath());
+        }
+
+        return new Decision(false, DecisionReason.NOT_AFFECTED);
     }
 
-    @SneakyThrows
-    private void runProjectViaCommandLine(Project affected) {
-        if (ConfigurationLoader.dryRun(configuration, affected)) return;
+    private Decision decidePseudoProject(AffectedProjects affected, String name) {
+        if (!isAffectedPluginEnabled()) {
+            return new Decision(false, DecisionReason.PLUGIN_DISABLED);
+        }
 
-        String commandLineArgs = Extension.getCommandLineArgs(affected);
+        if (!affected.changesDetected) {
+            return new Decision(false, DecisionReason.NO_CHANGES);
+        }
 
-        rootProject.getLogger().lifecycle("args: " + commandLineArgs);
+        if (neverRunNames.contains(name)) {
+            return new Decision(false, DecisionReason.NEVER_RUN);
+        }
 
-        String commandLine = String.format("%s %s %s", getGradleWrapper(), resolvePathToTargetTask(affected), commandLineArgs);
+        if (!allowedToRunNames.contains(name)) {
+            return new Decision(false, DecisionReason.NOT_ALLOWED);
+        }
 
-        rootProject.getLogger().lifecycle("Running {}", commandLine);
+        return findPseudoProjectAffected(affected, name).orElse(new Decision(false, DecisionReason.NOT_AFFECTED));
+    }
 
-        LoggingOutputStream stdout = new LoggingOutputStream(rootProject.getLogger()::lifecycle);
-        LoggingOutputStream stderr = new LoggingOutputStream(rootProject.getLogger()::error);
-        //We use Apache Commons Exec because we do not want to re-invent the wheel as ProcessBuilder hangs if the output or error buffer is full
-        DefaultExecutor exec = new DefaultExecutor();
-        exec.setStreamHandler(new PumpStreamHandler(stdout, stderr));
-        exec.setWorkingDirectory(rootProject.getRootProject().getProjectDir());
-        int exitValue = exec.execute(CommandLine.parse(commandLine));
+    /**
+     * Finds out why the pseudo project is affected, regardless of the projects allowed to run
+     *
+     * @return the running decision or empty if the pseudo project is not affected
+     */
+    private Optional<Decision> findPseudoProjectAffected(AffectedProjects affected, String name) {
+        if (affected.affectsAll) {
+            return Optional.of(new Decision(true, DecisionReason.ALL_AFFECTED, affected.affectsAllCause));
+        }
+
+        if (affected.directlyAffectedPseudoProjects.containsKey(name)) {
+            return Optional.of(new Decision(true, DecisionReason.DIRECTLY_AFFECTED, affected.directlyAffectedPseudoProjects.get(name)));
+        }
 
-        if (exitValue != 0) {
-            throw new IllegalStateException("Executing command failed");
+        if (affected.dependentAffectedPseudoProjects.containsKey(name)) {
+            return Optional.of(new Decision(true, DecisionReason.DEPENDENT_AFFECTED, affected.dependentAffectedPseudoProjects.get(name)));
         }
+
+        return Optional.empty();
     }
 
-    private String getGradleWrapper() {
-        if (System.getProperty("os.name").startsWith("Windows")) {
-            return "gradlew.bat";
-        } else {
-            return "./gradlew";
+    /**
+     * Decides the pseudo projects from the changes shared by all targets, their command runs once
+     */
+    private DecisionTable createPseudoProjectDecisionTable() {
+        Map<String, Decision> decisions = getPseudoProjectProvider().getPseudoProjects().stream()
+                .collect(Collectors.toMap(PseudoProject::getName, p -> decidePseudoProject(affectedProjects, p.getName())));
+        DecisionTable decisionTable = new DecisionTable(decisions);
+
+        if (!decisions.isEmpty()) {
+            logger.lifecycle("affected plugin: {} of {} pseudo projects will run", decisionTable.countRunning(), decisions.size());
+
+            if (LogUtil.shouldLog(configuration)) {
+                decisionTable.getDecisions().forEach((name, decision) -> logger.lifecycle("affected plugin: {} {}", name, decision));
+            }
+        }
+
+        return decisionTable;
+    }
+
+    private DecisionTable createDecisionTable(String target, Map<Project, Decision> decisions) {
+        DecisionTable decisionTable = new DecisionTable(decisions.entrySet().stream()
+                .collect(Collectors.toMap(e -> e.getKey().getPath(), Map.Entry::getValue)));
+
+        logger.lifecycle("affected plugin: {} of {} projects will run {}", decisionTable.countRunning(), decisions.size(), target);
+
+        if (LogUtil.shouldLog(configuration)) {
+            decisionTable.getDecisions().forEach((path, decision) -> logger.lifecycle("affected plugin: {} {}", path, decision));
+        }
+
+        return decisionTable;
+    }
+
+    /**
+     * Prints the decision of the project given by the explain argument or of all projects, for every target
+     */
+    private void explain() {
+        Optional<String> projectPath = ArgumentsExtractor.extractParameterValue(rootProject, Arguments.EXPLAIN);
+
+        if (!isAffectedPluginEnabled()) {
+            Decision decision = new Decision(false, DecisionReason.PLUGIN_DISABLED);
+            projectPath.map(List::of)
+                    .orElseGet(() -> getRootProject().getAllprojects().stream().map(Project::getPath).collect(Collectors.toList()))
+                    .forEach(path -> logger.lifecycle("{}: {}", path, decision));
+            return;
+        }
+        Optional<Decision> pseudoProjectDecision = projectPath.map(pseudoProjectDecisions::get);
+
+        if (pseudoProjectDecision.isPresent()) {
+            logger.lifecycle("{}: {}", projectPath.get(), pseudoProjectDecision.get());
+            return;
+        }
+
+        decisionTables.forEach((target, decisionTable) -> {
+            if (decisionTables.size() > 1) {
+                logger.lifecycle("{}:", target);
+            }
+
+            if (projectPath.isPresent()) {
+                Decision decision = decisionTable.get(projectPath.get());
+                logger.lifecycle("{}: {}", projectPath.get(), decision == null ? "unknown project" : decision);
+            } else {
+                decisionTable.getDecisions().forEach((path, decision) -> logger.lifecycle("{}: {}", path, decision));
+            }
+        });
+
+        if (projectPath.isEmpty() && !pseudoProjectDecisions.getDecisions().isEmpty()) {
+            logger.lifecycle("pseudo projects:");
+            pseudoProjectDecisions.getDecisions().forEach((name, decision) -> logger.lifecycle("{}: {}", name, decision));
         }
     }
 
     /**
      * TODO naming - what do we do here?
+     * The changed files are determined once, targets with their own patterns only filter them differently
      */
     private void evaluateAffectedProjects() {
         Project project = getRootProject();
@@ -195,52 +608,315 @@ public class AffectedTaskRunner {
             return;
         }
 
+        if (DetectionMode.FINGERPRINT == ConfigurationLoader.getDetectionMode(configuration, project)) {
+            affectedProjects = findAffectedProjectsByFingerprint(project);
+            if (affectedProjects.changesDetected) {
+                determineEligibleProjectsBasedOnProperties(project);
+            }
+            return;
+        }
+
         ChangedFilesProvider changedFilesProvider = new ChangedFilesProvider(project, configuration);
         changedFilesProvider.printDebug();
+        affectedProjects = findAffectedProjectsByGit(project, changedFilesProvider);
 
-        if (!changedFilesProvider.hasFileChanges()) {
-            logger.lifecycle("affected plugin: no changed files detected");
+        //the patterns of a target only remove changes or affect all, so there is nothing left to determine without changes
+        if (!affectedProjects.changesDetected) {
             return;
         }
 
-        //must be called before termination if all affected
         determineEligibleProjectsBasedOnProperties(project);
 
-        if (changedFilesProvider.allProjectsAffected()) {
-            affectsAll = true;
-            logger.lifecycle("affected plugin: all projects are affected");
-            return;
+        for (String target : getTargets()) {
+            if (ChangedFilesProvider.hasTargetPatterns(configuration, target)) {
+                logger.lifecycle("affected plugin: applying the patterns of {}", target);
+                targetAffectedProjects.put(target, findAffectedProjectsByGit(project, changedFilesProvider.forTarget(target)));
+            }
         }
+    }
 
-        ProjectDependencyProvider projectDependencyProvider = new ProjectDependencyProvider(project, configuration);
-        projectDependencyProvider.printDebug();
+    private AffectedProjects getAffectedProjects(String target) {
+        return targetAffectedProjects.getOrDefault(target, affectedProjects);
+    }
 
-        Set<Project> directlyAffectedProjects = findAffectedProjects(changedFilesProvider, projectDependencyProvider);
+    /**
+     * Adds the dependents of the directly affected projects, which is done once for the same directly affected projects
+     */
+    private void findDependentAffectedProjects(Project project, AffectedProjects affected) {
+        ProjectDependencyProvider projectDependencyProvider = getProjectDependencyProvider();
 
-        //TODO which file affects which projects?
         if (LogUtil.shouldLog(configuration)) {
-            logger.lifecycle("affected plugin: directly affected projects: {}", directlyAffectedProjects);
+            logger.lifecycle("affected plugin: directly affected projects: {}", affected.directlyAffectedProjects);
         }
 
-        Set<Project> dependentAffectedProjects = new HashSet<>();
         AffectedMode affectedMode = ConfigurationLoader.getAffectedMode(configuration, project);
 
         if (AffectedMode.INCLUDE_DEPENDENTS == affectedMode) {
-            dependentAffectedProjects.addAll(projectDependencyProvider.getAffectedDependentProjects(directlyAffectedProjects));
+            affected.dependentAffectedProjects = dependentAffectedProjectsCache.computeIfAbsent(Set.copyOf(affected.directlyAffectedProjects.keySet()),
+                    projectDependencyProvider::getAffectedDependentProjectsWithCause);
             if (LogUtil.shouldLog(configuration)) {
-                logger.lifecycle("affected plugin: dependent affected Projects: {}", dependentAffectedProjects);
+                logger.lifecycle("affected plugin: dependent affected Projects: {}", affected.dependentAffectedProjects.keySet());
+            }
+
+            Set<String> affectedPaths = Stream.concat(affected.directlyAffectedProjects.keySet().stream(), affected.dependentAffectedProjects.keySet().stream())
+                    .map(Project::getPath)
+                    .collect(Collectors.toSet());
+            affected.dependentAffectedPseudoProjects = getPseudoProjectProvider().findDependentPseudoProjects(affectedPaths);
+        }
+    }
+
+    private PseudoProjectProvider getPseudoProjectProvider() {
+        if (pseudoProjectProvider == null) {
+            pseudoProjectProvider = new PseudoProjectProvider(getRootProject(), configuration);
+        }
+        return pseudoProjectProvider;
+    }
+
+    private ProjectDependencyProvider getProjectDependencyProvider() {
+        if (projectDependencyProvider == null) {
+            Project project = getRootProject();
+            projectDependencyProvider = new ProjectDependencyProvider(project, configuration);
+            projectDependencyProvider.printDebug();
+
+            if (ConfigurationLoader.isStaticDependencyGraphEnabled(configuration, project)) {
+                reportStaticDependencyGraphDisagreements(project, projectDependencyProvider);
+            }
+        }
+        return projectDependencyProvider;
+    }
+
+    /**
+     * Compares the dependencies found in the build scripts with the configured model
+     */
+    private void reportStaticDependencyGraphDisagreements(Project project, ProjectDependencyProvider projectDependencyProvider) {
+        Map<String, File> projectDirs = project.getAllprojects().stream()
+                .collect(Collectors.toMap(Project::getPath, Project::getProjectDir));
+        Map<String, Set<String>> configured = project.getAllprojects().stream()
+                .collect(Collectors.toMap(Project::getPath, p -> projectDependencyProvider.getDependencies(p).stream()
+                        .map(Project::getPath)
+                        .collect(Collectors.toSet())));
+
+        List<String> disagreements = BuildScriptDependencyExtractor.findDisagreements(
+                new BuildScriptDependencyExtractor(projectDirs).extract(), configured);
+
+        logger.lifecycle("affected plugin: build script dependencies disagree with the configured model in {} places", disagreements.size());
+        disagreements.forEach(d -> logger.lifecycle("affected plugin: {}", d));
+    }
+
+    /**
+     * Finds the projects containing files changed according to git and their dependents
+     *
+     * @return the affected projects
+     */
+    private AffectedProjects findAffectedProjectsByGit(Project project, ChangedFilesProvider changedFilesProvider) {
+        AffectedProjects affected = new AffectedProjects();
+
+        if (!changedFilesProvider.hasFileChanges()) {
+            logger.lifecycle("affected plugin: no changed files detected");
+            return affected;
+        }
+
+        affected.changesDetected = true;
+
+        if (changedFilesProvider.allProjectsAffected()) {
+            affected.affectsAll = true;
+            affected.affectsAllCause = changedFilesProvider.getAffectsAllFile();
+            logger.lifecycle("affected plugin: all projects are affected");
+            return affected;
+        }
+
+        findDirectlyAffectedProjects(changedFilesProvider, affected);
+
+        for (String versionCatalog : changedFilesProvider.getChangedVersionCatalogs()) {
+            Optional<Map<Project, String>> catalogAffected = changedVersionCatalogProjects.computeIfAbsent(versionCatalog,
+                    catalog -> new VersionCatalogChangesProvider(project, configuration).findAffectedProjects(catalog));
+
+            if (catalogAffected.isEmpty()) {
+                affected.affectsAll = true;
+                affected.affectsAllCause = versionCatalog;
+                logger.lifecycle("affected plugin: all projects are affected");
+                return affected;
+            }
+
+            catalogAffected.get().forEach(affected.directlyAffectedProjects::putIfAbsent);
+        }
+
+        findDependentAffectedProjects(project, affected);
+        return affected;
+    }
+
+    /**
+     * Finds the projects whose content fingerprint changed since the last successful run and their dependents
+     *
+     * @return the affected projects
+     */
+    private AffectedProjects findAffectedProjectsByFingerprint(Project project) {
+        AffectedProjects affected = new AffectedProjects();
+        FingerprintProvider fingerprintProvider = getFingerprintProvider();
+        fingerprintProvider.printDebug();
+
+        //the fingerprints of the projects whose targets succeeded become the reference for the next run,
+        //changed projects that did not run keep their previous fingerprint, a query does not run anything
+        if (!queryOnly) {
+            project.getGradle().buildFinished(result -> {
+                if (affectedTaskScheduled) {
+                    fingerprintProvider.saveManifest(this::isScheduled, this::haveTargetsSucceeded);
+                }
+            });
+        }
+
+        if (!fingerprintProvider.hasChanges()) {
+            logger.lifecycle("affected plugin: no changed projects detected");
+            return affected;
+        }
+
+        affected.changesDetected = true;
+
+        if (fingerprintProvider.allProjectsAffected()) {
+            affected.affectsAll = true;
+            affected.affectsAllCause = "a changed fingerprint of the affects all files";
+            logger.lifecycle("affected plugin: all projects are affected");
+            return affected;
+        }
+
+        affected.directlyAffectedProjects = fingerprintProvider.getChangedProjects().stream()
+                .collect(Collectors.toMap(Function.identity(), p -> "a changed fingerprint"));
+
+        findDependentAffectedProjects(project, affected);
+        return affected;
+    }
+
+    /**
+     * Looks up the projects that are going to run in the computation cache and skips those that already succeeded
+     * with the same target, inputs and upstream inputs
+     */
+    private void skipProjectsWithCachedSuccess(String target, Map<Project, Decision> decisions) {
+        Project project = getRootProject();
+
+        if (!isAffectedPluginEnabled() || !ConfigurationLoader.isComputationCacheEnabled(configuration, project)) {
+            return;
+        }
+
+        Set<Project> runningProjects = decisions.entrySet().stream()
+                .filter(e -> e.getValue().isRun())
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet());
+
+        if (runningProjects.isEmpty()) {
+            return;
+        }
+
+        if (computationCache == null) {
+            File cacheDirectory = Optional.ofNullable(configuration.getComputationCacheDirectory().getOrNull())
+                    .map(project::file)
+                    .orElse(new File(project.getGradle().getGradleUserHomeDir(), "caches/affected-plugin/computation"));
+            computationCache = new ComputationCache(cacheDirectory, configuration.getComputationCacheMaxSize().getOrElse(DEFAULT_CACHE_MAX_SIZE), logger);
+
+            //once all parallel workers recorded their successes
+            project.getGradle().buildFinished(result -> computationCache.evict());
+        }
+
+        CacheKeyProvider cacheKeyProvider = new CacheKeyProvider(
+                target,
+                Extension.getCommandLineArgs(project),
+                getFingerprintProvider().getFingerprints(),
+                getProjectDependencyProvider(),
+                project);
+
+        Map<Project, String> targetCacheKeys = cacheKeys.computeIfAbsent(target, t -> new HashMap<>());
+        int cached = 0;
+        for (Project runningProject : runningProjects) {
+            String key = cacheKeyProvider.getKey(runningProject);
+            targetCacheKeys.put(runningProject, key);
+
+            if (computationCache.isSuccessful(key)) {
+                decisions.put(runningProject, new Decision(false, DecisionReason.ALREADY_SUCCEEDED));
+                cached++;
             }
         }
 
-        affectedProjects = Stream.concat(directlyAffectedProjects.stream(), dependentAffectedProjects.stream()).collect(Collectors.toSet());
+        logger.lifecycle("affected plugin: {} of {} projects already succeeded with the same inputs for {}", cached, runningProjects.size(), target);
     }
 
-    private Set<Project> findAffectedProjects(ChangedFilesProvider changedFilesProvider, ProjectDependencyProvider projectDependencyProvider) {
-        return changedFilesProvider
-                .getChangedFiles()
-                .stream()
-                .map(projectDependencyProvider::findProjectOfChangedFile)
-                .filter(Objects::nonNull).collect(Collectors.toSet());
+    /**
+     * Returns whether any target of the project was scheduled to run in this build
+     */
+    private boolean isScheduled(Project project) {
+        return getTargets().stream()
+                .map(decisionTables::get)
+                .filter(Objects::nonNull)
+                .map(decisionTable -> decisionTable.get(project.getPath()))
+                .anyMatch(decision -> decision != null && decision.isRun());
+    }
+
+    /**
+     * Returns whether every target of the project succeeded in this build or already succeeded with the same inputs before
+     */
+    private boolean haveTargetsSucceeded(Project project) {
+        return getTargets().stream().allMatch(target -> {
+            DecisionTable decisionTable = decisionTables.get(target);
+            Decision decision = decisionTable == null ? null : decisionTable.get(project.getPath());
+
+            if (decision == null) {
+                return false;
+            }
+            if (decision.getReason() == DecisionReason.ALREADY_SUCCEEDED) {
+                return true;
+            }
+
+            Task targetTask = targetTasksByTarget.getOrDefault(target, Collections.emptyMap()).get(project);
+            if (targetTask != null) {
+                return hasTargetTaskSucceeded(target, targetTask);
+            }
+
+            return commandLineSucceededProjects.getOrDefault(target, Collections.emptySet()).contains(project);
+        });
+    }
+
+    /**
+     * Returns whether the target task was allowed to run and succeeded, including up to date, from cache and no source
+     */
+    private boolean hasTargetTaskSucceeded(String target, Task targetTask) {
+        return shouldProjectRun(target, targetTask.getProject())
+                && targetTask.getState().getExecuted() && targetTask.getState().getFailure() == null;
+    }
+
+    private void recordSuccess(String target, Project project) {
+        String key = cacheKeys.getOrDefault(target, Collections.emptyMap()).get(project);
+
+        if (computationCache != null && key != null) {
+            computationCache.recordSuccess(key, project.getPath());
+        }
+    }
+
+    private FingerprintProvider getFingerprintProvider() {
+        if (fingerprintProvider == null) {
+            fingerprintProvider = new FingerprintProvider(getRootProject(), configuration);
+        }
+        return fingerprintProvider;
+    }
+
+    /**
+     * Maps the changed files to the projects or the pseudo projects containing them
+     */
+    private void findDirectlyAffectedProjects(ChangedFilesProvider changedFilesProvider, AffectedProjects affected) {
+        Path projectDir = getRootProject().getProjectDir().toPath();
+
+        for (File changedFile : changedFilesProvider.getChangedFiles()) {
+            String cause = projectDir.relativize(changedFile.toPath()).toString();
+            Optional<PseudoProject> pseudoProject = getPseudoProjectProvider().findPseudoProjectOfChangedFile(changedFile);
+
+            if (pseudoProject.isPresent()) {
+                affected.directlyAffectedPseudoProjects.putIfAbsent(pseudoProject.get().getName(), cause);
+                continue;
+            }
+
+            //every target sees a subset of the same changed files
+            Set<Project> projects = changedFileProjects.computeIfAbsent(changedFile, getProjectDependencyProvider()::findProjectsOfChangedFile);
+            for (Project project : projects) {
+                affected.directlyAffectedProjects.putIfAbsent(project, cause);
+            }
+        }
     }
 
     /**
@@ -255,6 +931,7 @@ public class AffectedTaskRunner {
         //should never run
         Set<String> notAllowedToRun = configuration.getNeverRunProjects().getOrElse(Collections.emptySet());
         neverRunProjects = allProjects.stream().filter(p -> notAllowedToRun.contains(p.getName())).collect(Collectors.toSet());
+        neverRunNames = notAllowedToRun;
 
         logger.lifecycle("affected plugin: never run projects size - [" + neverRunProjects
                 .stream().map(Project::getName).collect(Collectors.joining(",")) + "]");
@@ -264,6 +941,7 @@ public class AffectedTaskRunner {
                 .orElse(configuration.getAllowedToRun().getOrElse(Collections.emptySet()));
 
         allowedToRunProjects = allProjects.stream().filter(p -> allowedToRun.contains(p.getName())).collect(Collectors.toSet());
+        allowedToRunNames = allowedToRun;
         logger.lifecycle("affected plugin: allowedToRun - " + allowedToRunProjects.stream().map(Project::getName)
                 .collect(Collectors.joining(",")));
 
@@ -283,19 +961,43 @@ public class AffectedTaskRunner {
     }
 
 
-    private String resolvePathToTargetTask(Project project) {
-        String targetTask = ArgumentsExtractor.getTargetTaskParameter(project)
-                .orElse(configuration.getTarget().getOrNull());
+    private List<String> getTargets() {
+        return ConfigurationLoader.getTargets(configuration, getRootProject());
+    }
+
+    private String resolvePathToTargetTask(Project project, String target) {
+        String targetTask = ConfigurationLoader.resolvePathToTargetTask(project, target);
 
         if (LogUtil.shouldLog(configuration)) {
             logger.lifecycle("targetTask: {}", targetTask);
         }
 
-        if (Extension.isRootProject(project)) {
-            return String.format(":%s", targetTask);
-        }
+        return targetTask;
+    }
+
+    /**
+     * The projects affected by the changes as seen by one or more targets
+     */
+    private static class AffectedProjects {
+
+        private boolean changesDetected = false;
+
+        private boolean affectsAll = false;
+
+        //the file or reason that affects all projects
+        private String affectsAllCause;
+
+        //directly affected projects and the changed file that affected them
+        private Map<Project, String> directlyAffectedProjects = new HashMap<>();
+
+        //dependent affected projects and the upstream project they are affected through
+        private Map<Project, Project> dependentAffectedProjects = new HashMap<>();
+
+        //directly affected pseudo projects by name and the changed file that affected them
+        private Map<String, String> directlyAffectedPseudoProjects = new HashMap<>();
 
-        return String.format("%s:%s", project.getPath(), targetTask);
+        //pseudo projects by name depending on an affected project and the path of that project
+        private Map<String, String> dependentAffectedPseudoProjects = new HashMap<>();
     }
 
 }
@@ -0,0 +1,267 @@
+package io.github.mklueh.affected.cache;
+
+import io.github.mklueh.affected.providers.git.GitUtil;
+import io.github.mklueh.affected.utils.HashUtil;
+import lombok.SneakyThrows;
+import org.gradle.StartParameter;
+import org.gradle.api.Project;
+import org.gradle.api.initialization.IncludedBuild;
+import org.gradle.api.invocation.Gradle;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Shares the project dependency graph and the output of git commands between the builds of a Gradle daemon,
+ * so consecutive affected runs do not scan the project model or run git again if nothing changed.
+ * <p>
+ * Gradle creates a new service instance for every build, the state is kept in a static field, which lives as long
+ * as the daemon keeps the plugin class loader. Every entry is keyed by a fingerprint of what it depends on:
+ * the build scripts, the scripts they apply, the build logic, init scripts and -P and -D properties for the graph,
+ * the refs of the repository for git commands.
+ * Environment variables and scripts applied from computed paths are not part of the key.
+ */
+public abstract class AffectedStateService implements BuildService<BuildServiceParameters.None> {
+
+    public static final String NAME = "affectedState";
+
+    //enough for the states of a few builds the daemon switches between
+    private static final int MAX_STATES = 16;
+
+    private static final Map<String, Object> STATES = new ConcurrentHashMap<>();
+
+    private static final String[] BUILD_FILES = {"settings.gradle", "settings.gradle.kts", "gradle.properties"};
+
+    //apply from: 'x.gradle', apply(from = "x.gradle.kts") and apply from: file('x.gradle')
+    private static final Pattern APPLY_FROM = Pattern.compile(
+            "\\bapply\\s*\\(?\\s*from\\s*[:=]\\s*(?:file\\s*\\(\\s*)?[\"']([^\"'$]+)[\"']");
+
+    //the properties of the plugin do not change the project model
+    private static final String PLUGIN_PROPERTY_PREFIX = "affected.";
+
+    //fingerprints are calculated once per build, the files can not change in between without another build
+    private final Map<File, String> buildFingerprints = new ConcurrentHashMap<>();
+
+    //computations started in the background before the projects are configured, by what they depend on
+    private final Map<String, CompletableFuture<Object>> prefetched = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the service of the build
+     *
+     * @return the service, registered on first use
+     */
+    public static AffectedStateService get(Gradle gradle) {
+        return gradle.getSharedServices().registerIfAbsent(NAME, AffectedStateService.class, spec -> {
+        }).get();
+    }
+
+    /**
+     * Gets the project dependency edges, computed only if the build scripts or the build logic changed since they were cached
+     *
+     * @param compute computes the configurations by dependency and dependent project path
+     * @return the cached or computed edges
+     */
+    @SuppressWarnings("unchecked")
+    public Map<List<String>, Set<String>> getDependencyEdges(Project rootProject, Supplier<Map<List<String>, Set<String>>> compute) {
+        String key = "graph:" + rootProject.getProjectDir() + ":" + getBuildFingerprint(rootProject);
+        return (Map<List<String>, Set<String>>) getOrCompute(key, compute::get);
+    }
+
+    /**
+     * Runs a git command that only depends on refs and commits, not on the working tree, like a diff between commits.
+     * The output is reused as long as no ref of the repository moved
+     *
+     * @return the lines the command printed to stdout
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> runGitCommand(File gitRoot, String command) {
+        String key = "git:" + gitRoot + ":" + command + ":" + getRefsFingerprint(gitRoot);
+        return (List<String>) getOrCompute(key, () -> List.copyOf(GitUtil.runGitCommand(gitRoot, command)));
+    }
+
+    /**
+     * Starts a computation that does not depend on the configuration of the projects in the background,
+     * so it runs while the projects are configured
+     *
+     * @param key what the computation depends on, it is only used if taken with the same key
+     */
+    public void prefetch(String key, Supplier<Object> compute) {
+        prefetched.computeIfAbsent(key, k -> CompletableFuture.supplyAsync(compute));
+    }
+
+    /**
+     * Waits for a computation started by {@link #prefetch(String, Supplier)}
+     *
+     * @return the result or an empty optional if none was started with the key or it failed, then it has to be computed again
+     */
+    public Optional<Object> takePrefetched(String key, Logger logger) {
+        CompletableFuture<Object> future = prefetched.remove(key);
+
+        if (future == null) {
+            return Optional.empty();
+        }
+
+        try {
+            return Optional.of(future.join());
+        } catch (CompletionException e) {
+            logger.info("affected plugin: background computation failed, computing again: {}", e.getCause().getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private static Object getOrCompute(String key, Supplier<Object> compute) {
+        Object state = STATES.get(key);
+        if (state != null) {
+            return state;
+        }
+
+        state = compute.get();
+        if (STATES.size() >= MAX_STATES) {
+            //outdated entries are never used again, so there is nothing worth keeping
+            STATES.clear();
+        }
+        STATES.put(key, state);
+        return state;
+    }
+
+    /**
+     * Gets the fingerprint of what configures the projects: their directories, build scripts and applied scripts,
+     * the settings, buildSrc, included builds, init scripts and the -P and -D properties
+     *
+     * @return the fingerprint, calculated once per build
+     */
+    public String getBuildFingerprint(Project rootProject) {
+        return buildFingerprints.computeIfAbsent(rootProject.getProjectDir(), dir -> {
+            StringBuilder stamps = new StringBuilder();
+
+            rootProject.getAllprojects().stream()
+                    .sorted(Comparator.comparing(Project::getPath))
+                    .forEach(p -> {
+                        stamps.append(p.getPath()).append('=').append(p.getProjectDir()).append(':')
+                                .append(getStamp(p.getBuildFile().toPath())).append('\n');
+                        appendAppliedScriptStamps(p.getProjectDir().toPath(), p.getBuildFile().toPath(), new HashSet<>(), stamps);
+                    });
+
+            StartParameter startParameter = rootProject.getGradle().getStartParameter();
+            new TreeMap<>(startParameter.getProjectProperties()).forEach((name, value) -> {
+                if (!name.startsWith(PLUGIN_PROPERTY_PREFIX)) {
+                    stamps.append("-P").append(name).append('=').append(value).append('\n');
+                }
+            });
+            new TreeMap<>(startParameter.getSystemPropertiesArgs())
+                    .forEach((name, value) -> stamps.append("-D").append(name).append('=').append(value).append('\n'));
+            startParameter.getAllInitScripts()
+                    .forEach(script -> stamps.append(script).append(':').append(getStamp(script.toPath())).append('\n'));
+
+            Stream.of(BUILD_FILES).forEach(file -> stamps.append(file).append(':').append(getStamp(dir.toPath().resolve(file))).append('\n'));
+
+            //scripts applied from the gradle directory, version catalogs, buildSrc and included builds
+            List<Path> buildLogicDirs = Stream.concat(Stream.of(new File(dir, "gradle"), new File(dir, "buildSrc")),
+                            rootProject.getGradle().getIncludedBuilds().stream().map(IncludedBuild::getProjectDir))
+                    .map(File::toPath)
+                    .collect(Collectors.toList());
+            buildLogicDirs.forEach(buildLogicDir -> appendStamps(buildLogicDir, stamps));
+
+            return HashUtil.sha256(stamps.toString());
+        });
+    }
+
+    //scripts applied with apply from, also by other applied scripts, which Gradle resolves relative to the project directory
+    private static void appendAppliedScriptStamps(Path projectDir, Path script, Set<Path> visited, StringBuilder stamps) {
+        String content = read(script);
+        Matcher matcher = APPLY_FROM.matcher(content);
+
+        while (matcher.find()) {
+            String location = matcher.group(1);
+            //scripts applied from a URL are cached by Gradle
+            if (location.contains("://")) {
+                continue;
+            }
+
+            Path applied = projectDir.resolve(location).normalize();
+            if (visited.add(applied)) {
+                stamps.append(applied).append(':').append(getStamp(applied)).append('\n');
+                appendAppliedScriptStamps(projectDir, applied, visited, stamps);
+            }
+        }
+    }
+
+    //the HEAD and every ref file, which change whenever a commit, fetch, checkout or gc moves a ref
+    private static String getRefsFingerprint(File gitRoot) {
+        Path gitDir = GitUtil.getGitDir(gitRoot).toPath();
+        StringBuilder stamps = new StringBuilder();
+        stamps.append(read(gitDir.resolve("HEAD"))).append('\n');
+        stamps.append(getStamp(gitDir.resolve("packed-refs"))).append('\n');
+        appendStamps(gitDir.resolve("refs"), stamps);
+        return HashUtil.sha256(stamps.toString());
+    }
+
+    @SneakyThrows
+    private static void appendStamps(Path dir, StringBuilder stamps) {
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+
+        Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path d, BasicFileAttributes attrs) {
+                String name = d.getFileName().toString();
+                if (!d.equals(dir) && (name.equals("build") || name.startsWith("."))) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                stamps.append(file).append(':').append(attrs.size()).append(':').append(attrs.lastModifiedTime().toMillis()).append('\n');
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static String getStamp(Path file) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return attributes.size() + ":" + attributes.lastModifiedTime().toMillis();
+        } catch (IOException e) {
+            return "missing";
+        }
+    }
+
+    private static String read(Path file) {
+        try {
+            return Files.readString(file);
+        } catch (IOException e) {
+            return "missing";
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package io.github.mklueh.affected.cache;
+
+import io.github.mklueh.affected.providers.ProjectDependencyProvider;
+import io.github.mklueh.affected.providers.fingerprint.FingerprintProvider;
+import io.github.mklueh.affected.utils.HashUtil;
+import org.gradle.api.Project;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Calculates the computation cache keys of projects.
+ * <p>
+ * The key combines the target task and its arguments with a Merkle fingerprint of the project,
+ * which is the hash of the project's own input fingerprint and the Merkle fingerprints of all its project dependencies.
+ * A change anywhere upstream therefore results in a different key.
+ * The fingerprints of the affects all files and of the build logic, like the root build script, the version catalogs,
+ * buildSrc and included builds, are part of every key, as no project declares a dependency on them.
+ */
+public class CacheKeyProvider {
+
+    private final String target;
+    private final String arguments;
+    private final Map<String, String> fingerprints;
+    private final Function<String, Set<String>> dependencies;
+    private final String sharedFingerprint;
+    private final Map<String, String> merkleFingerprints = new HashMap<>();
+
+    public CacheKeyProvider(String target, String arguments, Map<String, String> fingerprints,
+                            ProjectDependencyProvider projectDependencyProvider, Project rootProject) {
+        this(target, arguments, fingerprints, path -> projectDependencyProvider.getDependencies(rootProject.project(path)).stream()
+                .map(Project::getPath)
+                .collect(Collectors.toSet()));
+    }
+
+    /**
+     * @param fingerprints the fingerprints by project path, including the affects all and build logic ones
+     * @param dependencies the paths of the projects a project directly depends on
+     */
+    CacheKeyProvider(String target, String arguments, Map<String, String> fingerprints, Function<String, Set<String>> dependencies) {
+        this.target = target;
+        this.arguments = arguments;
+        this.fingerprints = fingerprints;
+        this.dependencies = dependencies;
+        this.sharedFingerprint = fingerprints.getOrDefault(FingerprintProvider.AFFECTS_ALL_KEY, "") + '\n'
+                + fingerprints.getOrDefault(FingerprintProvider.BUILD_LOGIC_KEY, "");
+    }
+
+    /**
+     * Gets the cache key of the target task in the given project
+     *
+     * @return the hex encoded key
+     */
+    public String getKey(Project project) {
+        return getKey(project.getPath());
+    }
+
+    String getKey(String projectPath) {
+        return HashUtil.sha256(target + '\n' + arguments + '\n' + sharedFingerprint + '\n'
+                + getMerkleFingerprint(projectPath, new HashSet<>()));
+    }
+
+    private String getMerkleFingerprint(String projectPath, Set<String> inProgress) {
+        String cached = merkleFingerprints.get(projectPath);
+        if (cached != null) {
+            return cached;
+        }
+
+        String fingerprint = fingerprints.getOrDefault(projectPath, "");
+
+        //a dependency cycle would recurse forever, the project's own fingerprint is enough to break it
+        if (!inProgress.add(projectPath)) {
+            return fingerprint;
+        }
+
+        StringBuilder input = new StringBuilder(projectPath).append('\n').append(fingerprint);
+        dependencies.apply(projectPath).stream()
+                .sorted()
+                .forEach(dependency -> input.append('\n')
+                        .append(dependency)
+                        .append('=')
+                        .append(getMerkleFingerprint(dependency, inProgress)));
+        inProgress.remove(projectPath);
+
+        String merkleFingerprint = HashUtil.sha256(input.toString());
+        merkleFingerprints.put(projectPath, merkleFingerprint);
+        return merkleFingerprint;
+    }
+}
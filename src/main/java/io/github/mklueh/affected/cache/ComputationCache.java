@@ -0,0 +1,121 @@
+package io.github.mklueh.affected.cache;
+
+import lombok.SneakyThrows;
+import org.gradle.api.logging.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed store of successful target executions in a local directory.
+ * <p>
+ * Every entry is a small file named after its key. Entries are written to a temporary file first and then moved,
+ * so concurrent builds on the same machine never see partial entries. The modification time of an entry is updated
+ * on every hit and entries with the oldest modification time are evicted when the directory exceeds its maximum size.
+ * Successes are recorded by the parallel workers of a build, so the eviction only runs once the build finished.
+ */
+public class ComputationCache {
+
+    private static final String ENTRY_SUFFIX = ".success";
+
+    private final Logger logger;
+    private final Path directory;
+    private final long maxSize;
+
+    public ComputationCache(File directory, long maxSize, Logger logger) {
+        this.directory = directory.toPath();
+        this.maxSize = maxSize;
+        this.logger = logger;
+    }
+
+    /**
+     * Returns whether a successful execution was recorded for the key and marks the entry as recently used
+     *
+     * @return true if the key was recorded as successful
+     */
+    public boolean isSuccessful(String key) {
+        Path entry = getEntry(key);
+
+        try {
+            Files.setLastModifiedTime(entry, FileTime.from(Instant.now()));
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        } catch (IOException e) {
+            //not being able to touch the entry only affects the eviction order
+            return Files.exists(entry);
+        }
+    }
+
+    /**
+     * Records a successful execution for the key
+     */
+    @SneakyThrows
+    public void recordSuccess(String key, String description) {
+        Files.createDirectories(directory);
+
+        Path temp = Files.createTempFile(directory, key, ".tmp");
+        Files.writeString(temp, description, StandardCharsets.UTF_8);
+        Files.move(temp, getEntry(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Deletes the least recently used entries until the cache fits into its maximum size
+     */
+    @SneakyThrows
+    public void evict() {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+
+        List<Path> entries;
+        try (Stream<Path> files = Files.list(directory)) {
+            entries = files.filter(f -> f.getFileName().toString().endsWith(ENTRY_SUFFIX))
+                    .sorted(Comparator.comparingLong(ComputationCache::lastModified))
+                    .collect(Collectors.toList());
+        }
+
+        long size = entries.stream().mapToLong(ComputationCache::size).sum();
+
+        for (Path entry : entries) {
+            if (size <= maxSize) {
+                break;
+            }
+            size -= size(entry);
+            //another build may have evicted it already
+            Files.deleteIfExists(entry);
+            logger.debug("affected plugin: evicted {} from the computation cache", entry.getFileName());
+        }
+    }
+
+    private Path getEntry(String key) {
+        return directory.resolve(key + ENTRY_SUFFIX);
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static long size(Path path) {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
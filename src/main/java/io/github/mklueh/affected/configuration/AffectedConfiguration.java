@@ -1,8 +1,11 @@
 package io.github.mklueh.affected.configuration;
 
+import org.gradle.api.Action;
+import org.gradle.api.provider.MapProperty;
 import org.gradle.api.provider.Property;
 import org.gradle.api.provider.SetProperty;
 
+import java.util.Set;
 import java.util.regex.Pattern;
 
 /**
@@ -21,8 +24,10 @@ public interface AffectedConfiguration {
 
     /**
      * The task to run on the changed projects and those affected by the change (If chosen).
+     * Several tasks can be given separated by commas, like test,javadoc, which are evaluated from the same changes
+     * and run in one build.
      *
-     * @return the task name
+     * @return the task name or names
      */
     Property<String> getTarget();
 
@@ -64,6 +69,21 @@ public interface AffectedConfiguration {
      */
     SetProperty<Pattern> getIgnoredRegex();
 
+    /**
+     * Additional regexes per target that filter the changes only for that target,
+     * like documentation that should not run test but javadoc.
+     *
+     * @return the compiled patterns by target name
+     */
+    MapProperty<String, Set<Pattern>> getTargetIgnoredRegex();
+
+    /**
+     * Additional regexes per target that mark a change as affecting all projects only for that target.
+     *
+     * @return the compiled patterns by target name
+     */
+    MapProperty<String, Set<Pattern>> getTargetAffectsAllRegex();
+
     /**
      * The mode in which the plugin should work.
      * Either {@link AffectedMode#ONLY_DIRECTLY} which means the task is only run for projects affected by changes files directly
@@ -74,10 +94,174 @@ public interface AffectedConfiguration {
      */
     Property<AffectedMode> getAffectedMode();
 
+    /**
+     * How far changes propagate to dependents in {@link AffectedMode#INCLUDE_DEPENDENTS}.
+     * Either {@link PropagationMode#TRANSITIVE}, {@link PropagationMode#COMPILE} or {@link PropagationMode#RUNTIME}
+     * Defaults to {@link PropagationMode#TRANSITIVE}
+     *
+     * @return the propagation mode
+     */
+    Property<PropagationMode> getPropagationMode();
+
 
     /**
      *
      */
     Property<ExecutionMode> getExecutionMode();
 
+    /**
+     * How changes are detected.
+     * Either {@link DetectionMode#GIT} which uses the git diff or {@link DetectionMode#FINGERPRINT} which compares
+     * content fingerprints of the projects with the ones saved by the last successful run.
+     * Defaults to {@link DetectionMode#GIT}
+     *
+     * @return which detection mode the plugin uses
+     */
+    Property<DetectionMode> getDetectionMode();
+
+    /**
+     * The file the project fingerprints of the last successful run are saved to in {@link DetectionMode#FINGERPRINT}.
+     * Defaults to .gradle/affected/fingerprints.properties in the root project
+     *
+     * @return the manifest file path
+     */
+    Property<String> getFingerprintManifest();
+
+    /**
+     * If successful target executions should be recorded in the local computation cache, and projects skipped
+     * whose target, inputs and upstream project inputs have already been recorded as successful.
+     * Defaults to false
+     *
+     * @return whether the computation cache is used
+     */
+    Property<Boolean> getComputationCache();
+
+    /**
+     * The directory of the computation cache.
+     * Defaults to caches/affected-plugin/computation in the Gradle user home
+     *
+     * @return the cache directory path
+     */
+    Property<String> getComputationCacheDirectory();
+
+    /**
+     * The size in bytes the computation cache may grow to before the least recently used entries are evicted.
+     * Defaults to 10 MB
+     *
+     * @return the maximum cache size
+     */
+    Property<Long> getComputationCacheMaxSize();
+
+    /**
+     * The number of bytes of output kept per project in {@link ExecutionMode#COMMAND_LINE_EXECUTION},
+     * older output is dropped. Defaults to 1 MB
+     *
+     * @return the output buffer size
+     */
+    Property<Integer> getOutputBufferSize();
+
+    /**
+     * The number of output lines printed for projects that succeeded in {@link ExecutionMode#COMMAND_LINE_EXECUTION}.
+     * Failed projects always print all buffered output. Defaults to printing everything
+     *
+     * @return the number of lines to print for successful projects
+     */
+    Property<Integer> getSuccessOutputTail();
+
+    /**
+     * The number of seconds a project may run in {@link ExecutionMode#COMMAND_LINE_EXECUTION} before its process tree is killed.
+     * Defaults to no timeout
+     *
+     * @return the timeout per project in seconds
+     */
+    Property<Long> getProjectTimeout();
+
+    /**
+     * The number of seconds all projects together may run in {@link ExecutionMode#COMMAND_LINE_EXECUTION}.
+     * Running projects are killed and queued projects cancelled once it elapsed. Defaults to no timeout
+     *
+     * @return the total timeout in seconds
+     */
+    Property<Long> getTotalTimeout();
+
+    /**
+     * The number of projects run at the same time in {@link ExecutionMode#COMMAND_LINE_EXECUTION}. Defaults to 1
+     *
+     * @return the number of concurrently running projects
+     */
+    Property<Integer> getParallelism();
+
+    /**
+     * What happens after a project failed in {@link ExecutionMode#COMMAND_LINE_EXECUTION}.
+     * Either {@link FailurePolicy#FAIL_FAST} which cancels the remaining projects
+     * or {@link FailurePolicy#CONTINUE} which runs them and reports all failures at the end.
+     * Defaults to {@link FailurePolicy#FAIL_FAST}
+     *
+     * @return the failure policy
+     */
+    Property<FailurePolicy> getFailurePolicy();
+
+    /**
+     * If the project dependencies should also be extracted from the build scripts without configuring the projects.
+     * The settings plugin uses them if the cached project graph is missing or stale,
+     * the project plugin reports where they disagree with the configured model. Defaults to false
+     *
+     * @return whether the build script dependencies are extracted
+     */
+    Property<Boolean> getStaticDependencyGraph();
+
+    /**
+     * The version catalog files, relative to the root project, that are compared alias by alias instead of file by file.
+     * A change to them only affects the projects using a changed library or plugin, and their dependents.
+     *
+     * @return the version catalog paths, like gradle/libs.versions.toml
+     */
+    SetProperty<String> getVersionCatalogs();
+
+    /**
+     * If changed files outside of any project directory should affect the projects whose target task, or the tasks
+     * it depends on, declare them as inputs, instead of the root project. The index of the task inputs is cached
+     * in .gradle/affected and rebuilt if the target or a build script changed. Defaults to false
+     *
+     * @return whether shared files are mapped by task inputs
+     */
+    Property<Boolean> getTaskInputOwnership();
+
+    /**
+     * If the test tasks of running projects should only run the test classes referencing a class that changed since
+     * their last successful run, found by scanning the compiled classes. Only used in {@link ExecutionMode#DIRECT_EXECUTION}.
+     * Defaults to false
+     *
+     * @return whether tests are selected by class dependencies
+     */
+    Property<Boolean> getTestSelection();
+
+    /**
+     * If changed Java, Kotlin and Groovy sources should be ignored when the changes only touch whitespace, comments
+     * or the order of imports, found by comparing both versions of the file after normalization.
+     * Not used in {@link DetectionMode#FINGERPRINT}. Defaults to false
+     *
+     * @return whether cosmetic source changes are ignored
+     */
+    Property<Boolean> getIgnoreCosmeticChanges();
+
+    /**
+     * Directories that are not Gradle projects but have a command of their own, like npm, Python or Terraform projects.
+     * Changed files inside them only affect the pseudo project instead of the Gradle project containing them,
+     * and a pseudo project is also affected through the Gradle projects it depends on.
+     *
+     * @return the pseudo projects by name
+     */
+    MapProperty<String, PseudoProject> getPseudoProjects();
+
+    /**
+     * Adds or configures a pseudo project, like
+     * pseudoProject('frontend') { command = ['npm', 'test']; dependencies = [':api'] }
+     */
+    default void pseudoProject(String name, Action<? super PseudoProject> action) {
+        PseudoProject pseudoProject = getPseudoProjects().getting(name).getOrElse(new PseudoProject(name));
+        action.execute(pseudoProject);
+        getPseudoProjects().put(name, pseudoProject);
+    }
+
 }
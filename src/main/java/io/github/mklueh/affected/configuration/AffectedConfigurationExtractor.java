@@ -15,6 +15,15 @@ public class AffectedConfigurationExtractor {
         return configuration.getAffectedMode().getOrElse(AffectedMode.INCLUDE_DEPENDENTS);
     }
 
+    /**
+     * Gets how far changes propagate to dependents
+     *
+     * @return the configured propagation mode
+     */
+    public static PropagationMode getPropagationMode(AffectedConfiguration configuration) {
+        return configuration.getPropagationMode().getOrElse(PropagationMode.TRANSITIVE);
+    }
+
     /**
      * Returns if the task to runs should be invoked using the commandline instead of using the task onlyIf approach.
      *
@@ -24,4 +33,22 @@ public class AffectedConfigurationExtractor {
         return configuration.getExecutionMode().getOrElse(ExecutionMode.DIRECT_EXECUTION);
     }
 
+    /**
+     * Gets how the plugin should detect changes
+     *
+     * @return the configured detection mode
+     */
+    public static DetectionMode getDetectionMode(AffectedConfiguration configuration) {
+        return configuration.getDetectionMode().getOrElse(DetectionMode.GIT);
+    }
+
+    /**
+     * Gets what happens to the remaining projects after one failed
+     *
+     * @return the configured failure policy
+     */
+    public static FailurePolicy getFailurePolicy(AffectedConfiguration configuration) {
+        return configuration.getFailurePolicy().getOrElse(FailurePolicy.FAIL_FAST);
+    }
+
 }
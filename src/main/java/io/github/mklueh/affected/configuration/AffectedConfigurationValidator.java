@@ -15,10 +15,17 @@ public class AffectedConfigurationValidator {
     public static void validate(AffectedConfiguration configuration, Project rootProject) {
         String taskToRun = configuration.getTarget().getOrNull();
 
-        if (taskToRun == null && ArgumentsExtractor.getTargetTaskParameter(rootProject).isEmpty()) {
+        //a query does not run any target
+        boolean targetRequired = ArgumentsExtractor.getQueryParameter(rootProject).isEmpty();
+
+        if (targetRequired && taskToRun == null && ArgumentsExtractor.getTargetTaskParameter(rootProject).isEmpty()) {
             throw new IllegalArgumentException("changedProjectsTask: target task is required");
-        } else if (taskToRun != null && taskToRun.startsWith(":")) {
-            throw new IllegalArgumentException("changedProjectsTask: target task should not start with :");
+        }
+
+        for (String target : ConfigurationLoader.getTargets(configuration, rootProject)) {
+            if (target.startsWith(":")) {
+                throw new IllegalArgumentException("changedProjectsTask: target task should not start with :");
+            }
         }
 
         Set<String> projectsAlwaysRun = configuration.getAlwaysRunProjects().getOrElse(Collections.emptySet());
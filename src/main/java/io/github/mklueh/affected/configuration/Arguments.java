@@ -32,6 +32,67 @@ public class Arguments {
 
     public static final String AFFECTED_MODE = PREFIX + "affectedMode";
 
+    public static final String PROPAGATION_MODE = PREFIX + "propagationMode";
+
     public static final String COMMANDLINE_ARGS = PREFIX + "args";
 
+    public static final String DETECTION_MODE = PREFIX + "detectionMode";
+
+    public static final String FINGERPRINT_MANIFEST = PREFIX + "fingerprintManifest";
+
+    public static final String COMPUTATION_CACHE = PREFIX + "computationCache";
+
+    public static final String SUCCESS_OUTPUT_TAIL = PREFIX + "successOutputTail";
+
+    public static final String PROJECT_TIMEOUT = PREFIX + "projectTimeout";
+
+    public static final String TOTAL_TIMEOUT = PREFIX + "totalTimeout";
+
+    public static final String PARALLELISM = PREFIX + "parallelism";
+
+    public static final String FAILURE_POLICY = PREFIX + "failurePolicy";
+
+    public static final String STATIC_DEPENDENCY_GRAPH = PREFIX + "staticDependencyGraph";
+
+    public static final String TASK_INPUT_OWNERSHIP = PREFIX + "taskInputOwnership";
+
+    public static final String TEST_SELECTION = PREFIX + "testSelection";
+
+    public static final String IGNORE_COSMETIC_CHANGES = PREFIX + "ignoreCosmeticChanges";
+
+    /**
+     * Only queries the affected projects in the given format (json or sparse-checkout) instead of running the target
+     */
+    public static final String QUERY = PREFIX + "query";
+
+    /**
+     * The file the query result is written to instead of stdout
+     */
+    public static final String QUERY_OUTPUT = PREFIX + "queryOutput";
+
+    /**
+     * The project path the affectedExplain task explains the decision for
+     */
+    public static final String EXPLAIN = PREFIX + "explain";
+
+    /**
+     * Milliseconds without file changes before the watch task re-runs the target
+     */
+    public static final String WATCH_DEBOUNCE = PREFIX + "watchDebounce";
+
+    /**
+     * The number of commits of the first parent history the affectedReplay task computes the affected projects for
+     */
+    public static final String REPLAY_COMMITS = PREFIX + "replayCommits";
+
+    /**
+     * If the affectedReplay task only replays the merge commits of the first parent history
+     */
+    public static final String REPLAY_MERGES = PREFIX + "replayMerges";
+
+    /**
+     * The file the replay report is written to instead of stdout, as CSV if it ends with .csv, as JSON otherwise
+     */
+    public static final String REPLAY_OUTPUT = PREFIX + "replayOutput";
+
 }
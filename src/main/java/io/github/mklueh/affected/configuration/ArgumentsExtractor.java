@@ -33,6 +33,41 @@ public class ArgumentsExtractor {
                 .map(String::trim).collect(Collectors.toSet()));
     }
 
+    /**
+     * Gets the query format from the command line arguments if given
+     *
+     * @return query format
+     */
+    public static Optional<String> getQueryParameter(Project project) {
+        return extractParameterValue(project, QUERY);
+    }
+
+    /**
+     * Gets the debounce window of the watch task from the command line arguments if given
+     *
+     * @return debounce window in milliseconds
+     */
+    public static Optional<Long> getWatchDebounceParameter(Project project) {
+        return extractParameterValue(project, WATCH_DEBOUNCE).map(Long::parseLong);
+    }
+
+    /**
+     * Gets the number of commits to replay from the command line arguments if given
+     *
+     * @return number of commits
+     */
+    public static Optional<Integer> getReplayCommitsParameter(Project project) {
+        return extractParameterValue(project, REPLAY_COMMITS).map(Integer::parseInt);
+    }
+
+    /**
+     * Gets whether only merge commits are replayed from the command line arguments
+     *
+     * @return true if only merge commits are replayed
+     */
+    public static boolean isReplayMergesParameter(Project project) {
+        return extractParameterValue(project, REPLAY_MERGES).map(Boolean::parseBoolean).orElse(false);
+    }
 
     /**
      * Extracts the value of a given CLI parameter
@@ -1,7 +1,13 @@
 package io.github.mklueh.affected.configuration;
 
+import io.github.mklueh.affected.utils.Extension;
 import org.gradle.api.Project;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
 /**
  * Created by Marian at 23.12.2022
  * <p>
@@ -22,6 +28,113 @@ public class ConfigurationLoader {
         return affectedModeByArgument.map(AffectedMode::valueOf).orElse(affectedModeByConfiguration);
     }
 
+    public static PropagationMode getPropagationMode(AffectedConfiguration affectedConfiguration, Project project) {
+        var propagationModeByArgument = ArgumentsExtractor.extractParameterValue(project, Arguments.PROPAGATION_MODE);
+        var propagationModeByConfiguration = AffectedConfigurationExtractor.getPropagationMode(affectedConfiguration);
+        return propagationModeByArgument.map(PropagationMode::valueOf).orElse(propagationModeByConfiguration);
+    }
+
+    public static DetectionMode getDetectionMode(AffectedConfiguration affectedConfiguration, Project project) {
+        var detectionModeByArgument = ArgumentsExtractor.extractParameterValue(project, Arguments.DETECTION_MODE);
+        var detectionModeByConfiguration = AffectedConfigurationExtractor.getDetectionMode(affectedConfiguration);
+        return detectionModeByArgument.map(DetectionMode::valueOf).orElse(detectionModeByConfiguration);
+    }
+
+    public static Optional<String> getFingerprintManifest(AffectedConfiguration affectedConfiguration, Project project) {
+        return ArgumentsExtractor.extractParameterValue(project, Arguments.FINGERPRINT_MANIFEST)
+                .or(() -> Optional.ofNullable(affectedConfiguration.getFingerprintManifest().getOrNull()));
+    }
+
+    public static boolean isComputationCacheEnabled(AffectedConfiguration affectedConfiguration, Project project) {
+        return ArgumentsExtractor.extractParameterValue(project, Arguments.COMPUTATION_CACHE)
+                .map(Boolean::parseBoolean)
+                .orElse(affectedConfiguration.getComputationCache().getOrElse(false));
+    }
+
+    public static boolean isStaticDependencyGraphEnabled(AffectedConfiguration affectedConfiguration, Project project) {
+        return ArgumentsExtractor.extractParameterValue(project, Arguments.STATIC_DEPENDENCY_GRAPH)
+                .map(Boolean::parseBoolean)
+                .orElse(affectedConfiguration.getStaticDependencyGraph().getOrElse(false));
+    }
+
+    public static boolean isTaskInputOwnershipEnabled(AffectedConfiguration affectedConfiguration, Project project) {
+        return ArgumentsExtractor.extractParameterValue(project, Arguments.TASK_INPUT_OWNERSHIP)
+                .map(Boolean::parseBoolean)
+                .orElse(affectedConfiguration.getTaskInputOwnership().getOrElse(false));
+    }
+
+    public static boolean isTestSelectionEnabled(AffectedConfiguration affectedConfiguration, Project project) {
+        return ArgumentsExtractor.extractParameterValue(project, Arguments.TEST_SELECTION)
+                .map(Boolean::parseBoolean)
+                .orElse(affectedConfiguration.getTestSelection().getOrElse(false));
+    }
+
+    public static boolean isIgnoreCosmeticChangesEnabled(AffectedConfiguration affectedConfiguration, Project project) {
+        return ArgumentsExtractor.extractParameterValue(project, Arguments.IGNORE_COSMETIC_CHANGES)
+                .map(Boolean::parseBoolean)
+                .orElse(affectedConfiguration.getIgnoreCosmeticChanges().getOrElse(false));
+    }
+
+    public static int getSuccessOutputTail(AffectedConfiguration affectedConfiguration, Project project) {
+        return ArgumentsExtractor.extractParameterValue(project, Arguments.SUCCESS_OUTPUT_TAIL)
+                .map(Integer::parseInt)
+                .orElse(affectedConfiguration.getSuccessOutputTail().getOrElse(-1));
+    }
+
+    public static long getProjectTimeout(AffectedConfiguration affectedConfiguration, Project project) {
+        return ArgumentsExtractor.extractParameterValue(project, Arguments.PROJECT_TIMEOUT)
+                .map(Long::parseLong)
+                .orElse(affectedConfiguration.getProjectTimeout().getOrElse(-1L));
+    }
+
+    public static long getTotalTimeout(AffectedConfiguration affectedConfiguration, Project project) {
+        return ArgumentsExtractor.extractParameterValue(project, Arguments.TOTAL_TIMEOUT)
+                .map(Long::parseLong)
+                .orElse(affectedConfiguration.getTotalTimeout().getOrElse(-1L));
+    }
+
+    public static int getParallelism(AffectedConfiguration affectedConfiguration, Project project) {
+        return ArgumentsExtractor.extractParameterValue(project, Arguments.PARALLELISM)
+                .map(Integer::parseInt)
+                .orElse(affectedConfiguration.getParallelism().getOrElse(1));
+    }
+
+    public static FailurePolicy getFailurePolicy(AffectedConfiguration affectedConfiguration, Project project) {
+        var failurePolicyByArgument = ArgumentsExtractor.extractParameterValue(project, Arguments.FAILURE_POLICY);
+        var failurePolicyByConfiguration = AffectedConfigurationExtractor.getFailurePolicy(affectedConfiguration);
+        return failurePolicyByArgument.map(FailurePolicy::valueOf).orElse(failurePolicyByConfiguration);
+    }
+
+    public static String getTarget(AffectedConfiguration affectedConfiguration, Project project) {
+        return ArgumentsExtractor.getTargetTaskParameter(project)
+                .orElse(affectedConfiguration.getTarget().getOrNull());
+    }
+
+    /**
+     * Splits the target into its task names, like test,javadoc
+     *
+     * @return the task names in the given order, empty if there is no target
+     */
+    public static List<String> getTargets(AffectedConfiguration affectedConfiguration, Project project) {
+        return Optional.ofNullable(getTarget(affectedConfiguration, project)).stream()
+                .flatMap(target -> Arrays.stream(target.split(",")))
+                .map(String::trim)
+                .filter(target -> !target.isEmpty())
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Resolves the absolute path of the target task within the given project, like :app:test
+     */
+    public static String resolvePathToTargetTask(Project project, String targetTask) {
+        if (Extension.isRootProject(project)) {
+            return String.format(":%s", targetTask);
+        }
+
+        return String.format("%s:%s", project.getPath(), targetTask);
+    }
+
     public static boolean dryRun(AffectedConfiguration affectedConfiguration, Project affected) {
         return false;
     }
@@ -0,0 +1,18 @@
+package io.github.mklueh.affected.configuration;
+
+/**
+ * The ways the plugin can detect what has changed
+ */
+public enum DetectionMode {
+
+    /**
+     * Changed files are determined by git, see {@link io.github.mklueh.affected.providers.git.GitDiffMode}
+     */
+    GIT,
+
+    /**
+     * Changed projects are determined by comparing content fingerprints with the ones of the last successful run,
+     * independent of the git history
+     */
+    FINGERPRINT
+}
@@ -0,0 +1,18 @@
+package io.github.mklueh.affected.configuration;
+
+/**
+ * What happens to the remaining projects after the target failed for one of them in {@link ExecutionMode#COMMAND_LINE_EXECUTION}
+ */
+public enum FailurePolicy {
+
+    /**
+     * The first failure cancels the queued projects and kills the running ones
+     */
+    FAIL_FAST,
+
+    /**
+     * All projects run like with --continue, the failures are reported together at the end
+     */
+    CONTINUE
+
+}
@@ -0,0 +1,45 @@
+package io.github.mklueh.affected.configuration;
+
+import java.util.Set;
+
+/**
+ * How far a change propagates to dependents in {@link AffectedMode#INCLUDE_DEPENDENTS}, based on the configurations
+ * the project dependencies are declared in.
+ * A direct dependent is always affected, the mode decides if the change reaches the dependents of that dependent.
+ */
+public enum PropagationMode {
+
+    /**
+     * Every project dependency passes the change on, no matter how it is declared
+     */
+    TRANSITIVE(null),
+
+    /**
+     * Only dependencies that are part of the dependent's compile classpath for its consumers pass the change on,
+     * like api. A change reached through implementation stops after that project
+     */
+    COMPILE(Set.of("api", "compile")),
+
+    /**
+     * Dependencies that are part of the dependent's runtime classpath for its consumers pass the change on,
+     * like api, implementation and runtimeOnly, but not compileOnly or test dependencies. Suited for integration test targets
+     */
+    RUNTIME(Set.of("api", "implementation", "runtimeOnly", "compile", "runtime"));
+
+    //null if every configuration passes the change on
+    private final Set<String> propagatingConfigurations;
+
+    PropagationMode(Set<String> propagatingConfigurations) {
+        this.propagatingConfigurations = propagatingConfigurations;
+    }
+
+    /**
+     * Whether a dependency declared in one of the configurations passes a change on to the dependents of the dependent
+     *
+     * @param configurations the configuration names the dependency is declared in
+     * @return true if the dependents of the dependent are affected as well
+     */
+    public boolean propagatesThrough(Set<String> configurations) {
+        return propagatingConfigurations == null || configurations.stream().anyMatch(propagatingConfigurations::contains);
+    }
+}
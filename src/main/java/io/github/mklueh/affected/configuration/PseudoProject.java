@@ -0,0 +1,38 @@
+package io.github.mklueh.affected.configuration;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A directory that is not a Gradle project, like an npm, Python or Terraform project, and the command that checks it.
+ * It is affected by changed files inside its directory and by affected Gradle projects it depends on.
+ * The getters and setters are auto-generated by Lombok
+ */
+@Data
+public class PseudoProject {
+
+    private final String name;
+
+    //relative to the root project, the name if not set
+    private String directory;
+
+    //run in the directory, like npm test
+    private List<String> command = new ArrayList<>();
+
+    //the paths of the Gradle projects it uses
+    private Set<String> dependencies = new LinkedHashSet<>();
+
+    /**
+     * Gets the directory relative to the root project
+     *
+     * @return the directory with / separators and without leading or trailing ones
+     */
+    public String getDirectory() {
+        String dir = directory == null ? name : directory;
+        return dir.replace('\\', '/').replaceAll("^/+|/+$", "");
+    }
+}
@@ -0,0 +1,33 @@
+package io.github.mklueh.affected.decision;
+
+import lombok.Data;
+
+/**
+ * The decision whether the target task of a project runs, together with its reason
+ * The getters are auto-generated by Lombok
+ */
+@Data
+public class Decision {
+
+    private final boolean run;
+
+    private final DecisionReason reason;
+
+    //the changed file or upstream project that caused the decision, null if there is none
+    private final String cause;
+
+    public Decision(boolean run, DecisionReason reason) {
+        this(run, reason, null);
+    }
+
+    public Decision(boolean run, DecisionReason reason, String cause) {
+        this.run = run;
+        this.reason = reason;
+        this.cause = cause;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s, %s%s", run ? "runs" : "skipped", reason.getDescription(), cause == null ? "" : " " + cause);
+    }
+}
@@ -0,0 +1,37 @@
+package io.github.mklueh.affected.decision;
+
+/**
+ * Why the target task of a project runs or is skipped
+ */
+public enum DecisionReason {
+
+    PLUGIN_DISABLED("the affected plugin is disabled"),
+
+    NO_CHANGES("no changes were detected"),
+
+    NEVER_RUN("marked as 'never run'"),
+
+    NOT_ALLOWED("not allowed to run"),
+
+    ALREADY_SUCCEEDED("already succeeded with the same inputs"),
+
+    ALL_AFFECTED("all projects are affected by"),
+
+    ALWAYS_RUN("marked as 'always run'"),
+
+    DIRECTLY_AFFECTED("directly affected by"),
+
+    DEPENDENT_AFFECTED("depends on affected project"),
+
+    NOT_AFFECTED("not affected");
+
+    private final String description;
+
+    DecisionReason(String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
@@ -0,0 +1,50 @@
+package io.github.mklueh.affected.decision;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable run or skip decision of every project, keyed by project path.
+ * It is computed once per build after all projects have been evaluated and only read afterwards,
+ * so it can be queried from parallel task workers without any locking.
+ */
+public class DecisionTable {
+
+    private final Map<String, Decision> decisions;
+
+    public DecisionTable(Map<String, Decision> decisions) {
+        this.decisions = Map.copyOf(decisions);
+    }
+
+    /**
+     * Gets the decision of a project
+     *
+     * @return the decision or null if the project is unknown
+     */
+    public Decision get(String projectPath) {
+        return decisions.get(projectPath);
+    }
+
+    /**
+     * Returns whether the target task of the project should run
+     *
+     * @return true if the project is known and should run
+     */
+    public boolean shouldRun(String projectPath) {
+        Decision decision = decisions.get(projectPath);
+        return decision != null && decision.isRun();
+    }
+
+    /**
+     * Gets all decisions sorted by project path
+     *
+     * @return the decisions by project path
+     */
+    public Map<String, Decision> getDecisions() {
+        return new TreeMap<>(decisions);
+    }
+
+    public long countRunning() {
+        return decisions.values().stream().filter(Decision::isRun).count();
+    }
+}
@@ -0,0 +1,275 @@
+package io.github.mklueh.affected.execution;
+
+import io.github.mklueh.affected.configuration.AffectedConfiguration;
+import io.github.mklueh.affected.configuration.ConfigurationLoader;
+import io.github.mklueh.affected.configuration.FailurePolicy;
+import io.github.mklueh.affected.configuration.PseudoProject;
+import io.github.mklueh.affected.utils.Extension;
+import lombok.SneakyThrows;
+import org.apache.commons.exec.CommandLine;
+import org.apache.commons.exec.DefaultExecutor;
+import org.apache.commons.exec.ExecuteException;
+import org.apache.commons.exec.ExecuteWatchdog;
+import org.gradle.api.Project;
+import org.gradle.api.logging.Logger;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Runs the target tasks of projects in separate Gradle processes using the wrapper of the root project.
+ * Killing the Gradle client of a process makes the daemon cancel its build.
+ */
+public class CommandLineExecutor {
+
+    private static final int DEFAULT_OUTPUT_BUFFER_SIZE = 1024 * 1024;
+
+    //shared by all executors, so one thread reads the output of every running child process
+    private static final OutputMultiplexer OUTPUT_MULTIPLEXER = new OutputMultiplexer();
+
+    private final Logger logger;
+    private final Project rootProject;
+    private final AffectedConfiguration configuration;
+
+    public CommandLineExecutor(Project rootProject, AffectedConfiguration configuration) {
+        this.rootProject = rootProject.getRootProject();
+        this.logger = rootProject.getLogger();
+        this.configuration = configuration;
+    }
+
+    /**
+     * Runs all targets of a single project
+     *
+     * @throws IllegalStateException if a target failed or timed out, or the command could not be started
+     */
+    public void run(Project affected) {
+        ProcessTreeWatchdog watchdog = new ProcessTreeWatchdog(toMillis(ConfigurationLoader.getProjectTimeout(configuration, rootProject)), () -> false);
+
+        boolean success;
+        try {
+            success = execute(affected, ConfigurationLoader.getTargets(configuration, rootProject), watchdog);
+        } catch (Exception e) {
+            //like a missing wrapper, which the executor reports as IOException
+            throw new IllegalStateException("Executing command failed: " + e.getMessage(), e);
+        }
+
+        if (!success) {
+            throw new IllegalStateException(watchdog.hasTimedOut() ? "Executing command timed out" : "Executing command failed");
+        }
+    }
+
+    /**
+     * Runs the targets of the projects, one process per project and as many at once as configured, and applies the timeouts and the failure policy.
+     * On {@link FailurePolicy#FAIL_FAST} the first failure cancels the queued projects and kills the running ones,
+     * on {@link FailurePolicy#CONTINUE} all projects run. Once the total timeout elapsed, the remaining projects are cancelled
+     *
+     * @param targetsByProject the targets to run by project
+     * @param onSuccess        called for every project whose targets succeeded
+     * @throws IllegalStateException listing every failed project if at least one failed
+     */
+    public void runAll(Map<Project, List<String>> targetsByProject, Consumer<Project> onSuccess) {
+        runAll(targetsByProject, Collections.emptyMap(), onSuccess);
+    }
+
+    /**
+     * Runs the targets of the projects like {@link #runAll(Map, Consumer)}, and the commands of the pseudo projects
+     * in their directories, queued after the projects and sharing their parallelism, timeouts and failure policy
+     *
+     * @param targetsByProject  the targets to run by project
+     * @param pseudoProjectDirs the pseudo projects to run and their directories
+     * @param onSuccess         called for every project whose targets succeeded
+     * @throws IllegalStateException listing every failed project or pseudo project if at least one failed
+     */
+    @SneakyThrows
+    public void runAll(Map<Project, List<String>> targetsByProject, Map<PseudoProject, File> pseudoProjectDirs, Consumer<Project> onSuccess) {
+        //project paths start with a colon, so they can not clash with the names of pseudo projects
+        Map<String, Predicate<ProcessTreeWatchdog>> jobs = new LinkedHashMap<>();
+        targetsByProject.forEach((project, targets) -> jobs.put(project.getPath(), watchdog -> execute(project, targets, watchdog)));
+        pseudoProjectDirs.forEach((pseudoProject, dir) -> jobs.put(pseudoProject.getName(), watchdog -> execute(pseudoProject, dir, watchdog)));
+
+        long projectTimeout = toMillis(ConfigurationLoader.getProjectTimeout(configuration, rootProject));
+        long totalTimeout = toMillis(ConfigurationLoader.getTotalTimeout(configuration, rootProject));
+        long deadline = totalTimeout == ExecuteWatchdog.INFINITE_TIMEOUT ? Long.MAX_VALUE : System.currentTimeMillis() + totalTimeout;
+        FailurePolicy failurePolicy = ConfigurationLoader.getFailurePolicy(configuration, rootProject);
+        int parallelism = Math.max(1, ConfigurationLoader.getParallelism(configuration, rootProject));
+
+        AtomicBoolean cancelled = new AtomicBoolean();
+        Set<ProcessTreeWatchdog> running = ConcurrentHashMap.newKeySet();
+        Map<String, String> failures = new ConcurrentSkipListMap<>();
+        Set<String> cancelledProjects = new ConcurrentSkipListSet<>();
+        Set<String> succeeded = ConcurrentHashMap.newKeySet();
+
+        Runnable cancel = () -> {
+            cancelled.set(true);
+            running.forEach(ProcessTreeWatchdog::cancel);
+        };
+
+        ExecutorService executorService = Executors.newFixedThreadPool(parallelism);
+        try {
+            for (Map.Entry<String, Predicate<ProcessTreeWatchdog>> entry : jobs.entrySet()) {
+                String name = entry.getKey();
+                executorService.execute(() -> {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (cancelled.get() || remaining <= 0) {
+                        cancelledProjects.add(name);
+                        return;
+                    }
+
+                    //the project may not run longer than the total timeout allows
+                    boolean limitedByTotal = deadline != Long.MAX_VALUE
+                            && (projectTimeout == ExecuteWatchdog.INFINITE_TIMEOUT || remaining < projectTimeout);
+                    ProcessTreeWatchdog watchdog = new ProcessTreeWatchdog(limitedByTotal ? remaining : projectTimeout, cancelled::get);
+
+                    running.add(watchdog);
+                    boolean success;
+                    try {
+                        success = entry.getValue().test(watchdog);
+                    } catch (Exception e) {
+                        //also the IOException of a command that could not be started, like a missing wrapper or npm
+                        logger.error("affected plugin: running {} failed: {}", name, e.getMessage());
+                        success = false;
+                    } finally {
+                        running.remove(watchdog);
+                    }
+
+                    if (success) {
+                        succeeded.add(name);
+                    } else if (watchdog.hasTimedOut() && limitedByTotal) {
+                        failures.put(name, "total timeout elapsed");
+                        cancel.run();
+                    } else if (watchdog.hasTimedOut()) {
+                        failures.put(name, "timed out");
+                        if (failurePolicy == FailurePolicy.FAIL_FAST) cancel.run();
+                    } else if (cancelled.get()) {
+                        //killed because another project failed
+                        cancelledProjects.add(name);
+                    } else {
+                        failures.put(name, "failed");
+                        if (failurePolicy == FailurePolicy.FAIL_FAST) cancel.run();
+                    }
+                });
+            }
+        } finally {
+            executorService.shutdown();
+            while (!executorService.awaitTermination(1, TimeUnit.MINUTES)) {
+                logger.info("affected plugin: waiting for {} running projects", running.size());
+            }
+        }
+
+        //in the given order, the computation cache is not shared between threads
+        targetsByProject.keySet().stream().filter(project -> succeeded.contains(project.getPath())).forEach(onSuccess);
+
+        logger.lifecycle("affected plugin: {} projects succeeded, {} failed, {} cancelled",
+                succeeded.size(), failures.size(), cancelledProjects.size());
+
+        if (!cancelledProjects.isEmpty()) {
+            logger.lifecycle("affected plugin: cancelled {}", cancelledProjects);
+        }
+
+        if (!failures.isEmpty()) {
+            String summary = failures.entrySet().stream()
+                    .map(failure -> failure.getKey() + " " + failure.getValue())
+                    .collect(Collectors.joining(", "));
+            throw new IllegalStateException("Executing command failed for " + summary);
+        }
+    }
+
+    /**
+     * Runs the targets of the project in a child process, which the watchdog kills on a timeout or cancellation
+     *
+     * @return true if all targets succeeded
+     */
+    private boolean execute(Project affected, List<String> targets, ProcessTreeWatchdog watchdog) {
+        if (ConfigurationLoader.dryRun(configuration, affected)) return true;
+
+        String commandLineArgs = Extension.getCommandLineArgs(affected);
+
+        logger.lifecycle("args: " + commandLineArgs);
+
+        String taskPaths = targets.stream()
+                .map(target -> ConfigurationLoader.resolvePathToTargetTask(affected, target))
+                .collect(Collectors.joining(" "));
+        String commandLine = String.format("%s %s %s", getGradleWrapper(), taskPaths, commandLineArgs);
+
+        logger.lifecycle("Running {}", commandLine);
+
+        return execute(affected.getPath(), rootProject.getProjectDir(), CommandLine.parse(commandLine), watchdog);
+    }
+
+    /**
+     * Runs the command of the pseudo project in its directory
+     *
+     * @return true if the command succeeded
+     */
+    private boolean execute(PseudoProject pseudoProject, File dir, ProcessTreeWatchdog watchdog) {
+        if (ConfigurationLoader.dryRun(configuration, rootProject)) return true;
+
+        List<String> command = pseudoProject.getCommand();
+        //the arguments are given one by one, so they are passed on without quoting
+        CommandLine commandLine = new CommandLine(command.get(0))
+                .addArguments(command.subList(1, command.size()).toArray(new String[0]), false);
+
+        logger.lifecycle("Running {} in {}", String.join(" ", command), dir);
+
+        return execute(pseudoProject.getName(), dir, commandLine, watchdog);
+    }
+
+    @SneakyThrows
+    private boolean execute(String name, File workingDirectory, CommandLine commandLine, ProcessTreeWatchdog watchdog) {
+        ProjectOutput output = new ProjectOutput(name, configuration.getOutputBufferSize().getOrElse(DEFAULT_OUTPUT_BUFFER_SIZE));
+        //We use Apache Commons Exec because we do not want to re-invent the wheel as ProcessBuilder hangs if the output or error buffer is full
+        DefaultExecutor exec = new DefaultExecutor();
+        exec.setStreamHandler(new MultiplexedStreamHandler(OUTPUT_MULTIPLEXER, output));
+        exec.setWorkingDirectory(workingDirectory);
+        exec.setWatchdog(watchdog);
+
+        boolean success = false;
+        try {
+            success = exec.execute(commandLine) == 0;
+        } catch (ExecuteException e) {
+            //a non-zero exit value, including processes killed by the watchdog
+            success = false;
+        } finally {
+            //one block per project, so the output of concurrently running projects does not interleave
+            String block = output.format(success, ConfigurationLoader.getSuccessOutputTail(configuration, rootProject));
+            if (success) {
+                logger.lifecycle(block);
+            } else {
+                logger.error(block);
+            }
+        }
+
+        if (watchdog.hasTimedOut()) {
+            logger.error("affected plugin: {} timed out, killed its processes", name);
+        }
+
+        return success;
+    }
+
+    //seconds to the milliseconds of the watchdog, which treats negative values as no timeout
+    private static long toMillis(long seconds) {
+        return seconds > 0 ? TimeUnit.SECONDS.toMillis(seconds) : ExecuteWatchdog.INFINITE_TIMEOUT;
+    }
+
+    private String getGradleWrapper() {
+        if (System.getProperty("os.name").startsWith("Windows")) {
+            return "gradlew.bat";
+        } else {
+            return "./gradlew";
+        }
+    }
+}
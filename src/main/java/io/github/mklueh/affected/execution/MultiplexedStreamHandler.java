@@ -0,0 +1,54 @@
+package io.github.mklueh.affected.execution;
+
+import org.apache.commons.exec.ExecuteStreamHandler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Stream handler for Apache Commons Exec that hands stdout and stderr of the process to the shared {@link OutputMultiplexer}
+ * instead of starting pump threads
+ */
+public class MultiplexedStreamHandler implements ExecuteStreamHandler {
+
+    private final OutputMultiplexer multiplexer;
+    private final ProjectOutput output;
+    private InputStream processOutput;
+    private InputStream processError;
+    private OutputMultiplexer.Source outputSource;
+    private OutputMultiplexer.Source errorSource;
+
+    public MultiplexedStreamHandler(OutputMultiplexer multiplexer, ProjectOutput output) {
+        this.multiplexer = multiplexer;
+        this.output = output;
+    }
+
+    @Override
+    public void setProcessInputStream(OutputStream os) throws IOException {
+        //child builds never read from stdin
+        os.close();
+    }
+
+    @Override
+    public void setProcessErrorStream(InputStream is) {
+        this.processError = is;
+    }
+
+    @Override
+    public void setProcessOutputStream(InputStream is) {
+        this.processOutput = is;
+    }
+
+    @Override
+    public void start() {
+        outputSource = multiplexer.register(processOutput, output);
+        errorSource = multiplexer.register(processError, output);
+    }
+
+    @Override
+    public void stop() {
+        multiplexer.unregister(outputSource);
+        multiplexer.unregister(errorSource);
+    }
+}
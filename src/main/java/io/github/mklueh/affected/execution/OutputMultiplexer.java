@@ -0,0 +1,128 @@
+package io.github.mklueh.affected.execution;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Reads the output of all running child processes on a single shared thread instead of two pump threads per process.
+ * <p>
+ * The thread polls every registered stream for available bytes and copies them into the project's {@link ProjectOutput}.
+ * It is started with the first registered stream and ends when no stream is left.
+ */
+public class OutputMultiplexer {
+
+    private static final long IDLE_MILLIS = 10;
+
+    private final List<Source> sources = new CopyOnWriteArrayList<>();
+    private Thread readerThread;
+
+    /**
+     * Starts reading the stream into the given output
+     *
+     * @return the registered source, which has to be passed to {@link #unregister(Source)} once the process finished
+     */
+    public synchronized Source register(InputStream inputStream, ProjectOutput output) {
+        Source source = new Source(inputStream, output);
+        sources.add(source);
+
+        if (readerThread == null) {
+            readerThread = new Thread(this::readLoop, "affected-output-multiplexer");
+            readerThread.setDaemon(true);
+            readerThread.start();
+        }
+
+        return source;
+    }
+
+    /**
+     * Stops polling the source and reads what is left of it on the calling thread
+     */
+    public void unregister(Source source) {
+        sources.remove(source);
+        source.drain();
+    }
+
+    private void readLoop() {
+        byte[] chunk = new byte[8192];
+
+        while (true) {
+            synchronized (this) {
+                if (sources.isEmpty()) {
+                    readerThread = null;
+                    return;
+                }
+            }
+
+            boolean anyRead = false;
+            for (Source source : sources) {
+                anyRead |= source.readAvailable(chunk);
+            }
+
+            if (!anyRead) {
+                try {
+                    Thread.sleep(IDLE_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    synchronized (this) {
+                        readerThread = null;
+                    }
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * A stream of a child process together with the output it is collected into
+     */
+    public static class Source {
+
+        private final InputStream inputStream;
+        private final ProjectOutput output;
+        private boolean closed;
+
+        private Source(InputStream inputStream, ProjectOutput output) {
+            this.inputStream = inputStream;
+            this.output = output;
+        }
+
+        private synchronized boolean readAvailable(byte[] chunk) {
+            if (closed) {
+                return false;
+            }
+
+            try {
+                int available = inputStream.available();
+                if (available <= 0) {
+                    return false;
+                }
+                int read = inputStream.read(chunk, 0, Math.min(available, chunk.length));
+                if (read < 0) {
+                    closed = true;
+                    return false;
+                }
+                output.write(chunk, 0, read);
+                return true;
+            } catch (IOException e) {
+                closed = true;
+                return false;
+            }
+        }
+
+        private synchronized void drain() {
+            byte[] chunk = new byte[8192];
+            try {
+                int read;
+                while (!closed && (read = inputStream.read(chunk)) != -1) {
+                    output.write(chunk, 0, read);
+                }
+            } catch (IOException e) {
+                //the stream is gone, there is nothing left to read
+            } finally {
+                closed = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package io.github.mklueh.affected.execution;
+
+import org.apache.commons.exec.ExecuteWatchdog;
+import org.apache.commons.exec.Watchdog;
+
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * Watchdog that kills the child processes of the Gradle wrapper as well, so no Gradle client keeps running
+ * after a timeout or cancellation.
+ * <p>
+ * The process is only known once started, so a cancellation that happens before is applied right after the start.
+ */
+class ProcessTreeWatchdog extends ExecuteWatchdog {
+
+    private final BooleanSupplier cancelled;
+
+    private volatile Process process;
+
+    private volatile boolean timedOut;
+
+    /**
+     * @param timeout   the timeout in milliseconds or {@link ExecuteWatchdog#INFINITE_TIMEOUT}
+     * @param cancelled whether the execution got cancelled in the meantime
+     */
+    ProcessTreeWatchdog(long timeout, BooleanSupplier cancelled) {
+        super(timeout);
+        this.cancelled = cancelled;
+    }
+
+    @Override
+    public synchronized void start(Process process) {
+        this.process = process;
+        super.start(process);
+
+        if (cancelled.getAsBoolean()) {
+            destroyProcess();
+        }
+    }
+
+    /**
+     * Kills the running process and its descendants, nothing happens if it has not been started
+     */
+    void cancel() {
+        if (process != null) {
+            destroyProcess();
+        }
+    }
+
+    @Override
+    public synchronized void timeoutOccured(Watchdog watchdog) {
+        Process started = process;
+
+        //called by the watchdog on timeouts, without one if destroyed explicitly
+        if (watchdog != null) {
+            timedOut = true;
+        }
+
+        //collected first, a killed parent no longer knows them, but killed after the parent,
+        //which could otherwise exit successfully once its children are gone
+        List<ProcessHandle> descendants = started != null && started.isAlive()
+                ? started.toHandle().descendants().collect(Collectors.toList())
+                : List.of();
+
+        super.timeoutOccured(watchdog);
+
+        descendants.forEach(ProcessHandle::destroyForcibly);
+    }
+
+    /**
+     * Whether the process was killed because it ran longer than the timeout
+     */
+    boolean hasTimedOut() {
+        return timedOut;
+    }
+}
@@ -0,0 +1,90 @@
+package io.github.mklueh.affected.execution;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Bounded ring buffer collecting the combined stdout and stderr of one child process,
+ * which is printed as a single block prefixed with the project path once the process finished.
+ * When the buffer is full the oldest bytes are dropped, the tail of the output is what matters when something fails.
+ */
+public class ProjectOutput {
+
+    private final String projectPath;
+    private final byte[] buffer;
+    private int start;
+    private int length;
+    private long droppedBytes;
+
+    public ProjectOutput(String projectPath, int capacity) {
+        this.projectPath = projectPath;
+        this.buffer = new byte[capacity];
+    }
+
+    public synchronized void write(byte[] bytes, int offset, int count) {
+        if (count >= buffer.length) {
+            droppedBytes += length + count - buffer.length;
+            System.arraycopy(bytes, offset + count - buffer.length, buffer, 0, buffer.length);
+            start = 0;
+            length = buffer.length;
+            return;
+        }
+
+        int overflow = length + count - buffer.length;
+        if (overflow > 0) {
+            start = (start + overflow) % buffer.length;
+            length -= overflow;
+            droppedBytes += overflow;
+        }
+
+        int end = (start + length) % buffer.length;
+        int firstPart = Math.min(count, buffer.length - end);
+        System.arraycopy(bytes, offset, buffer, end, firstPart);
+        System.arraycopy(bytes, offset + firstPart, buffer, 0, count - firstPart);
+        length += count;
+    }
+
+    /**
+     * Formats the collected output as one block, every line prefixed with the project path
+     *
+     * @param success          whether the process succeeded
+     * @param successTailLines the number of lines to keep for successful processes, negative to keep all
+     * @return the formatted block
+     */
+    public synchronized String format(boolean success, int successTailLines) {
+        List<String> lines = new String(toByteArray(), StandardCharsets.UTF_8).lines().collect(Collectors.toList());
+        int omittedLines = 0;
+
+        //the first line is most likely cut off
+        if (droppedBytes > 0 && !lines.isEmpty()) {
+            lines = lines.subList(1, lines.size());
+        }
+
+        if (success && successTailLines >= 0 && lines.size() > successTailLines) {
+            omittedLines = lines.size() - successTailLines;
+            lines = lines.subList(omittedLines, lines.size());
+        }
+
+        String prefix = String.format("[%s] ", projectPath);
+        StringBuilder block = new StringBuilder(String.format("> %s %s", projectPath, success ? "succeeded" : "failed"));
+
+        if (droppedBytes > 0) {
+            block.append('\n').append(prefix).append(String.format("... %d bytes truncated", droppedBytes));
+        }
+        if (omittedLines > 0) {
+            block.append('\n').append(prefix).append(String.format("... %d lines omitted", omittedLines));
+        }
+        lines.forEach(line -> block.append('\n').append(prefix).append(line));
+
+        return block.toString();
+    }
+
+    private byte[] toByteArray() {
+        byte[] result = new byte[length];
+        int firstPart = Math.min(length, buffer.length - start);
+        System.arraycopy(buffer, start, result, 0, firstPart);
+        System.arraycopy(buffer, 0, result, firstPart, length - firstPart);
+        return result;
+    }
+}
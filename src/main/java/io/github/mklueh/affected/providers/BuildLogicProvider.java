@@ -0,0 +1,226 @@
+package io.github.mklueh.affected.providers;
+
+import lombok.SneakyThrows;
+import org.gradle.api.Project;
+import org.gradle.api.initialization.IncludedBuild;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Maps changes of build logic, buildSrc and included builds providing plugins, to the projects applying the changed plugin.
+ * <p>
+ * Precompiled script plugins get their id from the file name, binary plugins from the gradlePlugin declarations
+ * of the build logic's build scripts, matched to their implementation class source file.
+ * Other build logic files like shared helper classes affect all projects applying any plugin of that build logic,
+ * or all projects for buildSrc, whose classes are visible to every build script.
+ */
+public class BuildLogicProvider {
+
+    private static final Set<String> BUILD_SCRIPTS = Set.of("build.gradle", "build.gradle.kts");
+
+    private static final List<String> SOURCE_SETS = List.of("java", "groovy", "kotlin");
+
+    private static final List<String> SOURCE_EXTENSIONS = List.of(".java", ".groovy", ".kt");
+
+    private static final Pattern PACKAGE = Pattern.compile("(?m)^\\s*package\\s+([\\w.]+)");
+
+    //id = 'x' / id("x") followed by implementationClass = 'y' / implementationClass("y") of the same plugin declaration
+    private static final Pattern PLUGIN_DECLARATION = Pattern.compile(
+            "\\bid\\s*[=(]\\s*[\"']([^\"']+)[\"'][^}]*?\\bimplementationClass\\s*[=(]\\s*[\"']([^\"']+)[\"']", Pattern.DOTALL);
+
+    private final Project rootProject;
+    private final Path buildSrcDir;
+    private final List<BuildLogic> buildLogics = new ArrayList<>();
+
+    public BuildLogicProvider(Project project) {
+        this.rootProject = project.getRootProject();
+        this.buildSrcDir = normalize(new File(rootProject.getProjectDir(), "buildSrc"));
+
+        if (Files.isDirectory(buildSrcDir)) {
+            buildLogics.add(new BuildLogic(buildSrcDir));
+        }
+
+        for (IncludedBuild includedBuild : rootProject.getGradle().getIncludedBuilds()) {
+            BuildLogic buildLogic = new BuildLogic(normalize(includedBuild.getProjectDir()));
+            //included builds without plugins are regular libraries
+            if (!buildLogic.pluginSources.isEmpty()) {
+                buildLogics.add(buildLogic);
+            }
+        }
+    }
+
+    /**
+     * Finds the projects affected by a changed build logic file
+     *
+     * @return the projects with the plugin that affected them,
+     * or an empty optional if the file does not belong to build logic
+     */
+    public Optional<Map<Project, String>> findProjectsOfChangedFile(File file) {
+        Path path = normalize(file);
+
+        for (BuildLogic buildLogic : buildLogics) {
+            if (!path.startsWith(buildLogic.dir)) {
+                continue;
+            }
+
+            String pluginId = buildLogic.pluginSources.get(path);
+            if (pluginId != null) {
+                return Optional.of(findProjectsApplying(Set.of(pluginId)));
+            }
+
+            if (buildLogic.dir.equals(buildSrcDir)) {
+                return Optional.of(rootProject.getAllprojects().stream()
+                        .collect(Collectors.toMap(p -> p, p -> "buildSrc")));
+            }
+
+            return Optional.of(findProjectsApplying(new HashSet<>(buildLogic.pluginSources.values())));
+        }
+
+        return Optional.empty();
+    }
+
+    private Map<Project, String> findProjectsApplying(Set<String> pluginIds) {
+        Map<Project, String> projects = new HashMap<>();
+
+        for (Project project : rootProject.getAllprojects()) {
+            pluginIds.stream()
+                    .filter(id -> project.getPluginManager().hasPlugin(id))
+                    .findFirst()
+                    .ifPresent(id -> projects.put(project, "convention plugin " + id));
+        }
+
+        return projects;
+    }
+
+    private static Path normalize(File file) {
+        return file.toPath().toAbsolutePath().normalize();
+    }
+
+    /**
+     * The plugins of a buildSrc directory or included build
+     */
+    private static class BuildLogic {
+
+        private final Path dir;
+
+        //plugin id by source file
+        private final Map<Path, String> pluginSources = new HashMap<>();
+
+        BuildLogic(Path dir) {
+            this.dir = dir;
+            List<Path> files = findFiles(dir);
+
+            Map<String, Path> sourcesByClassName = new HashMap<>();
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                Optional<String> sourceSet = getMainSourceSet(file);
+
+                if (BUILD_SCRIPTS.contains(name)) {
+                    continue;
+                }
+
+                if (sourceSet.isPresent() && name.endsWith(".gradle")) {
+                    pluginSources.put(file, name.substring(0, name.length() - ".gradle".length()));
+                } else if (sourceSet.isPresent() && name.endsWith(".gradle.kts")) {
+                    String id = name.substring(0, name.length() - ".gradle.kts".length());
+                    pluginSources.put(file, findPackage(file).map(p -> p + "." + id).orElse(id));
+                } else if (sourceSet.isPresent()) {
+                    toClassName(file).ifPresent(className -> sourcesByClassName.put(className, file));
+                }
+            }
+
+            for (Path file : files) {
+                if (BUILD_SCRIPTS.contains(file.getFileName().toString())) {
+                    Matcher declaration = PLUGIN_DECLARATION.matcher(read(file));
+                    while (declaration.find()) {
+                        Path source = sourcesByClassName.get(declaration.group(2));
+                        if (source != null) {
+                            pluginSources.put(source, declaration.group(1));
+                        }
+                    }
+                }
+            }
+        }
+
+        //the source set root like src/main/kotlin the file is located in
+        private Optional<String> getMainSourceSet(Path file) {
+            String relative = dir.relativize(file).toString().replace(File.separatorChar, '/');
+            return SOURCE_SETS.stream()
+                    .filter(sourceSet -> relative.startsWith("src/main/" + sourceSet + "/") || relative.contains("/src/main/" + sourceSet + "/"))
+                    .findFirst();
+        }
+
+        private Optional<String> toClassName(Path file) {
+            String relative = dir.relativize(file).toString().replace(File.separatorChar, '/');
+            for (String sourceSet : SOURCE_SETS) {
+                int start = relative.indexOf("src/main/" + sourceSet + "/");
+                if (start < 0) {
+                    continue;
+                }
+                String classPath = relative.substring(start + ("src/main/" + sourceSet + "/").length());
+                for (String extension : SOURCE_EXTENSIONS) {
+                    if (classPath.endsWith(extension)) {
+                        return Optional.of(classPath.substring(0, classPath.length() - extension.length()).replace('/', '.'));
+                    }
+                }
+            }
+            return Optional.empty();
+        }
+
+        private Optional<String> findPackage(Path file) {
+            Matcher matcher = PACKAGE.matcher(read(file));
+            return matcher.find() ? Optional.of(matcher.group(1)) : Optional.empty();
+        }
+
+        @SneakyThrows
+        private static List<Path> findFiles(Path dir) {
+            List<Path> files = new ArrayList<>();
+
+            Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path d, BasicFileAttributes attrs) {
+                    String name = d.getFileName().toString();
+                    if (!d.equals(dir) && (name.equals("build") || name.startsWith("."))) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    files.add(file);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+
+            return files;
+        }
+
+        @SneakyThrows
+        private static String read(Path file) {
+            return Files.readString(file, StandardCharsets.UTF_8);
+        }
+    }
+}
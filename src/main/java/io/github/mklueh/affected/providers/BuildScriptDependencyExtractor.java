@@ -0,0 +1,177 @@
+package io.github.mklueh.affected.providers;
+
+import lombok.SneakyThrows;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Builds the project dependency graph from the build scripts without configuring any project.
+ * <p>
+ * The build.gradle and build.gradle.kts files are scanned in parallel for project(":x") references
+ * and type-safe projects.x accessors. References built at runtime, e.g. in loops or convention plugins, are not found,
+ * so the graph is an approximation of the configured model.
+ */
+public class BuildScriptDependencyExtractor {
+
+    private static final String[] BUILD_SCRIPTS = {"build.gradle", "build.gradle.kts"};
+
+    private static final Pattern BLOCK_COMMENT = Pattern.compile("/\\*.*?\\*/", Pattern.DOTALL);
+    private static final Pattern LINE_COMMENT = Pattern.compile("(?m)^\\s*//.*$");
+
+    //project(':x'), project(":x"), project(path: ':x') and project(path = ":x")
+    private static final Pattern PROJECT_REFERENCE = Pattern.compile("\\bproject\\s*\\(\\s*(?:path\\s*[:=]\\s*)?[\"']([^\"'$]+)[\"']");
+
+    //projects.x, projects.x.y
+    private static final Pattern PROJECT_ACCESSOR = Pattern.compile("\\bprojects((?:\\s*\\.\\s*[A-Za-z_][A-Za-z0-9_]*)+)");
+
+    private final Map<String, File> projectDirs;
+    private final Map<String, String> accessors;
+
+    /**
+     * @param projectDirs the directories of all projects by project path
+     */
+    public BuildScriptDependencyExtractor(Map<String, File> projectDirs) {
+        this.projectDirs = projectDirs;
+        this.accessors = projectDirs.keySet().stream()
+                .filter(path -> !path.equals(":"))
+                .collect(Collectors.toMap(BuildScriptDependencyExtractor::toAccessor, Function.identity(), (a, b) -> a));
+    }
+
+    /**
+     * Extracts the direct project dependencies of every project
+     *
+     * @return the dependency paths by project path, only containing known projects
+     */
+    public Map<String, Set<String>> extract() {
+        return projectDirs.entrySet().parallelStream()
+                .collect(Collectors.toConcurrentMap(Map.Entry::getKey, e -> extract(e.getKey(), e.getValue())));
+    }
+
+    private Set<String> extract(String projectPath, File projectDir) {
+        Set<String> dependencies = new TreeSet<>();
+
+        for (String buildScript : BUILD_SCRIPTS) {
+            File file = new File(projectDir, buildScript);
+            if (file.isFile()) {
+                dependencies.addAll(findReferences(projectPath, read(file)));
+            }
+        }
+
+        dependencies.remove(projectPath);
+        dependencies.retainAll(projectDirs.keySet());
+        return dependencies;
+    }
+
+    /**
+     * Finds the referenced project paths in a build script
+     *
+     * @return the referenced project paths, also unknown ones
+     */
+    Set<String> findReferences(String projectPath, String script) {
+        String code = LINE_COMMENT.matcher(BLOCK_COMMENT.matcher(script).replaceAll("")).replaceAll("");
+        Set<String> references = new TreeSet<>();
+
+        Matcher projectReference = PROJECT_REFERENCE.matcher(code);
+        while (projectReference.find()) {
+            references.add(resolve(projectPath, projectReference.group(1)));
+        }
+
+        Matcher projectAccessor = PROJECT_ACCESSOR.matcher(code);
+        while (projectAccessor.find()) {
+            String accessor = projectAccessor.group(1).replaceAll("\\s", "").substring(1);
+            resolveAccessor(accessor).ifPresent(references::add);
+        }
+
+        return references;
+    }
+
+    //the longest known accessor prefix, so projects.lib.path still resolves to :lib
+    private Optional<String> resolveAccessor(String accessor) {
+        String candidate = accessor;
+        while (!candidate.isEmpty()) {
+            String path = accessors.get(candidate);
+            if (path != null) {
+                return Optional.of(path);
+            }
+            int lastDot = candidate.lastIndexOf('.');
+            candidate = lastDot < 0 ? "" : candidate.substring(0, lastDot);
+        }
+        return Optional.empty();
+    }
+
+    private static String resolve(String projectPath, String reference) {
+        if (reference.startsWith(":")) {
+            return reference;
+        }
+        //relative to the project the script belongs to
+        return projectPath.equals(":") ? ":" + reference : projectPath + ":" + reference;
+    }
+
+    /**
+     * Converts a project path to its type-safe accessor, like :core-api:json_utils to coreApi.jsonUtils
+     *
+     * @return the accessor without the projects prefix
+     */
+    static String toAccessor(String projectPath) {
+        List<String> segments = new ArrayList<>();
+        for (String name : projectPath.substring(1).split(":")) {
+            StringBuilder segment = new StringBuilder();
+            boolean upper = false;
+            for (char c : name.toCharArray()) {
+                if (c == '-' || c == '_' || c == '.' || c == ' ') {
+                    upper = true;
+                } else {
+                    segment.append(upper ? Character.toUpperCase(c) : c);
+                    upper = false;
+                }
+            }
+            segments.add(segment.toString());
+        }
+        return String.join(".", segments);
+    }
+
+    /**
+     * Compares the extracted graph with the dependencies of the configured model
+     *
+     * @param extracted  the dependencies extracted from the build scripts by project path
+     * @param configured the dependencies of the configured projects by project path
+     * @return a description of every dependency that is only found in one of them
+     */
+    public static List<String> findDisagreements(Map<String, Set<String>> extracted, Map<String, Set<String>> configured) {
+        List<String> disagreements = new ArrayList<>();
+        Set<String> projects = new TreeSet<>(configured.keySet());
+        projects.retainAll(extracted.keySet());
+
+        for (String project : projects) {
+            for (String dependency : new TreeSet<>(extracted.get(project))) {
+                if (!configured.get(project).contains(dependency)) {
+                    disagreements.add(String.format("%s -> %s only found in the build script", project, dependency));
+                }
+            }
+            for (String dependency : new TreeSet<>(configured.get(project))) {
+                if (!extracted.get(project).contains(dependency)) {
+                    disagreements.add(String.format("%s -> %s only found in the configured model", project, dependency));
+                }
+            }
+        }
+
+        return disagreements;
+    }
+
+    @SneakyThrows
+    private static String read(File file) {
+        return Files.readString(file.toPath(), StandardCharsets.UTF_8);
+    }
+}
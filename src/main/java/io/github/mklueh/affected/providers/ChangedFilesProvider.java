@@ -1,21 +1,30 @@
 package io.github.mklueh.affected.providers;
 
+import io.github.mklueh.affected.cache.AffectedStateService;
 import io.github.mklueh.affected.configuration.AffectedConfiguration;
+import io.github.mklueh.affected.configuration.Arguments;
+import io.github.mklueh.affected.configuration.ArgumentsExtractor;
+import io.github.mklueh.affected.configuration.ConfigurationLoader;
+import io.github.mklueh.affected.configuration.DetectionMode;
+import io.github.mklueh.affected.providers.cosmetic.CosmeticChangesFilter;
 import io.github.mklueh.affected.providers.git.GitCommandProvider;
-import io.github.mklueh.affected.providers.git.CollectingOutputStream;
+import io.github.mklueh.affected.providers.git.GitDiffMode;
 import io.github.mklueh.affected.providers.git.GitUtil;
+import io.github.mklueh.affected.providers.git.SubmoduleChangesProvider;
+import io.github.mklueh.affected.providers.git.WorkingTreeChangesProvider;
 import io.github.mklueh.affected.utils.LogUtil;
-import lombok.SneakyThrows;
-import org.apache.commons.exec.CommandLine;
-import org.apache.commons.exec.DefaultExecutor;
-import org.apache.commons.exec.PumpStreamHandler;
+import io.github.mklueh.affected.utils.Pair;
 import org.gradle.api.Project;
 import org.gradle.api.logging.Logger;
+import org.gradle.api.provider.MapProperty;
 
 import java.io.File;
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -24,78 +33,223 @@ public class ChangedFilesProvider {
     private final Logger logger;
     private final Project project;
     private final AffectedConfiguration configuration;
-    private final GitCommandProvider gitCommandProvider;
+    //the git diff --name-only command that found the changes
+    private final Supplier<String> diffCommand;
+    //the changes without the ignored files, before the patterns of a target are applied
+    private final List<String> gitFilteredChanges;
     private final List<File> changedFiles;
-    private final boolean affectsAllProjects;
+    private final List<String> changedVersionCatalogs;
+    private final String affectsAllFile;
 
     public ChangedFilesProvider(Project project, AffectedConfiguration configuration) {
+        this(project, configuration, takePrefetchedChanges(project).orElseGet(() -> findChanges(project, configuration)));
+    }
+
+    private ChangedFilesProvider(Project project, AffectedConfiguration configuration, Pair<GitCommandProvider, List<String>> changes) {
+        this(project, configuration, changes.getValue(), GitUtil.getCommitCompareMode(project) == GitDiffMode.WORKING_TREE
+                ? () -> GitCommandProvider.WORKING_TREE_DIFF_COMMAND
+                : changes.getKey()::getGitDiffCommand);
+    }
+
+    private ChangedFilesProvider(Project project, AffectedConfiguration configuration, List<String> changes, Supplier<String> diffCommand) {
+        this(project, configuration, diffCommand, filterCosmeticChanges(project, configuration, diffCommand, filterIgnored(configuration, changes)),
+                x -> false, x -> false);
+    }
+
+    private ChangedFilesProvider(Project project, AffectedConfiguration configuration, Supplier<String> diffCommand,
+                                 List<String> gitFilteredChanges, Predicate<String> targetIgnored, Predicate<String> targetAffectsAll) {
         this.project = project;
         this.logger = project.getLogger();
         this.configuration = configuration;
-        this.gitCommandProvider = new GitCommandProvider(project, configuration);
-        List<String> gitFilteredChanges = findFilteredFileChanges();
+        this.diffCommand = diffCommand;
+        this.gitFilteredChanges = gitFilteredChanges;
+
+        List<String> targetChanges = gitFilteredChanges.stream()
+                .filter(Predicate.not(targetIgnored))
+                .collect(Collectors.toList());
+
+        //version catalogs are compared alias by alias, so they neither affect all nor the project they are located in
+        Set<String> versionCatalogs = findVersionCatalogs();
+        this.changedVersionCatalogs = targetChanges.stream()
+                .filter(versionCatalogs::contains)
+                .collect(Collectors.toList());
+        List<String> otherChanges = targetChanges.stream()
+                .filter(Predicate.not(versionCatalogs::contains))
+                .collect(Collectors.toList());
+
+        this.changedFiles = createAbsolutFilePaths(otherChanges);
+        this.affectsAllFile = findAffectsAllFile(otherChanges, targetAffectsAll);
+    }
 
-        this.changedFiles = createAbsolutFilePaths(gitFilteredChanges);
-        this.affectsAllProjects = affectsAllProjects(gitFilteredChanges);
+    /**
+     * Applies the ignored and affects all regexes of the target on top of the configured ones, without running git again
+     *
+     * @return the changes as seen by the target
+     */
+    public ChangedFilesProvider forTarget(String target) {
+        return new ChangedFilesProvider(project, configuration, diffCommand, gitFilteredChanges,
+                createFilter(getTargetPatterns(configuration.getTargetIgnoredRegex(), target)),
+                createFilter(getTargetPatterns(configuration.getTargetAffectsAllRegex(), target)));
     }
 
-    @SneakyThrows
-    private List<String> findFilteredFileChanges() {
+    /**
+     * Applies the configured filters to changes found by another diff, like the one of a commit in the history
+     *
+     * @param changes     the changed paths relative to the git root
+     * @param diffCommand the git diff --name-only command that found the changes
+     * @return the changes as seen by the configured patterns
+     */
+    public static ChangedFilesProvider forChanges(Project project, AffectedConfiguration configuration, List<String> changes, String diffCommand) {
+        return new ChangedFilesProvider(project, configuration, changes, () -> diffCommand);
+    }
+
+    /**
+     * Returns whether the target has its own ignored or affects all regexes
+     *
+     * @return true if the changes have to be filtered for the target
+     */
+    public static boolean hasTargetPatterns(AffectedConfiguration configuration, String target) {
+        return !getTargetPatterns(configuration.getTargetIgnoredRegex(), target).isEmpty()
+                || !getTargetPatterns(configuration.getTargetAffectsAllRegex(), target).isEmpty();
+    }
+
+    private static Set<Pattern> getTargetPatterns(MapProperty<String, Set<Pattern>> patterns, String target) {
+        return patterns.getOrElse(Collections.emptyMap()).getOrDefault(target, Collections.emptySet());
+    }
+
+    /**
+     * Starts finding the changed files in the background when the plugin is applied, so git runs while the projects are configured.
+     * The ignored and affects all regexes are applied once the projects are evaluated, as the build script configures them
+     */
+    public static void prefetch(Project project, AffectedConfiguration configuration) {
+        GitCommandProvider gitCommandProvider = new GitCommandProvider(project, configuration);
+
+        boolean fingerprintDetection = ArgumentsExtractor.extractParameterValue(project, Arguments.DETECTION_MODE)
+                .filter(DetectionMode.FINGERPRINT.name()::equals)
+                .isPresent();
+
+        if (GitUtil.getGitRootDir(project) == null || fingerprintDetection || !gitCommandProvider.isIndependentOfConfiguration()) {
+            return;
+        }
+
+        //everything the background thread needs is read here, projects must only be accessed by the thread configuring them
+        Supplier<List<String>> changes = createChangesSupplier(project, gitCommandProvider);
+        AffectedStateService.get(project.getGradle())
+                .prefetch(getPrefetchKey(project), () -> new Pair<>(gitCommandProvider, changes.get()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Optional<Pair<GitCommandProvider, List<String>>> takePrefetchedChanges(Project project) {
+        return AffectedStateService.get(project.getGradle()).takePrefetched(getPrefetchKey(project), project.getLogger())
+                .map(changes -> (Pair<GitCommandProvider, List<String>>) changes);
+    }
+
+    //the arguments the changed files depend on, which can not change between applying the plugin and evaluating the projects
+    private static String getPrefetchKey(Project project) {
+        return String.format("changes:%s:%s:%s:%s:%s", GitUtil.getGitRootDir(project), GitUtil.getCommitCompareMode(project),
+                GitUtil.getCommitId(project).orElse(""), GitUtil.getPreviousCommitId(project).orElse(""),
+                ArgumentsExtractor.getTargetTaskParameter(project).orElse(""));
+    }
+
+    private static Pair<GitCommandProvider, List<String>> findChanges(Project project, AffectedConfiguration configuration) {
+        GitCommandProvider gitCommandProvider = new GitCommandProvider(project, configuration);
+        return new Pair<>(gitCommandProvider, createChangesSupplier(project, gitCommandProvider).get());
+    }
+
+    private static Supplier<List<String>> createChangesSupplier(Project project, GitCommandProvider gitCommandProvider) {
         File gitRoot = GitUtil.getGitRootDir(project);
 
         if (gitRoot == null) {
             throw new IllegalStateException("The project does not have a git root");
         }
 
-        CollectingOutputStream stdout = new CollectingOutputStream();
-        CollectingOutputStream stderr = new CollectingOutputStream();
-        //We use Apache Commons Exec because we do not want to re-invent the wheel as ProcessBuilder hangs if the output or error buffer is full
+        File rootDir = project.getRootProject().getProjectDir();
+        Logger logger = project.getLogger();
 
+        if (GitUtil.getCommitCompareMode(project) == GitDiffMode.WORKING_TREE) {
+            return () -> new WorkingTreeChangesProvider(gitRoot, rootDir, logger).findChangedFiles();
+        }
 
-        DefaultExecutor exec = new DefaultExecutor();
-        exec.setStreamHandler(new PumpStreamHandler(stdout, stderr));
-        exec.setWorkingDirectory(gitRoot);
-        String gitDiffCommand = gitCommandProvider.getGitDiffCommand();
-        exec.execute(CommandLine.parse(gitDiffCommand));
+        AffectedStateService stateService = AffectedStateService.get(project.getGradle());
+        return () -> {
+            String diffCommand = gitCommandProvider.getGitDiffCommand();
+            List<String> changes = stateService.runGitCommand(gitRoot, diffCommand);
 
-        if (stderr.isNotEmpty()) {
-            throw new IllegalStateException(String.format("Failed to run git diff because of \n%s", stdout));
-        }
+            if (changes.isEmpty()) {
+                throw new IllegalStateException("Git diff returned no results this must be a mistake");
+            }
 
-        if (stdout.isEmpty()) {
-            throw new IllegalStateException("Git diff returned no results this must be a mistake");
+            return new SubmoduleChangesProvider(gitRoot, logger, stateService::runGitCommand).expand(changes, diffCommand);
+        };
+    }
+
+    //reads the diff again, which is only worth it for the files that are not ignored anyway
+    private static List<String> filterCosmeticChanges(Project project, AffectedConfiguration configuration,
+                                                      Supplier<String> diffCommand, List<String> changes) {
+        if (!ConfigurationLoader.isIgnoreCosmeticChangesEnabled(configuration, project)) {
+            return changes;
         }
 
+        return new CosmeticChangesFilter(GitUtil.getGitRootDir(project), project.getLogger()).filter(changes, diffCommand.get());
+    }
+
+    private static List<String> filterIgnored(AffectedConfiguration configuration, List<String> changes) {
         //Create a single predicate from the ignored regexes such that we can use a simple filter
-        Predicate<String> filter = createIgnoredFilter();
+        Predicate<String> filter = createIgnoredFilter(configuration);
 
 
         //Filter and return the list
-        return stdout.getLines().stream()
+        return changes.stream()
                 .filter(Predicate.not(filter))
                 .collect(Collectors.toList());
     }
 
-    private Predicate<String> createIgnoredFilter() {
-        return configuration.getIgnoredRegex()
-                .getOrElse(Collections.emptySet())
-                .stream()
+    private Set<String> findVersionCatalogs() {
+        File gitRoot = GitUtil.getGitRootDir(project);
+        File rootDir = project.getRootProject().getProjectDir();
+
+        return configuration.getVersionCatalogs().getOrElse(Collections.emptySet()).stream()
+                .map(catalog -> gitRoot.toPath().relativize(new File(rootDir, catalog).toPath()).toString().replace(File.separatorChar, '/'))
+                .collect(Collectors.toSet());
+    }
+
+    private boolean isWorkingTreeMode() {
+        return GitUtil.getCommitCompareMode(project) == GitDiffMode.WORKING_TREE;
+    }
+
+    /**
+     * Creates a single predicate from the ignored regexes, matching paths relative to the git root
+     *
+     * @return a predicate that is true for ignored files
+     */
+    public static Predicate<String> createIgnoredFilter(AffectedConfiguration configuration) {
+        return createFilter(configuration.getIgnoredRegex().getOrElse(Collections.emptySet()));
+    }
+
+    /**
+     * Creates a single predicate from the affects all projects regexes, matching paths relative to the git root
+     *
+     * @return a predicate that is true for files that affect all projects
+     */
+    public static Predicate<String> createAffectsAllFilter(AffectedConfiguration configuration) {
+        return createFilter(configuration.getAffectsAllRegex().getOrElse(Collections.emptySet()));
+    }
+
+    private static Predicate<String> createFilter(Set<Pattern> patterns) {
+        return patterns.stream()
                 .map(Pattern::asMatchPredicate)
                 .reduce(Predicate::or)
                 .orElse(x -> false);
     }
 
-    private boolean affectsAllProjects(List<String> gitFilteredChanges) {
+    private String findAffectsAllFile(List<String> gitFilteredChanges, Predicate<String> targetAffectsAll) {
         //Create a single predicate from the affects all projects regexes such that we can use a simple filter
-        Predicate<String> filter = configuration.getAffectsAllRegex()
-                .getOrElse(Collections.emptySet())
-                .stream()
-                .map(Pattern::asMatchPredicate)
-                .reduce(Predicate::or)
-                .orElse(x -> false);
+        Predicate<String> filter = createAffectsAllFilter(configuration).or(targetAffectsAll);
 
         return gitFilteredChanges.stream()
-                .anyMatch(filter);
+                .filter(filter)
+                .findFirst()
+                .orElse(null);
     }
 
     private List<File> createAbsolutFilePaths(List<String> changedFiles) {
@@ -119,8 +273,17 @@ public class ChangedFilesProvider {
         return changedFiles;
     }
 
+    /**
+     * Gets the changed version catalogs, which are not part of the changed files
+     *
+     * @return the changed version catalog paths relative to the git root
+     */
+    public List<String> getChangedVersionCatalogs() {
+        return changedVersionCatalogs;
+    }
+
     public boolean hasFileChanges(){
-        return !changedFiles.isEmpty();
+        return !changedFiles.isEmpty() || !changedVersionCatalogs.isEmpty();
     }
 
     /**
@@ -129,7 +292,16 @@ public class ChangedFilesProvider {
      * @return true if all projects are affected
      */
     public boolean allProjectsAffected() {
-        return affectsAllProjects;
+        return affectsAllFile != null;
+    }
+
+    /**
+     * Gets the first changed file that matched the affects all regexes
+     *
+     * @return the file relative to the git root or null if all projects are not affected
+     */
+    public String getAffectsAllFile() {
+        return affectsAllFile;
     }
 
     /**
@@ -137,8 +309,13 @@ public class ChangedFilesProvider {
      */
     public void printDebug() {
         if (LogUtil.shouldLog(configuration)) {
-            logger.lifecycle("Git diff command uses {}", gitCommandProvider.getGitDiffCommand());
+            if (isWorkingTreeMode()) {
+                logger.lifecycle("Working tree changes are read from the git index");
+            } else {
+                logger.lifecycle("Git diff command uses {}", diffCommand.get());
+            }
             logger.lifecycle("All projects affected? {}", allProjectsAffected());
+            logger.lifecycle("Changed version catalogs {}", changedVersionCatalogs);
             logger.lifecycle("Changed files:");
             changedFiles.forEach(file -> logger.lifecycle(file.toString()));
             logger.lifecycle("");
@@ -0,0 +1,368 @@
+package io.github.mklueh.affected.providers;
+
+import lombok.SneakyThrows;
+import org.gradle.api.Project;
+import org.gradle.api.artifacts.ExternalModuleDependency;
+import org.gradle.api.initialization.IncludedBuild;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Maps changed files inside included builds to the projects of this build consuming them.
+ * <p>
+ * Every directory of an included build containing a build script is a module named like the directory,
+ * the root directory is named like the included build. The group of a module is the one declared in its build script,
+ * the build script or gradle.properties of the included build's root, or the default group Gradle derives from its parent.
+ * A project consumes a module if it declares an external module dependency with the module's group and name,
+ * which Gradle substitutes with the included build's project, or with the coordinates of a dependency substitution
+ * declared for that included build in the settings. Modules without a known group are matched by name.
+ * A module depends on the modules its build script references with project(':x') or their group:name,
+ * so a project also consumes the modules its consumed modules depend on.
+ */
+public class IncludedBuildProvider {
+
+    private static final Set<String> BUILD_SCRIPTS = Set.of("build.gradle", "build.gradle.kts");
+
+    private static final List<String> SETTINGS_SCRIPTS = List.of("settings.gradle", "settings.gradle.kts");
+
+    //group = 'x', group = "x", group 'x' and project.group = "x"
+    private static final Pattern GROUP = Pattern.compile("(?m)^\\s*(?:project\\s*\\.\\s*)?group\\s*(?:=\\s*)?[\"']([^\"'$]+)[\"']");
+
+    //includeBuild('x') { and includeBuild("x") {
+    private static final Pattern INCLUDE_BUILD = Pattern.compile("\\bincludeBuild\\s*\\(?\\s*[\"']([^\"'$]+)[\"']\\s*\\)?\\s*\\{");
+
+    //substitute(module("g:n")).using(project(":x")) and substitute module('g:n') with project(':x')
+    private static final Pattern SUBSTITUTION = Pattern.compile(
+            "\\bsubstitute\\s*\\(?\\s*module\\s*\\(\\s*[\"']([^\"':$]+:[^\"':$]+)(?::[^\"']*)?[\"']\\s*\\)\\s*\\)?"
+                    + "\\s*\\.?\\s*(?:using|with)\\s*\\(?\\s*project\\s*\\(\\s*[\"']([^\"'$]+)[\"']");
+
+    //project(':x') and project(path: ':x')
+    private static final Pattern PROJECT_DEPENDENCY = Pattern.compile("\\bproject\\s*\\(\\s*(?:path\\s*[:=]\\s*)?[\"'](:[^\"'$]*)[\"']");
+
+    //'g:n' and "g:n:1.0"
+    private static final Pattern MODULE_DEPENDENCY = Pattern.compile("[\"']([^\"'\\s:$/]+):([^\"'\\s:$/]+)(?::[^\"'\\s]*)?[\"']");
+
+    //any group, for modules whose group is not known
+    private static final String ANY_GROUP = "*";
+
+    //modules by directory, the deepest first
+    private final List<Map.Entry<Path, Module>> moduleDirs;
+    private final Map<String, Set<Project>> consumers;
+
+    //the ids of the modules depending on a module by its id
+    private final Map<String, Set<String>> moduleDependents = new HashMap<>();
+
+    public IncludedBuildProvider(Project project) {
+        Project rootProject = project.getRootProject();
+        Path rootDir = rootProject.getRootDir().toPath().toAbsolutePath().normalize();
+        Map<Path, Map<String, String>> substitutions = findSubstitutions(rootDir, readScripts(rootDir, SETTINGS_SCRIPTS));
+        Map<Path, Map<Path, Module>> modulesByBuild = new HashMap<>();
+
+        for (IncludedBuild includedBuild : rootProject.getGradle().getIncludedBuilds()) {
+            Path includedBuildDir = includedBuild.getProjectDir().toPath().toAbsolutePath().normalize();
+            modulesByBuild.put(includedBuildDir, findModules(includedBuildDir, includedBuild.getName(),
+                    substitutions.getOrDefault(includedBuildDir, Collections.emptyMap())));
+        }
+
+        Map<Path, Module> modules = new HashMap<>();
+        modulesByBuild.values().forEach(modules::putAll);
+
+        modulesByBuild.forEach((includedBuildDir, buildModules) ->
+                findModuleDependencies(includedBuildDir, buildModules, modules.values()).forEach((module, dependencies) ->
+                        dependencies.forEach(dependency -> moduleDependents.computeIfAbsent(dependency, k -> new HashSet<>()).add(module))));
+
+        this.moduleDirs = modules.entrySet().stream()
+                .sorted(Comparator.comparingInt((Map.Entry<Path, Module> e) -> e.getKey().getNameCount()).reversed())
+                .collect(Collectors.toList());
+        this.consumers = findConsumers(rootProject, modules.values());
+    }
+
+    /**
+     * Finds the modules of an included build with their coordinates
+     *
+     * @param substitutions the project paths of the dependency substitutions declared for this included build
+     *                      by the substituted group:name
+     * @return the modules by directory
+     */
+    static Map<Path, Module> findModules(Path includedBuildDir, String includedBuildName, Map<String, String> substitutions) {
+        Optional<String> rootGroup = findGroup(readScripts(includedBuildDir, BUILD_SCRIPTS))
+                .or(() -> readGroupProperty(includedBuildDir));
+
+        Map<Path, Module> modules = new HashMap<>();
+
+        for (Path dir : findModuleDirs(includedBuildDir)) {
+            if (!dir.equals(includedBuildDir)) {
+                Optional<String> group = findGroup(readScripts(dir, BUILD_SCRIPTS))
+                        .or(() -> rootGroup)
+                        .or(() -> Optional.of(getDefaultGroup(includedBuildDir, dir, includedBuildName)));
+                modules.put(dir, new Module(group, dir.getFileName().toString()));
+            }
+        }
+
+        //the default group of the root project is empty
+        modules.put(includedBuildDir, new Module(rootGroup, includedBuildName));
+
+        substitutions.forEach((coordinates, projectPath) -> {
+            Path dir = includedBuildDir.resolve(projectPath.substring(1).replace(':', '/')).normalize();
+            Module module = modules.get(dir);
+            if (module != null) {
+                module.coordinates.add(coordinates);
+            }
+        });
+
+        return modules;
+    }
+
+    /**
+     * Finds the dependency substitutions declared in the includeBuild blocks of a settings script
+     *
+     * @param rootDir the directory of the settings script, which the included build paths are relative to
+     * @return the substituting project paths by the substituted group:name, by the directory of the included build
+     */
+    static Map<Path, Map<String, String>> findSubstitutions(Path rootDir, String settingsScript) {
+        Map<Path, Map<String, String>> substitutions = new HashMap<>();
+        Matcher includeBuild = INCLUDE_BUILD.matcher(settingsScript);
+
+        while (includeBuild.find()) {
+            Path includedBuildDir = rootDir.resolve(includeBuild.group(1)).toAbsolutePath().normalize();
+            Matcher matcher = SUBSTITUTION.matcher(getBlock(settingsScript, includeBuild.end()));
+            while (matcher.find()) {
+                substitutions.computeIfAbsent(includedBuildDir, k -> new HashMap<>()).put(matcher.group(1), matcher.group(2));
+            }
+        }
+
+        return substitutions;
+    }
+
+    //the content of the block opened right before the start, up to its closing brace
+    private static String getBlock(String script, int start) {
+        int depth = 1;
+        for (int i = start; i < script.length(); i++) {
+            char c = script.charAt(i);
+            if (c == '{') {
+                depth++;
+            } else if (c == '}' && --depth == 0) {
+                return script.substring(start, i);
+            }
+        }
+        return script.substring(start);
+    }
+
+    /**
+     * Finds the modules each module of an included build depends on, by the project dependencies
+     * and the group:name coordinates declared in its build script
+     *
+     * @param modules    the modules of the included build by directory
+     * @param allModules the modules of all included builds, which the coordinates are matched with
+     * @return the ids of the modules a module depends on by its id
+     */
+    static Map<String, Set<String>> findModuleDependencies(Path includedBuildDir, Map<Path, Module> modules, Collection<Module> allModules) {
+        Map<String, Set<String>> dependencies = new HashMap<>();
+
+        modules.forEach((dir, module) -> {
+            String buildScript = readScripts(dir, BUILD_SCRIPTS);
+            Set<String> moduleDependencies = new HashSet<>();
+
+            Matcher projectDependency = PROJECT_DEPENDENCY.matcher(buildScript);
+            while (projectDependency.find()) {
+                Path dependencyDir = includedBuildDir.resolve(projectDependency.group(1).substring(1).replace(':', '/')).normalize();
+                Optional.ofNullable(modules.get(dependencyDir)).ifPresent(dependency -> moduleDependencies.add(dependency.getId()));
+            }
+
+            Matcher moduleDependency = MODULE_DEPENDENCY.matcher(buildScript);
+            while (moduleDependency.find()) {
+                String group = moduleDependency.group(1);
+                String name = moduleDependency.group(2);
+                allModules.stream()
+                        .filter(dependency -> dependency.isConsumedBy(group, name))
+                        .forEach(dependency -> moduleDependencies.add(dependency.getId()));
+            }
+
+            moduleDependencies.remove(module.getId());
+            if (!moduleDependencies.isEmpty()) {
+                dependencies.put(module.getId(), moduleDependencies);
+            }
+        });
+
+        return dependencies;
+    }
+
+    static Optional<String> findGroup(String buildScript) {
+        Matcher matcher = GROUP.matcher(buildScript);
+        return matcher.find() ? Optional.of(matcher.group(1)) : Optional.empty();
+    }
+
+    //like Gradle, the name of the root project followed by the path of the parent project
+    private static String getDefaultGroup(Path includedBuildDir, Path dir, String includedBuildName) {
+        Path parent = includedBuildDir.relativize(dir.getParent());
+        return parent.toString().isEmpty()
+                ? includedBuildName
+                : includedBuildName + "." + parent.toString().replace(File.separatorChar, '.');
+    }
+
+    private static Optional<String> readGroupProperty(Path dir) {
+        File file = dir.resolve("gradle.properties").toFile();
+        if (!file.isFile()) {
+            return Optional.empty();
+        }
+
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(properties.getProperty("group")).map(String::trim).filter(group -> !group.isEmpty());
+    }
+
+    private static String readScripts(Path dir, Collection<String> names) {
+        StringBuilder content = new StringBuilder();
+        for (String name : names) {
+            Path file = dir.resolve(name);
+            if (Files.isRegularFile(file)) {
+                try {
+                    content.append(Files.readString(file, StandardCharsets.UTF_8)).append('\n');
+                } catch (IOException e) {
+                    //an unreadable script declares nothing
+                }
+            }
+        }
+        return content.toString();
+    }
+
+    @SneakyThrows
+    private static List<Path> findModuleDirs(Path includedBuildDir) {
+        Set<Path> dirs = new HashSet<>();
+
+        Files.walkFileTree(includedBuildDir, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                String name = dir.getFileName().toString();
+                if (!dir.equals(includedBuildDir) && (name.equals("build") || name.startsWith("."))) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (BUILD_SCRIPTS.contains(file.getFileName().toString())) {
+                    dirs.add(file.getParent());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        return List.copyOf(dirs);
+    }
+
+    private static Map<String, Set<Project>> findConsumers(Project rootProject, Collection<Module> modules) {
+        Map<String, Set<Project>> consumers = new HashMap<>();
+
+        for (Project project : rootProject.getAllprojects()) {
+            project.getConfigurations().stream()
+                    .flatMap(configuration -> configuration.getDependencies().withType(ExternalModuleDependency.class).stream())
+                    .forEach(dependency -> modules.stream()
+                            .filter(module -> module.isConsumedBy(dependency.getGroup(), dependency.getName()))
+                            .forEach(module -> consumers.computeIfAbsent(module.getId(), k -> new HashSet<>()).add(project)));
+        }
+
+        return consumers;
+    }
+
+    /**
+     * Finds the included build module the file belongs to
+     *
+     * @return the module's group:name, or its name if the group is not known,
+     * or an empty optional if the file is not inside an included build
+     */
+    public Optional<String> findModuleOfChangedFile(File file) {
+        Path path = file.toPath().toAbsolutePath().normalize();
+        return moduleDirs.stream()
+                .filter(e -> path.startsWith(e.getKey()))
+                .map(e -> e.getValue().getId())
+                .findFirst();
+    }
+
+    /**
+     * Gets the projects of this build that depend on the included build module, directly or through
+     * other modules depending on it
+     *
+     * @return the consuming projects
+     */
+    public Set<Project> getConsumers(String module) {
+        Set<String> modules = new HashSet<>(List.of(module));
+        Deque<String> queue = new ArrayDeque<>(modules);
+
+        while (!queue.isEmpty()) {
+            for (String dependent : moduleDependents.getOrDefault(queue.poll(), Collections.emptySet())) {
+                if (modules.add(dependent)) {
+                    queue.add(dependent);
+                }
+            }
+        }
+
+        return modules.stream()
+                .flatMap(m -> consumers.getOrDefault(m, Collections.emptySet()).stream())
+                .collect(Collectors.toSet());
+    }
+
+    @Override
+    public String toString() {
+        return moduleDirs.stream()
+                .map(e -> e.getValue().getId() + " " + e.getKey() + " consumed by " + getConsumers(e.getValue().getId()))
+                .collect(Collectors.joining(", ", "[", "]"));
+    }
+
+    /**
+     * A project of an included build and the group:name coordinates it is consumed with
+     */
+    static class Module {
+
+        private final String id;
+
+        //group:name, with the any group wildcard if the group is not known
+        private final Set<String> coordinates = new HashSet<>();
+
+        Module(Optional<String> group, String name) {
+            this.id = group.map(g -> g + ":" + name).orElse(name);
+            this.coordinates.add(group.orElse(ANY_GROUP) + ":" + name);
+        }
+
+        String getId() {
+            return id;
+        }
+
+        boolean isConsumedBy(String group, String name) {
+            return coordinates.contains(group + ":" + name) || coordinates.contains(ANY_GROUP + ":" + name);
+        }
+    }
+}
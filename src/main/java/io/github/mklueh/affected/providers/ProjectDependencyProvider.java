@@ -1,6 +1,10 @@
 package io.github.mklueh.affected.providers;
 
+import io.github.mklueh.affected.cache.AffectedStateService;
 import io.github.mklueh.affected.configuration.AffectedConfiguration;
+import io.github.mklueh.affected.configuration.ConfigurationLoader;
+import io.github.mklueh.affected.configuration.PropagationMode;
+import io.github.mklueh.affected.settings.ProjectGraph;
 import io.github.mklueh.affected.utils.Extension;
 import io.github.mklueh.affected.utils.LogUtil;
 import io.github.mklueh.affected.utils.Pair;
@@ -10,12 +14,18 @@ import org.gradle.api.artifacts.ProjectDependency;
 import org.gradle.api.logging.Logger;
 
 import java.io.File;
-import java.util.Collection;
+import java.util.ArrayDeque;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.BiFunction;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -25,38 +35,188 @@ public class ProjectDependencyProvider {
     private final Project project;
     private final AffectedConfiguration configuration;
     private final Map<Project, Set<Project>> projectDependentsMap;
+    private final Map<Project, Set<Project>> projectDependenciesMap;
+    //the configurations each dependency, dependent edge is declared in
+    private final Map<Pair<Project, Project>, Set<String>> edgeConfigurations;
     private final ProjectNode rootNode;
+    private IncludedBuildProvider includedBuildProvider;
+    private BuildLogicProvider buildLogicProvider;
+    private Map<File, Project> buildFiles;
+    private Optional<TaskInputOwnershipIndex> taskInputOwnershipIndex;
 
     public ProjectDependencyProvider(Project project, AffectedConfiguration configuration) {
         this.project = project;
         this.logger = project.getLogger();
         this.configuration = configuration;
+        this.edgeConfigurations = initEdgeConfigurations();
         this.projectDependentsMap = initProjectDependents();
+        this.projectDependenciesMap = initProjectDependencies();
         this.rootNode = new ProjectNode(project.getRootProject());
     }
 
+    //walks the build logic directories, so only created if files are mapped
+    private BuildLogicProvider getBuildLogicProvider() {
+        if (buildLogicProvider == null) {
+            buildLogicProvider = new BuildLogicProvider(project);
+        }
+        return buildLogicProvider;
+    }
+
+    private Map<File, Project> getBuildFiles() {
+        if (buildFiles == null) {
+            buildFiles = project.getRootProject().getAllprojects().stream()
+                    .collect(Collectors.toMap(p -> p.getBuildFile().getAbsoluteFile(), p -> p, (a, b) -> a));
+        }
+        return buildFiles;
+    }
+
+    //collects the task inputs if the cached index is outdated, so only created if files are mapped
+    private Optional<TaskInputOwnershipIndex> getTaskInputOwnershipIndex() {
+        if (taskInputOwnershipIndex == null) {
+            List<String> targets = ConfigurationLoader.getTargets(configuration, project);
+            taskInputOwnershipIndex = !targets.isEmpty() && ConfigurationLoader.isTaskInputOwnershipEnabled(configuration, project)
+                    ? Optional.of(TaskInputOwnershipIndex.loadOrCreate(project.getRootProject(), targets))
+                    : Optional.empty();
+        }
+        return taskInputOwnershipIndex;
+    }
+
+    //walks the included build directories, so only created if files are mapped
+    private IncludedBuildProvider getIncludedBuildProvider() {
+        if (includedBuildProvider == null) {
+            includedBuildProvider = new IncludedBuildProvider(project);
+        }
+        return includedBuildProvider;
+    }
+
     private Map<Project, Set<Project>> initProjectDependents() {
         //We create a lookup map of projects and the projects that depends on that project once
         //This is to speed up the evaluating dependent changed projects
         //The key of the map is a project that is a direct dependency for the value set
-        return project.getSubprojects().stream()
-                .map(this::getProjectDependencies)
-                .flatMap(Collection::stream)
+        return edgeConfigurations.keySet().stream()
                 .collect(Collectors.groupingBy(Pair::getKey, Collectors.mapping(Pair::getValue, Collectors.toSet())));
     }
 
+    private Map<Project, Set<Project>> initProjectDependencies() {
+        //The reverse lookup of the dependents map, the key is a project that depends on the projects in the value set
+        return projectDependentsMap.entrySet().stream()
+                .flatMap(e -> e.getValue().stream().map(dependent -> new Pair<>(dependent, e.getKey())))
+                .collect(Collectors.groupingBy(Pair::getKey, Collectors.mapping(Pair::getValue, Collectors.toSet())));
+    }
+
+    private Map<Pair<Project, Project>, Set<String>> initEdgeConfigurations() {
+        //scanning the configurations of every project is only needed if the build scripts changed since the last build of the daemon
+        Project rootProject = project.getRootProject();
+        Map<List<String>, Set<String>> edges = AffectedStateService.get(project.getGradle())
+                .getDependencyEdges(rootProject, this::findEdgeConfigurations);
+
+        Map<Pair<Project, Project>, Set<String>> configurations = new HashMap<>();
+        edges.forEach((edge, names) -> {
+            Project dependency = rootProject.findProject(edge.get(0));
+            Project dependent = rootProject.findProject(edge.get(1));
+            if (dependency != null && dependent != null) {
+                configurations.put(new Pair<>(dependency, dependent), names);
+            }
+        });
+        return configurations;
+    }
+
     /**
+     * Finds the configurations every project dependency is declared in
      *
+     * @return the configuration names by dependency and dependent project path
      */
-    private Set<Pair<Project, Project>> getProjectDependencies(Project subproject) {
-        //We use a pair, because we want the project that is a dependency together with the project it is a dependency for
-        return subproject.getConfigurations().stream()
-                .map(org.gradle.api.artifacts.Configuration::getDependencies)
-                .map(dependencySet -> dependencySet.withType(ProjectDependency.class))
-                .flatMap(Set::stream)
-                .map(ProjectDependency::getDependencyProject)
-                .map(p -> new Pair<>(p, subproject))
+    private Map<List<String>, Set<String>> findEdgeConfigurations() {
+        Map<List<String>, Set<String>> configurations = new HashMap<>();
+        for (Project subproject : project.getSubprojects()) {
+            for (org.gradle.api.artifacts.Configuration configuration : subproject.getConfigurations()) {
+                configuration.getDependencies().withType(ProjectDependency.class).forEach(dependency -> configurations
+                        .computeIfAbsent(List.of(dependency.getDependencyProject().getPath(), subproject.getPath()), k -> new TreeSet<>())
+                        .add(configuration.getName()));
+            }
+        }
+        return configurations;
+    }
+
+    /**
+     * Finds the projects affected by the changed file, which are the projects applying the changed build logic,
+     * the project whose build file it is, the projects consuming the included build module containing it,
+     * the projects declaring it as target task input and the project containing it
+     *
+     * @return the directly affected projects
+     */
+    public Set<Project> findProjectsOfChangedFile(File file) {
+        Optional<Map<Project, String>> buildLogicAffected = getBuildLogicProvider().findProjectsOfChangedFile(file);
+
+        if (buildLogicAffected.isPresent()) {
+            logger.lifecycle("Changed file: " + file.getAbsolutePath() + " of build logic affects "
+                    + buildLogicAffected.get().entrySet().stream()
+                    .map(e -> e.getKey().getPath() + " (" + e.getValue() + ")")
+                    .collect(Collectors.joining(", ")));
+            return buildLogicAffected.get().keySet();
+        }
+
+        Project buildFileProject = getBuildFiles().get(file.getAbsoluteFile());
+        if (buildFileProject != null) {
+            logger.lifecycle("Changed file: " + file.getAbsolutePath() + " is the build file of " + buildFileProject.getPath());
+            return Set.of(buildFileProject);
+        }
+
+        Optional<String> includedBuildModule = getIncludedBuildProvider().findModuleOfChangedFile(file);
+
+        if (includedBuildModule.isPresent()) {
+            Set<Project> consumers = getIncludedBuildProvider().getConsumers(includedBuildModule.get());
+            logger.lifecycle("Changed file: " + file.getAbsolutePath() + " of included build module " + includedBuildModule.get()
+                    + " consumed by " + consumers.stream().map(Project::getPath).collect(Collectors.joining(", ")));
+            return consumers;
+        }
+
+        Project affectedProject = findProjectOfChangedFile(file);
+        Set<Project> inputOwners = findTaskInputOwners(file);
+
+        //a shared file outside of the subprojects only affects the projects using it
+        if (!inputOwners.isEmpty() && (affectedProject == null || affectedProject == project.getRootProject())) {
+            return inputOwners;
+        }
+
+        Set<Project> affected = new HashSet<>(inputOwners);
+        if (affectedProject != null) {
+            affected.add(affectedProject);
+        }
+        return affected;
+    }
+
+    /**
+     * Gets the files and directories outside of project directories that the target tasks of the project declare as inputs
+     *
+     * @return the inputs or empty if task input ownership is not enabled
+     */
+    public Set<File> getTaskInputs(Project project) {
+        File rootDir = this.project.getRootProject().getProjectDir();
+        return getTaskInputOwnershipIndex()
+                .map(index -> index.findInputs(project.getPath()).stream()
+                        .map(path -> new File(rootDir, path))
+                        .collect(Collectors.toSet()))
+                .orElse(Collections.emptySet());
+    }
+
+    private Set<Project> findTaskInputOwners(File file) {
+        Optional<TaskInputOwnershipIndex> index = getTaskInputOwnershipIndex();
+        if (index.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        Set<Project> owners = index.get().findOwners(ProjectGraph.toRelativePath(project.getRootProject().getProjectDir().toPath(), file.getAbsoluteFile())).stream()
+                .map(path -> project.getRootProject().findProject(path))
+                .filter(Objects::nonNull)
                 .collect(Collectors.toSet());
+
+        if (!owners.isEmpty()) {
+            logger.lifecycle("Changed file: " + file.getAbsolutePath() + " is a target input of "
+                    + owners.stream().map(Project::getPath).collect(Collectors.joining(", ")));
+        }
+
+        return owners;
     }
 
     public Project findProjectOfChangedFile(File file) {
@@ -87,33 +247,63 @@ public class ProjectDependencyProvider {
         return affectedProject;
     }
 
+    /**
+     * Gets the projects the given project directly depends on
+     *
+     * @return the direct project dependencies
+     */
+    public Set<Project> getDependencies(Project project) {
+        return projectDependenciesMap.getOrDefault(project, Collections.emptySet());
+    }
+
     public Set<Project> getAffectedDependentProjects(Set<Project> directlyChangedProjects) {
-        //We use this to have a way to break our of recursion when we have already seen that project once
-        //This makes it possible to avoid infinite recursion and also speeds up the process
-        Set<Project> alreadyVisitedProjects = new HashSet<>();
+        return getAffectedDependentProjectsWithCause(directlyChangedProjects).keySet();
+    }
 
-        return directlyChangedProjects.stream()
-                .map(p -> getDependentProjects(p, alreadyVisitedProjects))
-                .flatMap(Collection::stream)
-                .collect(Collectors.toSet());
+    /**
+     * Finds all projects that directly or transitively depend on the changed projects,
+     * as far as the configured {@link PropagationMode} passes the change on
+     *
+     * @return the dependent projects, each mapped to the project it depends on through which it is affected
+     */
+    public Map<Project, Project> getAffectedDependentProjectsWithCause(Set<Project> directlyChangedProjects) {
+        return findAffectedDependents(directlyChangedProjects, projectDependentsMap,
+                (dependency, dependent) -> edgeConfigurations.getOrDefault(new Pair<>(dependency, dependent), Collections.emptySet()),
+                ConfigurationLoader.getPropagationMode(configuration, project));
     }
 
-    private Set<Project> getDependentProjects(Project project, Set<Project> alreadyVisitedProjects) {
-        //If we have already visited the project, we can just return empty as we have evaluated dependent projects in another call
-        if (alreadyVisitedProjects.contains(project)) {
-            return Collections.emptySet();
-        }
-        Set<Project> result = new HashSet<>(projectDependentsMap.getOrDefault(project, Collections.emptySet()));
-        alreadyVisitedProjects.add(project);
+    /**
+     * Finds the dependents of the changed projects breadth first, as far as the propagation mode passes the change on
+     *
+     * @param dependents         the direct dependents by project
+     * @param edgeConfigurations the configurations a dependent declares its dependency in, by dependency and dependent
+     * @return the dependent projects, each mapped to the project it depends on through which it is affected
+     */
+    static <T> Map<T, T> findAffectedDependents(Set<T> directlyChangedProjects, Map<T, Set<T>> dependents,
+                                                BiFunction<T, T, Set<String>> edgeConfigurations, PropagationMode propagationMode) {
+        Map<T, T> causes = new HashMap<>();
 
-        //Continue down the chain until no more new affected projects are found
-        Set<Project> dependents = result.stream()
-                .map(p -> getDependentProjects(p, alreadyVisitedProjects))
-                .flatMap(Collection::stream)
-                .collect(Collectors.toSet());
+        //Breadth first, so every project is reached through its nearest changed project.
+        //Projects are only queued once, when first reached through an edge passing the change on,
+        //which avoids infinite loops and speeds up the process
+        Set<T> affectedProjects = new HashSet<>(directlyChangedProjects);
+        Set<T> propagatingProjects = new HashSet<>(directlyChangedProjects);
+        Deque<T> queue = new ArrayDeque<>(directlyChangedProjects);
+
+        while (!queue.isEmpty()) {
+            T current = queue.poll();
+            for (T dependent : dependents.getOrDefault(current, Collections.emptySet())) {
+                if (affectedProjects.add(dependent)) {
+                    causes.put(dependent, current);
+                }
+
+                if (propagationMode.propagatesThrough(edgeConfigurations.apply(current, dependent)) && propagatingProjects.add(dependent)) {
+                    queue.add(dependent);
+                }
+            }
+        }
 
-        result.addAll(dependents);
-        return result;
+        return causes;
     }
 
     public void printDebug() {
@@ -123,6 +313,8 @@ public class ProjectDependencyProvider {
             projectDependentsMap.forEach((key, value) -> logger.lifecycle("Project: {} is a direct dependent for the following {}", key, value));
             logger.lifecycle("Printing project nodes");
             logger.lifecycle(rootNode.toString());
+            logger.lifecycle("Printing included build modules");
+            logger.lifecycle(getIncludedBuildProvider().toString());
             logger.lifecycle("");
         }
     }
@@ -0,0 +1,134 @@
+package io.github.mklueh.affected.providers;
+
+import io.github.mklueh.affected.configuration.AffectedConfiguration;
+import io.github.mklueh.affected.configuration.PseudoProject;
+import io.github.mklueh.affected.settings.ProjectGraph;
+import io.github.mklueh.affected.utils.PathTrie;
+import org.gradle.api.Project;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Maps changed files to the configured pseudo projects and finds the pseudo projects depending on affected Gradle projects.
+ * <p>
+ * A changed file belongs to the deepest pseudo project directory containing it, unless a Gradle subproject
+ * is nested inside that directory and contains the file as well.
+ */
+public class PseudoProjectProvider {
+
+    private final Path rootDir;
+    private final Map<String, PseudoProject> pseudoProjects = new TreeMap<>();
+    private final PathTrie<PseudoProject> pseudoProjectDirs = new PathTrie<>();
+    private final PathTrie<String> projectDirs = new PathTrie<>();
+
+    public PseudoProjectProvider(Project project, AffectedConfiguration configuration) {
+        this(project.getRootProject().getProjectDir().toPath(),
+                configuration.getPseudoProjects().getOrElse(Collections.emptyMap()).values(),
+                project.getRootProject().getSubprojects().stream()
+                        .map(p -> ProjectGraph.toRelativePath(project.getRootProject().getProjectDir().toPath(), p.getProjectDir()))
+                        .collect(Collectors.toList()));
+
+        for (PseudoProject pseudoProject : pseudoProjects.values()) {
+            for (String dependency : pseudoProject.getDependencies()) {
+                if (project.getRootProject().findProject(dependency) == null) {
+                    throw new IllegalArgumentException(String.format("affected plugin: pseudo project %s depends on unknown project %s",
+                            pseudoProject.getName(), dependency));
+                }
+            }
+        }
+    }
+
+    /**
+     * @param rootDir        the root project directory
+     * @param pseudoProjects the configured pseudo projects
+     * @param projectDirs    the directories of the Gradle subprojects relative to the root project
+     */
+    PseudoProjectProvider(Path rootDir, Collection<PseudoProject> pseudoProjects, Collection<String> projectDirs) {
+        this.rootDir = rootDir;
+
+        for (PseudoProject pseudoProject : pseudoProjects) {
+            if (pseudoProject.getDirectory().isEmpty()) {
+                throw new IllegalArgumentException(String.format("affected plugin: pseudo project %s can not be the root directory", pseudoProject.getName()));
+            }
+            if (pseudoProject.getCommand().isEmpty()) {
+                throw new IllegalArgumentException(String.format("affected plugin: pseudo project %s has no command", pseudoProject.getName()));
+            }
+            this.pseudoProjects.put(pseudoProject.getName(), pseudoProject);
+            this.pseudoProjectDirs.put(pseudoProject.getDirectory(), pseudoProject);
+        }
+
+        projectDirs.forEach(dir -> this.projectDirs.put(dir, dir));
+    }
+
+    public boolean isEmpty() {
+        return pseudoProjects.isEmpty();
+    }
+
+    /**
+     * Gets the configured pseudo projects
+     *
+     * @return the pseudo projects sorted by name
+     */
+    public Collection<PseudoProject> getPseudoProjects() {
+        return pseudoProjects.values();
+    }
+
+    public File getDirectory(PseudoProject pseudoProject) {
+        return rootDir.resolve(pseudoProject.getDirectory()).toFile();
+    }
+
+    /**
+     * Finds the pseudo project containing the changed file
+     *
+     * @return the pseudo project or empty if the file belongs to a Gradle project
+     */
+    public Optional<PseudoProject> findPseudoProjectOfChangedFile(File file) {
+        if (pseudoProjects.isEmpty()) {
+            return Optional.empty();
+        }
+        return findPseudoProject(ProjectGraph.toRelativePath(rootDir, file.getAbsoluteFile()));
+    }
+
+    Optional<PseudoProject> findPseudoProject(String relativePath) {
+        Optional<PseudoProject> pseudoProject = pseudoProjectDirs.find(relativePath).stream()
+                .max(Comparator.comparingInt(p -> p.getDirectory().length()));
+
+        if (pseudoProject.isEmpty()) {
+            return Optional.empty();
+        }
+
+        //a subproject inside the pseudo project directory keeps its own files
+        int pseudoProjectDirLength = pseudoProject.get().getDirectory().length();
+        boolean nestedProject = projectDirs.find(relativePath).stream().anyMatch(dir -> dir.length() > pseudoProjectDirLength);
+        return nestedProject ? Optional.empty() : pseudoProject;
+    }
+
+    /**
+     * Finds the pseudo projects depending on any of the affected Gradle projects
+     *
+     * @param affectedProjectPaths the paths of the affected Gradle projects
+     * @return the pseudo projects by name, each mapped to the first of its dependencies that is affected
+     */
+    public Map<String, String> findDependentPseudoProjects(Set<String> affectedProjectPaths) {
+        Map<String, String> dependents = new LinkedHashMap<>();
+
+        for (PseudoProject pseudoProject : pseudoProjects.values()) {
+            pseudoProject.getDependencies().stream()
+                    .filter(affectedProjectPaths::contains)
+                    .findFirst()
+                    .ifPresent(cause -> dependents.put(pseudoProject.getName(), cause));
+        }
+
+        return dependents;
+    }
+}
@@ -0,0 +1,316 @@
+package io.github.mklueh.affected.providers;
+
+import io.github.mklueh.affected.cache.AffectedStateService;
+import io.github.mklueh.affected.settings.ProjectGraph;
+import io.github.mklueh.affected.utils.HashUtil;
+import lombok.SneakyThrows;
+import org.gradle.api.Project;
+import org.gradle.api.Task;
+import org.gradle.api.logging.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Maps files outside of project directories, like config/checkstyle or proto, to the projects whose target tasks
+ * or the tasks they depend on declare them as inputs.
+ * <p>
+ * Collecting the inputs may resolve dependencies, so the index is cached and only rebuilt
+ * if the targets, a build script or the build logic changed.
+ * The input files are indexed themselves, and so are the directories all of whose files are inputs, like a declared
+ * input directory, which keeps the index valid when files are added to such a directory after it was built.
+ */
+public class TaskInputOwnershipIndex {
+
+    public static final String DEFAULT_LOCATION = ".gradle/affected/task-input-ownership.properties";
+
+    private static final String KEY = "key";
+    private static final String INPUT_PREFIX = "input.";
+    private static final String DIRECTORY_PREFIX = "directory.";
+
+    //indexes built with another version map different paths and are rebuilt
+    private static final int VERSION = 3;
+
+    private final String key;
+
+    //owning project paths by input file path relative to the root directory
+    private final Map<String, Set<String>> owners;
+
+    //owning project paths by the path of a directory only containing input files
+    private final Map<String, Set<String>> directoryOwners;
+
+    TaskInputOwnershipIndex(String key, Map<String, Set<String>> owners, Map<String, Set<String>> directoryOwners) {
+        this.key = key;
+        this.owners = owners;
+        this.directoryOwners = directoryOwners;
+    }
+
+    /**
+     * Loads the cached index or creates it from the task inputs of the targets in every project
+     *
+     * @return the index
+     */
+    public static TaskInputOwnershipIndex loadOrCreate(Project rootProject, List<String> targets) {
+        Logger logger = rootProject.getLogger();
+        File file = new File(rootProject.getProjectDir(), DEFAULT_LOCATION);
+        String key = createKey(rootProject, targets);
+
+        Optional<TaskInputOwnershipIndex> cached = load(file).filter(index -> index.key.equals(key));
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+
+        logger.lifecycle("affected plugin: indexing the inputs of {} tasks", targets);
+        TaskInputOwnershipIndex index = create(rootProject, targets, key);
+        index.save(file);
+        return index;
+    }
+
+    /**
+     * Finds the projects whose target inputs contain the file, or for a file the index does not know,
+     * like one added since it was built, the nearest directory containing it whose files were all inputs
+     *
+     * @param path the file path relative to the root directory with / as separator
+     * @return the owning project paths
+     */
+    public Set<String> findOwners(String path) {
+        Set<String> fileOwners = owners.get(path);
+        if (fileOwners != null) {
+            return fileOwners;
+        }
+
+        for (int end = path.lastIndexOf('/'); end > 0; end = path.lastIndexOf('/', end - 1)) {
+            Set<String> projects = directoryOwners.get(path.substring(0, end));
+            if (projects != null) {
+                return projects;
+            }
+        }
+
+        return Set.of();
+    }
+
+    /**
+     * Finds the inputs the target tasks of the project declare
+     *
+     * @param projectPath the project path
+     * @return the indexed files and directories relative to the root directory with / as separator
+     */
+    public Set<String> findInputs(String projectPath) {
+        return Stream.concat(owners.entrySet().stream(), directoryOwners.entrySet().stream())
+                .filter(e -> e.getValue().contains(projectPath))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toCollection(TreeSet::new));
+    }
+
+    private static TaskInputOwnershipIndex create(Project rootProject, List<String> targets, String key) {
+        Path rootDir = rootProject.getProjectDir().toPath().toAbsolutePath().normalize();
+        List<Path> excludedDirs = rootProject.getAllprojects().stream()
+                .flatMap(p -> Stream.of(p.getBuildDir(), new File(p.getProjectDir(), ".gradle")))
+                .map(dir -> dir.toPath().toAbsolutePath().normalize())
+                .collect(Collectors.toList());
+        List<Path> projectDirs = rootProject.getAllprojects().stream()
+                .map(p -> p.getProjectDir().toPath().toAbsolutePath().normalize())
+                .collect(Collectors.toList());
+
+        //owning project paths by absolute input path
+        Map<Path, Set<String>> inputs = new HashMap<>();
+
+        for (Project project : rootProject.getAllprojects()) {
+            Set<Task> tasks = targets.stream()
+                    .map(target -> project.getTasks().findByName(target))
+                    .filter(Objects::nonNull)
+                    .flatMap(targetTask -> findTasksOfProject(targetTask).stream())
+                    .collect(Collectors.toCollection(LinkedHashSet::new));
+
+            Path projectDir = project.getProjectDir().toPath().toAbsolutePath().normalize();
+
+            for (Task task : tasks) {
+                for (File input : getInputFiles(task)) {
+                    Path path = input.toPath().toAbsolutePath().normalize();
+
+                    //files inside the project are already mapped by its directory
+                    if (!path.startsWith(rootDir) || path.startsWith(projectDir) || excludedDirs.stream().anyMatch(path::startsWith)) {
+                        continue;
+                    }
+
+                    inputs.computeIfAbsent(path, p -> new TreeSet<>()).add(project.getPath());
+                }
+            }
+        }
+
+        Map<String, Set<String>> owners = new TreeMap<>();
+        Map<String, Set<String>> directoryOwners = new TreeMap<>();
+
+        inputs.forEach((path, projects) -> {
+            //a declared input directory that is not expanded to its files
+            Map<String, Set<String>> target = Files.isDirectory(path) ? directoryOwners : owners;
+            target.put(ProjectGraph.toRelativePath(rootDir, path.toFile()), projects);
+        });
+
+        findInputDirectories(inputs, projectDirs, excludedDirs).forEach((dir, projects) ->
+                directoryOwners.merge(ProjectGraph.toRelativePath(rootDir, dir.toFile()), projects, (a, b) -> {
+                    Set<String> merged = new TreeSet<>(a);
+                    merged.addAll(b);
+                    return merged;
+                }));
+
+        return new TaskInputOwnershipIndex(key, owners, directoryOwners);
+    }
+
+    /**
+     * Finds the directories containing input files whose files are all inputs, going up from each input file
+     * until a directory contains other files or a project directory, like the root directory
+     *
+     * @param inputs the owning project paths by absolute input path
+     * @return the owners of all inputs inside each directory
+     */
+    static Map<Path, Set<String>> findInputDirectories(Map<Path, Set<String>> inputs, List<Path> projectDirs, List<Path> excludedDirs) {
+        Map<Path, Set<String>> directories = new HashMap<>();
+        Set<Path> mixedDirectories = new HashSet<>();
+
+        for (Path input : inputs.keySet()) {
+            for (Path dir = input.getParent(); dir != null; dir = dir.getParent()) {
+                Path current = dir;
+                if (directories.containsKey(dir) || mixedDirectories.contains(dir)
+                        || projectDirs.stream().anyMatch(projectDir -> projectDir.startsWith(current))) {
+                    break;
+                }
+
+                List<Path> files = findFiles(dir, excludedDirs);
+                if (files.isEmpty() || !inputs.keySet().containsAll(files)) {
+                    mixedDirectories.add(dir);
+                    break;
+                }
+
+                directories.put(dir, files.stream()
+                        .flatMap(file -> inputs.get(file).stream())
+                        .collect(Collectors.toCollection(TreeSet::new)));
+            }
+        }
+
+        return directories;
+    }
+
+    @SneakyThrows
+    private static List<Path> findFiles(Path dir, List<Path> excludedDirs) {
+        try (Stream<Path> files = Files.walk(dir)) {
+            return files
+                    .filter(file -> excludedDirs.stream().noneMatch(file::startsWith))
+                    .filter(Files::isRegularFile)
+                    .map(file -> file.toAbsolutePath().normalize())
+                    .collect(Collectors.toList());
+        }
+    }
+
+    //the target and the tasks of the same project it depends on, other projects are covered by the project dependencies
+    private static Set<Task> findTasksOfProject(Task target) {
+        Set<Task> tasks = new LinkedHashSet<>(List.of(target));
+        Deque<Task> queue = new ArrayDeque<>(tasks);
+
+        while (!queue.isEmpty()) {
+            Task task = queue.poll();
+            for (Task dependency : task.getTaskDependencies().getDependencies(task)) {
+                if (dependency.getProject() == target.getProject() && tasks.add(dependency)) {
+                    queue.add(dependency);
+                }
+            }
+        }
+
+        return tasks;
+    }
+
+    private static Set<File> getInputFiles(Task task) {
+        try {
+            return task.getInputs().getFiles().getFiles();
+        } catch (RuntimeException e) {
+            task.getLogger().lifecycle("affected plugin: could not collect the inputs of {}: {}", task.getPath(), e.getMessage());
+            return Set.of();
+        }
+    }
+
+    //the targets, project directories, build scripts and build logic the index was built for
+    private static String createKey(Project rootProject, List<String> targets) {
+        Path rootDir = rootProject.getProjectDir().toPath();
+        String projects = rootProject.getAllprojects().stream()
+                .sorted(Comparator.comparing(Project::getPath))
+                .map(p -> p.getPath() + "=" + ProjectGraph.toRelativePath(rootDir, p.getProjectDir())
+                        + "@" + ProjectGraph.hashBuildScripts(p.getProjectDir()))
+                .collect(Collectors.joining("\n"));
+        //task inputs configured by buildSrc, convention plugins or applied scripts
+        String buildLogic = AffectedStateService.get(rootProject.getGradle()).getBuildFingerprint(rootProject);
+        return HashUtil.sha256(VERSION + "\n" + String.join(",", targets) + "\n" + projects + "\n" + buildLogic);
+    }
+
+    private static Optional<TaskInputOwnershipIndex> load(File file) {
+        if (!file.isFile()) {
+            return Optional.empty();
+        }
+
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+
+        Map<String, Set<String>> owners = new TreeMap<>();
+        Map<String, Set<String>> directoryOwners = new TreeMap<>();
+        for (String name : properties.stringPropertyNames()) {
+            Set<String> projects = Arrays.stream(properties.getProperty(name).split(","))
+                    .collect(Collectors.toCollection(TreeSet::new));
+            if (name.startsWith(INPUT_PREFIX)) {
+                owners.put(name.substring(INPUT_PREFIX.length()), projects);
+            } else if (name.startsWith(DIRECTORY_PREFIX)) {
+                directoryOwners.put(name.substring(DIRECTORY_PREFIX.length()), projects);
+            }
+        }
+
+        return Optional.of(new TaskInputOwnershipIndex(properties.getProperty(KEY, ""), owners, directoryOwners));
+    }
+
+    @SneakyThrows
+    private void save(File file) {
+        Properties properties = new Properties();
+        properties.setProperty(KEY, key);
+        owners.forEach((path, projects) -> properties.setProperty(INPUT_PREFIX + path, String.join(",", projects)));
+        directoryOwners.forEach((path, projects) -> properties.setProperty(DIRECTORY_PREFIX + path, String.join(",", projects)));
+
+        Path directory = file.getAbsoluteFile().getParentFile().toPath();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, file.getName(), ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            properties.store(writer, "affected plugin task input ownership");
+        }
+        Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public String toString() {
+        return Stream.concat(owners.entrySet().stream(), directoryOwners.entrySet().stream().map(e -> Map.entry(e.getKey() + "/", e.getValue())))
+                .map(e -> e.getKey() + " -> " + e.getValue())
+                .collect(Collectors.joining("\n"));
+    }
+}
@@ -0,0 +1,268 @@
+package io.github.mklueh.affected.providers.catalog;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal TOML parser covering what version catalogs use: tables, dotted keys, strings, inline tables and arrays.
+ * <p>
+ * Values are returned as {@link String} (also for numbers and booleans), {@link Map} and {@link List}.
+ */
+class TomlParser {
+
+    private final String input;
+    private int position;
+
+    private TomlParser(String input) {
+        this.input = input;
+    }
+
+    /**
+     * Parses the TOML document
+     *
+     * @return the root table
+     * @throws IllegalArgumentException if the document is not valid
+     */
+    static Map<String, Object> parse(String input) {
+        return new TomlParser(input).parseDocument();
+    }
+
+    private Map<String, Object> parseDocument() {
+        Map<String, Object> root = new LinkedHashMap<>();
+        Map<String, Object> current = root;
+
+        while (true) {
+            skipWhitespaceAndComments(true);
+            if (position >= input.length()) {
+                return root;
+            }
+
+            if (peek() == '[') {
+                position++;
+                //array of tables are not used by version catalogs, they are merged into one table
+                boolean arrayOfTables = peek() == '[';
+                if (arrayOfTables) {
+                    position++;
+                }
+                List<String> path = parseKey();
+                expect(']');
+                if (arrayOfTables) {
+                    expect(']');
+                }
+                current = root;
+                for (String segment : path) {
+                    current = getOrCreateTable(current, segment);
+                }
+            } else {
+                List<String> key = parseKey();
+                expect('=');
+                put(current, key, parseValue());
+            }
+
+            skipWhitespaceAndComments(false);
+            if (position < input.length() && peek() != '\n' && peek() != '\r') {
+                throw error("expected end of line");
+            }
+        }
+    }
+
+    private List<String> parseKey() {
+        List<String> segments = new ArrayList<>();
+        do {
+            skipWhitespaceAndComments(false);
+            char c = peek();
+            if (c == '"' || c == '\'') {
+                segments.add(parseString());
+            } else {
+                int start = position;
+                while (position < input.length() && isBareKeyChar(peek())) {
+                    position++;
+                }
+                if (start == position) {
+                    throw error("expected key");
+                }
+                segments.add(input.substring(start, position));
+            }
+            skipWhitespaceAndComments(false);
+        } while (consume('.'));
+        return segments;
+    }
+
+    private Object parseValue() {
+        skipWhitespaceAndComments(false);
+        char c = peek();
+
+        if (c == '"' || c == '\'') {
+            return parseString();
+        } else if (c == '{') {
+            return parseInlineTable();
+        } else if (c == '[') {
+            return parseArray();
+        }
+
+        //numbers, booleans and dates are kept as text
+        int start = position;
+        while (position < input.length() && ",]}#\r\n".indexOf(peek()) < 0) {
+            position++;
+        }
+        String value = input.substring(start, position).trim();
+        if (value.isEmpty()) {
+            throw error("expected value");
+        }
+        return value;
+    }
+
+    private Map<String, Object> parseInlineTable() {
+        expect('{');
+        Map<String, Object> table = new LinkedHashMap<>();
+        skipWhitespaceAndComments(false);
+        if (consume('}')) {
+            return table;
+        }
+        do {
+            List<String> key = parseKey();
+            expect('=');
+            put(table, key, parseValue());
+            skipWhitespaceAndComments(false);
+        } while (consume(','));
+        expect('}');
+        return table;
+    }
+
+    private List<Object> parseArray() {
+        expect('[');
+        List<Object> array = new ArrayList<>();
+        while (true) {
+            skipWhitespaceAndComments(true);
+            if (consume(']')) {
+                return array;
+            }
+            array.add(parseValue());
+            skipWhitespaceAndComments(true);
+            if (!consume(',')) {
+                skipWhitespaceAndComments(true);
+                expect(']');
+                return array;
+            }
+        }
+    }
+
+    private String parseString() {
+        char quote = input.charAt(position);
+        boolean multiLine = input.startsWith(String.valueOf(quote).repeat(3), position);
+        position += multiLine ? 3 : 1;
+
+        StringBuilder builder = new StringBuilder();
+        while (true) {
+            if (position >= input.length()) {
+                throw error("unterminated string");
+            }
+            char c = input.charAt(position);
+            if (multiLine ? input.startsWith(String.valueOf(quote).repeat(3), position) : c == quote) {
+                position += multiLine ? 3 : 1;
+                return builder.toString();
+            }
+            if (!multiLine && (c == '\n' || c == '\r')) {
+                throw error("unterminated string");
+            }
+            if (c == '\\' && quote == '"') {
+                position++;
+                builder.append(parseEscape());
+            } else {
+                builder.append(c);
+                position++;
+            }
+        }
+    }
+
+    private String parseEscape() {
+        char c = input.charAt(position++);
+        switch (c) {
+            case 'n':
+                return "\n";
+            case 't':
+                return "\t";
+            case 'r':
+                return "\r";
+            case 'b':
+                return "\b";
+            case 'f':
+                return "\f";
+            case 'u':
+            case 'U':
+                int length = c == 'u' ? 4 : 8;
+                String hex = input.substring(position, Math.min(position + length, input.length()));
+                position += length;
+                return new String(Character.toChars(Integer.parseInt(hex, 16)));
+            default:
+                return String.valueOf(c);
+        }
+    }
+
+    private void skipWhitespaceAndComments(boolean newLines) {
+        while (position < input.length()) {
+            char c = peek();
+            if (c == ' ' || c == '\t' || (newLines && (c == '\n' || c == '\r'))) {
+                position++;
+            } else if (c == '#') {
+                while (position < input.length() && peek() != '\n') {
+                    position++;
+                }
+            } else {
+                return;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> getOrCreateTable(Map<String, Object> table, String key) {
+        Object value = table.computeIfAbsent(key, k -> new LinkedHashMap<String, Object>());
+        if (!(value instanceof Map)) {
+            throw new IllegalArgumentException(String.format("Invalid TOML: %s is not a table", key));
+        }
+        return (Map<String, Object>) value;
+    }
+
+    private static void put(Map<String, Object> table, List<String> key, Object value) {
+        Map<String, Object> current = table;
+        for (int i = 0; i < key.size() - 1; i++) {
+            current = getOrCreateTable(current, key.get(i));
+        }
+        current.put(key.get(key.size() - 1), value);
+    }
+
+    private static boolean isBareKeyChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '-';
+    }
+
+    private char peek() {
+        return position < input.length() ? input.charAt(position) : '\0';
+    }
+
+    private boolean consume(char c) {
+        if (peek() == c) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(char c) {
+        skipWhitespaceAndComments(false);
+        if (!consume(c)) {
+            throw error("expected '" + c + "'");
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        int line = 1;
+        for (int i = 0; i < Math.min(position, input.length()); i++) {
+            if (input.charAt(i) == '\n') {
+                line++;
+            }
+        }
+        return new IllegalArgumentException(String.format("Invalid TOML at line %d: %s", line, message));
+    }
+}
@@ -0,0 +1,218 @@
+package io.github.mklueh.affected.providers.catalog;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * The libraries, bundles and plugins of a version catalog with their versions resolved,
+ * so two catalogs can be compared alias by alias.
+ * <p>
+ * Aliases are normalized like Gradle does it, so foo-bar, foo_bar and foo.bar are the same alias.
+ */
+public class VersionCatalog {
+
+    static final VersionCatalog EMPTY = new VersionCatalog(Collections.emptyMap(), Collections.emptySet(),
+            Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap());
+
+    //resolved version by name
+    private final Map<String, String> versions;
+
+    //version names referenced by libraries or plugins
+    private final Set<String> versionRefs;
+
+    //group:name@version by alias
+    private final Map<String, String> libraries;
+
+    //library aliases by bundle alias
+    private final Map<String, Set<String>> bundles;
+
+    //id@version by alias
+    private final Map<String, String> plugins;
+
+    private VersionCatalog(Map<String, String> versions, Set<String> versionRefs,
+                           Map<String, String> libraries, Map<String, Set<String>> bundles, Map<String, String> plugins) {
+        this.versions = versions;
+        this.versionRefs = versionRefs;
+        this.libraries = libraries;
+        this.bundles = bundles;
+        this.plugins = plugins;
+    }
+
+    /**
+     * Parses a version catalog in the TOML format
+     *
+     * @return the catalog
+     * @throws IllegalArgumentException if the catalog can not be parsed
+     */
+    public static VersionCatalog parse(String toml) {
+        Map<String, Object> document = TomlParser.parse(toml);
+        Map<String, Object> versions = getTable(document, "versions");
+
+        Map<String, String> libraries = new HashMap<>();
+        getTable(document, "libraries").forEach((alias, value) -> libraries.put(normalize(alias), toLibrary(value, versions)));
+
+        Map<String, Set<String>> bundles = new HashMap<>();
+        getTable(document, "bundles").forEach((alias, value) -> bundles.put(normalize(alias), toList(value).stream()
+                .map(VersionCatalog::normalize)
+                .collect(Collectors.toCollection(TreeSet::new))));
+
+        Map<String, String> plugins = new HashMap<>();
+        getTable(document, "plugins").forEach((alias, value) -> plugins.put(normalize(alias), toPlugin(value, versions)));
+
+        Map<String, String> resolvedVersions = new HashMap<>();
+        versions.forEach((name, value) -> resolvedVersions.put(name, resolveVersion(value, Collections.emptyMap())));
+
+        Set<String> versionRefs = new HashSet<>();
+        getTable(document, "libraries").values().forEach(value -> collectVersionRef(value, versionRefs));
+        getTable(document, "plugins").values().forEach(value -> collectVersionRef(value, versionRefs));
+
+        return new VersionCatalog(resolvedVersions, versionRefs, libraries, bundles, plugins);
+    }
+
+    private static void collectVersionRef(Object value, Set<String> versionRefs) {
+        if (value instanceof Map && toTable(value).get("version") instanceof Map) {
+            Object ref = toTable(toTable(value).get("version")).get("ref");
+            if (ref != null) {
+                versionRefs.add(String.valueOf(ref));
+            }
+        }
+    }
+
+    private static String toLibrary(Object value, Map<String, Object> versions) {
+        if (value instanceof String) {
+            //group:name:version or group:name
+            String notation = (String) value;
+            int versionSeparator = notation.indexOf(':', notation.indexOf(':') + 1);
+            return versionSeparator < 0 ? notation + "@" : notation.substring(0, versionSeparator) + "@" + notation.substring(versionSeparator + 1);
+        }
+
+        Map<String, Object> table = toTable(value);
+        String module = table.containsKey("module")
+                ? String.valueOf(table.get("module"))
+                : table.get("group") + ":" + table.get("name");
+        return module + "@" + resolveVersion(table.get("version"), versions);
+    }
+
+    private static String toPlugin(Object value, Map<String, Object> versions) {
+        if (value instanceof String) {
+            //id:version
+            String notation = (String) value;
+            int versionSeparator = notation.indexOf(':');
+            return versionSeparator < 0 ? notation + "@" : notation.substring(0, versionSeparator) + "@" + notation.substring(versionSeparator + 1);
+        }
+
+        Map<String, Object> table = toTable(value);
+        return table.get("id") + "@" + resolveVersion(table.get("version"), versions);
+    }
+
+    private static String resolveVersion(Object version, Map<String, Object> versions) {
+        if (version == null) {
+            return "";
+        }
+        if (version instanceof Map && toTable(version).containsKey("ref")) {
+            String ref = String.valueOf(toTable(version).get("ref"));
+            return resolveVersion(versions.get(ref), Collections.emptyMap());
+        }
+        if (version instanceof Map) {
+            //rich versions like strictly and prefer, sorted so the order in the file does not matter
+            return new TreeMap<>(toTable(version)).toString();
+        }
+        return String.valueOf(version);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> getTable(Map<String, Object> document, String name) {
+        Object table = document.get(name);
+        return table instanceof Map ? (Map<String, Object>) table : Collections.emptyMap();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> toTable(Object value) {
+        if (!(value instanceof Map)) {
+            throw new IllegalArgumentException("Invalid version catalog entry " + value);
+        }
+        return (Map<String, Object>) value;
+    }
+
+    private static List<?> toList(Object value) {
+        if (!(value instanceof List)) {
+            throw new IllegalArgumentException("Invalid version catalog bundle " + value);
+        }
+        return (List<?>) value;
+    }
+
+    private static String normalize(Object alias) {
+        return String.valueOf(alias).replace('-', '.').replace('_', '.');
+    }
+
+    /**
+     * Compares this catalog with the catalog of the base commit
+     *
+     * @return the changes, containing added, removed and modified aliases
+     */
+    public VersionCatalogChanges compareTo(VersionCatalog base) {
+        Set<String> changedLibraries = findChanged(base.libraries, libraries);
+
+        Set<String> recomposedBundles = findChanged(base.bundles, bundles);
+
+        //the modules of changed libraries, including those of the base for removed or renamed ones
+        Set<String> changedModules = new TreeSet<>();
+        for (String alias : changedLibraries) {
+            addModule(changedModules, libraries.get(alias));
+            addModule(changedModules, base.libraries.get(alias));
+        }
+
+        //projects using a bundle with added or removed libraries declare the modules of those libraries
+        for (String alias : recomposedBundles) {
+            for (VersionCatalog catalog : List.of(this, base)) {
+                catalog.bundles.getOrDefault(alias, Collections.emptySet())
+                        .forEach(library -> addModule(changedModules, catalog.libraries.get(library)));
+            }
+        }
+
+        //a bundle also changes if any of its libraries changed
+        Set<String> changedBundles = new TreeSet<>(recomposedBundles);
+        bundles.forEach((alias, bundleLibraries) -> {
+            if (bundleLibraries.stream().anyMatch(changedLibraries::contains)) {
+                changedBundles.add(alias);
+            }
+        });
+
+        Set<String> changedPlugins = findChanged(base.plugins, plugins);
+        Set<String> changedPluginIds = new TreeSet<>();
+        for (String alias : changedPlugins) {
+            addModule(changedPluginIds, plugins.get(alias));
+            addModule(changedPluginIds, base.plugins.get(alias));
+        }
+
+        //versions can also be used directly in build scripts, which can not be traced to projects
+        Set<String> changedUnreferencedVersions = findChanged(base.versions, versions).stream()
+                .filter(name -> !versionRefs.contains(name) && !base.versionRefs.contains(name))
+                .collect(Collectors.toCollection(TreeSet::new));
+
+        return new VersionCatalogChanges(changedLibraries, changedBundles, changedPlugins, changedModules, changedPluginIds,
+                changedUnreferencedVersions);
+    }
+
+    private static void addModule(Set<String> modules, String definition) {
+        if (definition != null) {
+            modules.add(definition.substring(0, definition.indexOf('@')));
+        }
+    }
+
+    private static <T> Set<String> findChanged(Map<String, T> base, Map<String, T> head) {
+        Set<String> aliases = new HashSet<>(base.keySet());
+        aliases.addAll(head.keySet());
+        return aliases.stream()
+                .filter(alias -> !Objects.equals(base.get(alias), head.get(alias)))
+                .collect(Collectors.toCollection(TreeSet::new));
+    }
+}
@@ -0,0 +1,37 @@
+package io.github.mklueh.affected.providers.catalog;
+
+import lombok.Data;
+
+import java.util.Set;
+
+/**
+ * The aliases that differ between two version catalogs
+ * The getters are auto-generated by Lombok
+ */
+@Data
+public class VersionCatalogChanges {
+
+    private final Set<String> libraries;
+
+    private final Set<String> bundles;
+
+    private final Set<String> plugins;
+
+    //group:name of the changed libraries
+    private final Set<String> modules;
+
+    //ids of the changed plugins
+    private final Set<String> pluginIds;
+
+    //changed versions that are not referenced by any library or plugin
+    private final Set<String> unreferencedVersions;
+
+    public boolean isEmpty() {
+        return libraries.isEmpty() && bundles.isEmpty() && plugins.isEmpty() && unreferencedVersions.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("libraries %s, bundles %s, plugins %s, unreferenced versions %s", libraries, bundles, plugins, unreferencedVersions);
+    }
+}
@@ -0,0 +1,147 @@
+package io.github.mklueh.affected.providers.catalog;
+
+import io.github.mklueh.affected.cache.AffectedStateService;
+import io.github.mklueh.affected.configuration.AffectedConfiguration;
+import io.github.mklueh.affected.providers.git.GitCommandProvider;
+import io.github.mklueh.affected.providers.git.GitUtil;
+import io.github.mklueh.affected.utils.LogUtil;
+import io.github.mklueh.affected.utils.Pair;
+import org.gradle.api.Project;
+import org.gradle.api.artifacts.ExternalModuleDependency;
+import org.gradle.api.logging.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * Finds the projects affected by a changed version catalog.
+ * <p>
+ * The catalog is read at the base and the head of the comparison, a project is affected if it declares
+ * a dependency on a changed library or applies a changed plugin.
+ */
+public class VersionCatalogChangesProvider {
+
+    private final Logger logger;
+    private final Project project;
+    private final AffectedConfiguration configuration;
+    private final File gitRoot;
+    private final Pair<String, String> compareRefs;
+
+    public VersionCatalogChangesProvider(Project project, AffectedConfiguration configuration) {
+        this(project, configuration, new GitCommandProvider(project, configuration).getCompareRefs());
+    }
+
+    /**
+     * @param compareRefs the base and head commit to read the catalog at, the head is null for the working tree
+     */
+    public VersionCatalogChangesProvider(Project project, AffectedConfiguration configuration, Pair<String, String> compareRefs) {
+        this.project = project.getRootProject();
+        this.logger = project.getLogger();
+        this.configuration = configuration;
+        this.gitRoot = GitUtil.getGitRootDir(project);
+        this.compareRefs = compareRefs;
+    }
+
+    /**
+     * Finds the projects affected by the changes of the catalog
+     *
+     * @param catalog the catalog path relative to the git root
+     * @return the affected projects with the changed alias that affected them or an empty optional
+     * if the changes can not be traced to projects and all projects have to be considered affected
+     */
+    public Optional<Map<Project, String>> findAffectedProjects(String catalog) {
+        VersionCatalogChanges changes;
+
+        try {
+            VersionCatalog base = readCommitted(compareRefs.getKey(), catalog);
+            VersionCatalog head = compareRefs.getValue() == null
+                    ? readWorkingTree(catalog)
+                    : readCommitted(compareRefs.getValue(), catalog);
+            changes = head.compareTo(base);
+        } catch (IllegalArgumentException e) {
+            logger.lifecycle("affected plugin: could not parse version catalog {}: {}", catalog, e.getMessage());
+            return Optional.empty();
+        }
+
+        if (LogUtil.shouldLog(configuration)) {
+            logger.lifecycle("affected plugin: version catalog {} changed {}", catalog, changes);
+        }
+
+        if (!changes.getUnreferencedVersions().isEmpty()) {
+            logger.lifecycle("affected plugin: version catalog {} changed versions {} that are not used by any library or plugin",
+                    catalog, changes.getUnreferencedVersions());
+            return Optional.empty();
+        }
+
+        Map<Project, String> affected = new HashMap<>();
+        Set<String> unusedModules = new TreeSet<>(changes.getModules());
+        Set<String> unusedPluginIds = new TreeSet<>(changes.getPluginIds());
+
+        for (Project p : project.getAllprojects()) {
+            Set<String> declaredModules = p.getConfigurations().stream()
+                    .flatMap(c -> c.getDependencies().withType(ExternalModuleDependency.class).stream())
+                    .map(d -> d.getGroup() + ":" + d.getName())
+                    .collect(Collectors.toSet());
+            Set<String> appliedPluginIds = changes.getPluginIds().stream()
+                    .filter(id -> p.getPluginManager().hasPlugin(id))
+                    .collect(Collectors.toCollection(TreeSet::new));
+
+            unusedModules.removeAll(declaredModules);
+            unusedPluginIds.removeAll(appliedPluginIds);
+
+            changes.getModules().stream()
+                    .filter(declaredModules::contains)
+                    .findFirst()
+                    .ifPresent(module -> affected.put(p, catalog + " library " + module));
+
+            appliedPluginIds.stream()
+                    .findFirst()
+                    .ifPresent(id -> affected.putIfAbsent(p, catalog + " plugin " + id));
+        }
+
+        //used somewhere the projects do not show, like a buildscript classpath or the build logic
+        if (!unusedModules.isEmpty() || !unusedPluginIds.isEmpty()) {
+            logger.lifecycle("affected plugin: version catalog {} changed libraries {} and plugins {} that no project declares",
+                    catalog, unusedModules, unusedPluginIds);
+            return Optional.empty();
+        }
+
+        return Optional.of(affected);
+    }
+
+    private VersionCatalog readCommitted(String ref, String catalog) {
+        List<String> lines;
+
+        try {
+            lines = AffectedStateService.get(project.getGradle()).runGitCommand(gitRoot, String.format("git show %s:%s", ref, catalog));
+        } catch (Exception e) {
+            //the catalog did not exist yet
+            return VersionCatalog.EMPTY;
+        }
+
+        return VersionCatalog.parse(String.join("\n", lines));
+    }
+
+    private VersionCatalog readWorkingTree(String catalog) {
+        File file = new File(gitRoot, catalog);
+
+        if (!file.isFile()) {
+            return VersionCatalog.EMPTY;
+        }
+
+        try {
+            return VersionCatalog.parse(Files.readString(file.toPath(), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package io.github.mklueh.affected.providers.cosmetic;
+
+import io.github.mklueh.affected.providers.git.GitCommandProvider;
+import io.github.mklueh.affected.providers.git.GitUtil;
+import org.gradle.api.logging.Logger;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Drops changed Java, Kotlin and Groovy sources whose changes only touch whitespace, comments or the order of imports,
+ * like reformatting commits or license header updates.
+ * <p>
+ * The diff of all changed sources is streamed from a single git process with the whole file as context,
+ * so both versions of every file are rebuilt from its hunks and compared after normalization, while the next
+ * file is still being read. A changed line alone can not tell whether it is inside a block comment.
+ * Added, deleted and binary files, and files inside submodules, are always kept.
+ */
+public class CosmeticChangesFilter {
+
+    private static final List<String> SOURCE_EXTENSIONS = List.of(".java", ".kt", ".kts", ".groovy", ".gradle");
+
+    //enough context lines to get the whole file in one hunk
+    private static final int CONTEXT_LINES = 1_000_000;
+
+    private final File gitRoot;
+    private final Logger logger;
+
+    public CosmeticChangesFilter(File gitRoot, Logger logger) {
+        this.gitRoot = gitRoot;
+        this.logger = logger;
+    }
+
+    /**
+     * Removes the sources with cosmetic changes only
+     *
+     * @param changes     the changed paths relative to the git root
+     * @param diffCommand the git diff --name-only command that found the changes
+     * @return the changes without the cosmetically changed sources
+     */
+    public List<String> filter(List<String> changes, String diffCommand) {
+        if (changes.stream().noneMatch(CosmeticChangesFilter::isSource)) {
+            return changes;
+        }
+
+        String pathspecs = SOURCE_EXTENSIONS.stream().map(extension -> "*" + extension).collect(Collectors.joining(" "));
+        String command = GitCommandProvider.toContentDiffCommand(diffCommand, CONTEXT_LINES) + " -- " + pathspecs;
+
+        Set<String> cosmetic;
+        try {
+            HunkParser parser = new HunkParser();
+            GitUtil.runGitCommand(gitRoot, command, parser);
+            parser.finishFile();
+
+            cosmetic = parser.results.stream()
+                    .map(CompletableFuture::join)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toSet());
+        } catch (Exception e) {
+            logger.lifecycle("affected plugin: could not read the diff of the changed sources, keeping all of them: {}", e.getMessage());
+            return changes;
+        }
+
+        if (!cosmetic.isEmpty()) {
+            logger.lifecycle("affected plugin: ignoring {} sources with only whitespace, comment or import changes", cosmetic.size());
+            logger.info("affected plugin: sources with only cosmetic changes {}", cosmetic);
+        }
+
+        return changes.stream()
+                .filter(file -> !cosmetic.contains(file))
+                .collect(Collectors.toList());
+    }
+
+    private static boolean isSource(String path) {
+        return SOURCE_EXTENSIONS.stream().anyMatch(path::endsWith);
+    }
+
+    /**
+     * Rebuilds the base and head version of every file from the diff lines, the comparison of a finished file runs in the background
+     */
+    private static class HunkParser implements Consumer<String> {
+
+        //the path of the file if only cosmetic changes were found, null otherwise
+        private final List<CompletableFuture<String>> results = new ArrayList<>();
+
+        private String path;
+        private boolean inHunk;
+        private boolean bothExist;
+        private StringBuilder base;
+        private StringBuilder head;
+
+        @Override
+        public void accept(String line) {
+            if (line.startsWith("diff --git ")) {
+                finishFile();
+                inHunk = false;
+                bothExist = true;
+                base = new StringBuilder();
+                head = new StringBuilder();
+                return;
+            }
+
+            if (base == null) {
+                return;
+            }
+
+            if (!inHunk) {
+                parseHeader(line);
+            } else if (line.startsWith("+")) {
+                head.append(line, 1, line.length()).append('\n');
+            } else if (line.startsWith("-")) {
+                base.append(line, 1, line.length()).append('\n');
+            } else if (line.startsWith(" ") || line.isEmpty()) {
+                String context = line.isEmpty() ? "" : line.substring(1);
+                base.append(context).append('\n');
+                head.append(context).append('\n');
+            }
+            //another hunk header or a no newline at end of file marker
+        }
+
+        private void parseHeader(String line) {
+            if (line.equals("--- /dev/null") || line.equals("+++ /dev/null")) {
+                bothExist = false;
+            } else if (line.startsWith("+++ b/")) {
+                path = line.substring("+++ b/".length());
+            } else if (line.startsWith("@@")) {
+                inHunk = true;
+            }
+        }
+
+        /**
+         * Starts comparing the file that was read last
+         */
+        void finishFile() {
+            if (path != null && bothExist && inHunk && isSource(path)) {
+                String file = path;
+                String baseSource = base.toString();
+                String headSource = head.toString();
+                results.add(CompletableFuture.supplyAsync(() -> SourceNormalizer.isCosmeticChange(baseSource, headSource) ? file : null));
+            }
+            path = null;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package io.github.mklueh.affected.providers.cosmetic;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Reduces Java, Kotlin and Groovy sources to their tokens, so two versions only differing in whitespace,
+ * comments or the order of imports are equal.
+ * <p>
+ * String and character literals, including text blocks and raw strings, are kept as single tokens.
+ * Line breaks are dropped like any other whitespace, which is an approximation for Kotlin and Groovy,
+ * where they may end a statement. Groovy slashy strings are not recognized.
+ */
+class SourceNormalizer {
+
+    private SourceNormalizer() {
+    }
+
+    /**
+     * Compares the normalized sources
+     *
+     * @return true if the sources only differ in whitespace, comments or the order of imports
+     */
+    static boolean isCosmeticChange(String base, String head) {
+        return normalize(base).equals(normalize(head));
+    }
+
+    /**
+     * Tokenizes the source without whitespace and comments, with the imports sorted in place of the first one
+     *
+     * @return the tokens
+     */
+    static List<String> normalize(String source) {
+        List<List<String>> lines = tokenize(source);
+
+        TreeSet<String> imports = new TreeSet<>();
+        int firstImport = -1;
+        for (int i = 0; i < lines.size(); i++) {
+            List<String> line = lines.get(i);
+            if (!line.isEmpty() && line.get(0).equals("import")) {
+                firstImport = firstImport < 0 ? i : firstImport;
+                imports.add(String.join(" ", line));
+            }
+        }
+
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            List<String> line = lines.get(i);
+            if (i == firstImport) {
+                tokens.addAll(imports);
+            }
+            if (line.isEmpty() || !line.get(0).equals("import")) {
+                tokens.addAll(line);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Splits the source into the tokens of every line, a literal or comment spanning lines belongs to the line it starts on
+     */
+    private static List<List<String>> tokenize(String source) {
+        List<List<String>> lines = new ArrayList<>();
+        List<String> line = new ArrayList<>();
+        int length = source.length();
+        int i = 0;
+
+        while (i < length) {
+            char c = source.charAt(i);
+
+            if (c == '\n') {
+                lines.add(line);
+                line = new ArrayList<>();
+                i++;
+            } else if (Character.isWhitespace(c)) {
+                i++;
+            } else if (source.startsWith("//", i)) {
+                i = indexOrEnd(source, "\n", i);
+            } else if (source.startsWith("/*", i)) {
+                i = indexOrEnd(source, "*/", i + 2) + 2;
+            } else if (source.startsWith("\"\"\"", i) || source.startsWith("'''", i)) {
+                String quotes = source.substring(i, i + 3);
+                int end = Math.min(indexOrEnd(source, quotes, i + 3) + 3, length);
+                line.add(source.substring(i, end));
+                i = end;
+            } else if (c == '"' || c == '\'') {
+                int end = findLiteralEnd(source, i);
+                line.add(source.substring(i, end));
+                i = end;
+            } else if (Character.isJavaIdentifierPart(c)) {
+                int end = i + 1;
+                while (end < length && Character.isJavaIdentifierPart(source.charAt(end))) {
+                    end++;
+                }
+                line.add(source.substring(i, end));
+                i = end;
+            } else {
+                line.add(String.valueOf(c));
+                i++;
+            }
+        }
+
+        lines.add(line);
+        return lines;
+    }
+
+    //the end of a single line literal after its closing quote, unterminated literals end with the line
+    private static int findLiteralEnd(String source, int start) {
+        char quote = source.charAt(start);
+        int i = start + 1;
+
+        while (i < source.length()) {
+            char c = source.charAt(i);
+            if (c == '\\') {
+                i += 2;
+            } else if (c == quote) {
+                return i + 1;
+            } else if (c == '\n') {
+                return i;
+            } else {
+                i++;
+            }
+        }
+        return source.length();
+    }
+
+    private static int indexOrEnd(String source, String text, int from) {
+        int index = source.indexOf(text, from);
+        return index < 0 ? source.length() : index;
+    }
+}
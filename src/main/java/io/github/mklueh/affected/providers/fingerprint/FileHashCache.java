@@ -0,0 +1,126 @@
+package io.github.mklueh.affected.providers.fingerprint;
+
+import io.github.mklueh.affected.utils.HashUtil;
+import lombok.Data;
+import lombok.SneakyThrows;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Thread-safe cache of file content hashes keyed by path and validated by modification time and size,
+ * so unchanged files are not read again on the next run.
+ */
+public class FileHashCache {
+
+    // map at most this many bytes at once, a single mapping is limited to 2GB
+    private static final long MAX_MAPPED_CHUNK = 64 * 1024 * 1024;
+
+    private final File cacheFile;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, Entry> usedEntries = new ConcurrentHashMap<>();
+
+    public FileHashCache(File cacheFile) {
+        this.cacheFile = cacheFile;
+        load();
+    }
+
+    /**
+     * Gets the SHA-256 of the file content, from the cache if modification time and size did not change
+     *
+     * @return the hex encoded hash or empty if the file was deleted since it was found
+     */
+    @SneakyThrows
+    public Optional<String> getHash(Path file) {
+        String key = file.toString();
+
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            long modified = attributes.lastModifiedTime().toMillis();
+            long size = attributes.size();
+
+            Entry entry = entries.get(key);
+            if (entry == null || entry.getModified() != modified || entry.getSize() != size) {
+                entry = new Entry(modified, size, hash(file, size));
+                entries.put(key, entry);
+            }
+
+            usedEntries.put(key, entry);
+            return Optional.of(entry.getHash());
+        } catch (NoSuchFileException e) {
+            //like a temporary file of an editor or a running build, it is not part of the fingerprint
+            entries.remove(key);
+            usedEntries.remove(key);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Writes the entries used in this run, dropping the ones of files that no longer exist
+     */
+    @SneakyThrows
+    public void save() {
+        Files.createDirectories(cacheFile.getParentFile().toPath());
+        List<String> lines = usedEntries.entrySet().stream()
+                .map(e -> String.format("%d\t%d\t%s\t%s", e.getValue().getModified(), e.getValue().getSize(), e.getValue().getHash(), e.getKey()))
+                .collect(Collectors.toList());
+
+        Path temp = Files.createTempFile(cacheFile.getParentFile().toPath(), cacheFile.getName(), ".tmp");
+        Files.write(temp, lines, StandardCharsets.UTF_8);
+        Files.move(temp, cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void load() {
+        if (!cacheFile.exists()) {
+            return;
+        }
+
+        try {
+            for (String line : Files.readAllLines(cacheFile.toPath(), StandardCharsets.UTF_8)) {
+                String[] parts = line.split("\t", 4);
+                if (parts.length == 4) {
+                    entries.put(parts[3], new Entry(Long.parseLong(parts[0]), Long.parseLong(parts[1]), parts[2]));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            //a broken cache only costs time, start from scratch
+            entries.clear();
+        }
+    }
+
+    @SneakyThrows
+    private static String hash(Path file, long size) {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (long position = 0; position < size; position += MAX_MAPPED_CHUNK) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAX_MAPPED_CHUNK, size - position));
+                digest.update(buffer);
+            }
+        }
+
+        return HashUtil.toHex(digest.digest());
+    }
+
+    @Data
+    private static class Entry {
+        private final long modified;
+        private final long size;
+        private final String hash;
+    }
+}
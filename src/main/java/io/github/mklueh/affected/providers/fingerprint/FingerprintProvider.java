@@ -0,0 +1,319 @@
+package io.github.mklueh.affected.providers.fingerprint;
+
+import io.github.mklueh.affected.configuration.AffectedConfiguration;
+import io.github.mklueh.affected.configuration.ConfigurationLoader;
+import io.github.mklueh.affected.providers.ChangedFilesProvider;
+import io.github.mklueh.affected.providers.git.GitUtil;
+import io.github.mklueh.affected.utils.HashUtil;
+import io.github.mklueh.affected.utils.LogUtil;
+import lombok.SneakyThrows;
+import org.gradle.api.Project;
+import org.gradle.api.logging.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Detects changed projects by comparing content fingerprints of every project directory
+ * with the fingerprints saved by the last successful run, so it does not depend on the git history.
+ * <p>
+ * A project's fingerprint covers all files in its directory except build outputs, nested projects and ignored files.
+ * The files matching the affects all regexes get a fingerprint of their own, and so does the build logic that
+ * no project declares a dependency on: the root build script, the settings, the gradle directory with the version
+ * catalogs, buildSrc and included builds.
+ */
+public class FingerprintProvider {
+
+    public static final String AFFECTS_ALL_KEY = "<affectsAll>";
+
+    public static final String BUILD_LOGIC_KEY = "<buildLogic>";
+
+    private static final String[] BUILD_LOGIC_FILES = {"settings.gradle", "settings.gradle.kts", "gradle.properties"};
+
+    private static final String[] BUILD_LOGIC_DIRS = {"gradle", "buildSrc"};
+
+    private static final String DEFAULT_DIRECTORY = ".gradle/affected";
+
+    private final Logger logger;
+    private final Project project;
+    private final AffectedConfiguration configuration;
+    private final Path basePath;
+    private final File manifestFile;
+    private final FileHashCache fileHashCache;
+    private final Map<String, String> fingerprints;
+    private final Properties previousFingerprints;
+
+    public FingerprintProvider(Project project, AffectedConfiguration configuration) {
+        this.project = project.getRootProject();
+        this.logger = project.getLogger();
+        this.configuration = configuration;
+
+        File gitRoot = GitUtil.getGitRootDir(this.project);
+        this.basePath = (gitRoot != null ? gitRoot : this.project.getProjectDir()).toPath();
+
+        File directory = new File(this.project.getProjectDir(), DEFAULT_DIRECTORY);
+        this.manifestFile = ConfigurationLoader.getFingerprintManifest(configuration, this.project)
+                .map(this.project::file)
+                .orElse(new File(directory, "fingerprints.properties"));
+        this.fileHashCache = new FileHashCache(new File(directory, "file-hashes.tsv"));
+        this.previousFingerprints = loadManifest();
+        this.fingerprints = computeFingerprints();
+        this.fileHashCache.save();
+    }
+
+    private Map<String, String> computeFingerprints() {
+        long start = System.currentTimeMillis();
+        Predicate<String> ignoredFilter = ChangedFilesProvider.createIgnoredFilter(configuration);
+        Predicate<String> affectsAllFilter = ChangedFilesProvider.createAffectsAllFilter(configuration);
+        Set<Path> projectDirs = project.getAllprojects().stream()
+                .map(p -> p.getProjectDir().toPath())
+                .collect(Collectors.toSet());
+        Set<Path> excludedDirs = project.getAllprojects().stream()
+                .flatMap(p -> Stream.of(p.getBuildDir(), new File(p.getProjectDir(), ".gradle")))
+                .map(File::toPath)
+                .collect(Collectors.toSet());
+
+        Map<Project, List<Path>> projectFiles = project.getAllprojects().parallelStream()
+                .collect(Collectors.toConcurrentMap(Function.identity(),
+                        p -> findFiles(p.getProjectDir().toPath(), projectDirs, excludedDirs, ignoredFilter)));
+
+        List<Path> buildLogicFiles = findBuildLogicFiles(projectDirs, excludedDirs, ignoredFilter);
+
+        //hash all files at once instead of project by project to keep all cores busy,
+        //files deleted since they were found are left out
+        Map<Path, String> fileHashes = Stream.concat(projectFiles.values().stream().flatMap(Collection::stream), buildLogicFiles.stream())
+                .distinct()
+                .collect(Collectors.toList())
+                .parallelStream()
+                .flatMap(f -> fileHashCache.getHash(f).map(hash -> Map.entry(f, hash)).stream())
+                .collect(Collectors.toConcurrentMap(Map.Entry::getKey, Map.Entry::getValue));
+
+        Map<String, String> result = new TreeMap<>();
+        projectFiles.forEach((p, files) -> result.put(p.getPath(), fingerprint(files, fileHashes)));
+
+        //in a sparse checkout a missing project directory is just not checked out, it keeps its fingerprint
+        if (previousFingerprints != null && GitUtil.isSparseCheckout(basePath.toFile())) {
+            project.getAllprojects().stream()
+                    .filter(p -> !p.getProjectDir().exists() && previousFingerprints.containsKey(p.getPath()))
+                    .forEach(p -> result.put(p.getPath(), previousFingerprints.getProperty(p.getPath())));
+        }
+
+        List<Path> affectsAllFiles = fileHashes.keySet().stream()
+                .filter(f -> affectsAllFilter.test(toRelativePath(f)))
+                .collect(Collectors.toList());
+        result.put(AFFECTS_ALL_KEY, fingerprint(affectsAllFiles, fileHashes));
+        result.put(BUILD_LOGIC_KEY, fingerprint(buildLogicFiles, fileHashes));
+
+        if (LogUtil.shouldLog(configuration)) {
+            logger.lifecycle("Fingerprinted {} files in {}ms", fileHashes.size(), System.currentTimeMillis() - start);
+        }
+
+        return result;
+    }
+
+    //the root build script, the settings, the gradle directory, buildSrc and included builds without their outputs
+    private List<Path> findBuildLogicFiles(Set<Path> projectDirs, Set<Path> excludedDirs, Predicate<String> ignoredFilter) {
+        Path rootDir = project.getProjectDir().toPath();
+        List<Path> files = Stream.concat(Stream.of(project.getBuildFile().toPath()), Stream.of(BUILD_LOGIC_FILES).map(rootDir::resolve))
+                .filter(Files::isRegularFile)
+                .collect(Collectors.toList());
+
+        List<Path> dirs = Stream.concat(Stream.of(BUILD_LOGIC_DIRS).map(rootDir::resolve),
+                        project.getGradle().getIncludedBuilds().stream().map(build -> build.getProjectDir().toPath()))
+                .filter(Files::isDirectory)
+                .collect(Collectors.toList());
+
+        Set<Path> excludedBuildLogicDirs = new HashSet<>(excludedDirs);
+        dirs.forEach(dir -> {
+            excludedBuildLogicDirs.add(dir.resolve("build"));
+            excludedBuildLogicDirs.add(dir.resolve(".gradle"));
+        });
+
+        dirs.forEach(dir -> files.addAll(findFiles(dir, projectDirs, excludedBuildLogicDirs, ignoredFilter)));
+        return files;
+    }
+
+    @SneakyThrows
+    private List<Path> findFiles(Path projectDir, Set<Path> projectDirs, Set<Path> excludedDirs, Predicate<String> ignoredFilter) {
+        List<Path> files = new ArrayList<>();
+
+        Files.walkFileTree(projectDir, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                boolean nestedProject = !dir.equals(projectDir) && projectDirs.contains(dir);
+                if (nestedProject || excludedDirs.contains(dir) || dir.getFileName().toString().equals(".git")) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && !ignoredFilter.test(toRelativePath(file))) {
+                    files.add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                logger.info("affected plugin: could not read {}", file, e);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        return files;
+    }
+
+    @SneakyThrows
+    private String fingerprint(List<Path> files, Map<Path, String> fileHashes) {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+        //sorted by path so the fingerprint does not depend on the walk order
+        files.stream()
+                .filter(fileHashes::containsKey)
+                .map(f -> toRelativePath(f) + '\0' + fileHashes.get(f) + '\n')
+                .sorted()
+                .forEach(line -> digest.update(line.getBytes(StandardCharsets.UTF_8)));
+
+        return HashUtil.toHex(digest.digest());
+    }
+
+    private String toRelativePath(Path file) {
+        return basePath.relativize(file).toString().replace(File.separatorChar, '/');
+    }
+
+    private Properties loadManifest() {
+        if (!manifestFile.exists()) {
+            return null;
+        }
+
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(manifestFile.toPath(), StandardCharsets.UTF_8)) {
+            properties.load(reader);
+            return properties;
+        } catch (IOException e) {
+            logger.warn("affected plugin: could not read fingerprint manifest {}", manifestFile, e);
+            return null;
+        }
+    }
+
+    /**
+     * Saves the fingerprints as the reference for the next run. A changed project only gets its current fingerprint
+     * if its targets succeeded, otherwise it keeps the previous one and is detected as changed again.
+     * An unchanged project that ran as a dependent and failed loses its fingerprint, so it is detected as changed
+     * and runs again, even though the changed project it depends on succeeded.
+     * The affects all and build logic fingerprints are only updated if every changed project got its current fingerprint
+     *
+     * @param scheduled whether the targets of a project were scheduled to run
+     * @param succeeded whether the targets of a project succeeded
+     */
+    @SneakyThrows
+    public void saveManifest(Predicate<Project> scheduled, Predicate<Project> succeeded) {
+        Properties properties = new Properties();
+        boolean allSaved = true;
+
+        for (Project p : project.getAllprojects()) {
+            String current = fingerprints.get(p.getPath());
+            String previous = previousFingerprints == null ? null : previousFingerprints.getProperty(p.getPath());
+            boolean failed = scheduled.test(p) && !succeeded.test(p);
+
+            if (current != null && !failed && (current.equals(previous) || succeeded.test(p))) {
+                properties.put(p.getPath(), current);
+            } else {
+                allSaved = false;
+                //only kept if it still marks the project as changed
+                if (previous != null && !previous.equals(current)) {
+                    properties.put(p.getPath(), previous);
+                }
+            }
+        }
+
+        for (String key : new String[]{AFFECTS_ALL_KEY, BUILD_LOGIC_KEY}) {
+            String previous = previousFingerprints == null ? null : previousFingerprints.getProperty(key);
+            String fingerprint = allSaved ? fingerprints.get(key) : previous;
+            if (fingerprint != null) {
+                properties.put(key, fingerprint);
+            }
+        }
+
+        Files.createDirectories(manifestFile.getParentFile().toPath());
+        Path temp = Files.createTempFile(manifestFile.getParentFile().toPath(), manifestFile.getName(), ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            properties.store(writer, "affected plugin project fingerprints");
+        }
+        Files.move(temp, manifestFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Gets the projects whose fingerprint differs from the last successful run
+     *
+     * @return the changed projects
+     */
+    public Set<Project> getChangedProjects() {
+        return project.getAllprojects().stream()
+                .filter(p -> previousFingerprints == null
+                        || !Objects.equals(fingerprints.get(p.getPath()), previousFingerprints.getProperty(p.getPath())))
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Gets the fingerprint of each project by project path
+     *
+     * @return the fingerprints of all projects
+     */
+    public Map<String, String> getFingerprints() {
+        return fingerprints;
+    }
+
+    public boolean hasChanges() {
+        return !getChangedProjects().isEmpty();
+    }
+
+    /**
+     * Returns whether all projects are affected, which is the case for the first run without a manifest
+     * or if any file matching the affects all regexes changed
+     *
+     * @return true if all projects are affected
+     */
+    public boolean allProjectsAffected() {
+        return previousFingerprints == null
+                || !Objects.equals(fingerprints.get(AFFECTS_ALL_KEY), previousFingerprints.getProperty(AFFECTS_ALL_KEY));
+    }
+
+    /**
+     * Prints debug information if it has been enabled
+     */
+    public void printDebug() {
+        if (LogUtil.shouldLog(configuration)) {
+            logger.lifecycle("Fingerprint manifest {} {}", manifestFile, previousFingerprints == null ? "does not exist" : "loaded");
+            logger.lifecycle("All projects affected? {}", allProjectsAffected());
+            logger.lifecycle("Changed projects:");
+            getChangedProjects().forEach(p -> logger.lifecycle(p.getPath()));
+            logger.lifecycle("");
+        }
+    }
+}
@@ -1,12 +1,16 @@
 package io.github.mklueh.affected.providers.git;
 
+import io.github.mklueh.affected.cache.AffectedStateService;
 import io.github.mklueh.affected.configuration.AffectedConfiguration;
 import io.github.mklueh.affected.configuration.ArgumentsExtractor;
+import io.github.mklueh.affected.utils.Pair;
 import lombok.experimental.ExtensionMethod;
 import org.gradle.api.Project;
 import org.gradle.api.logging.Logger;
 import org.gradle.internal.impldep.org.jetbrains.annotations.VisibleForTesting;
 
+import java.io.File;
+import java.util.List;
 import java.util.Optional;
 
 import static io.github.mklueh.affected.configuration.Arguments.CURRENT_COMMIT;
@@ -28,13 +32,44 @@ public class GitCommandProvider {
      */
     private static final String BASE_DIFF_COMMAND = "git diff --name-only";
 
+    /**
+     * The same diff with the file modes and commits, which shows which changed paths are submodules
+     */
+    private static final String RAW_DIFF_COMMAND = "git diff --raw --no-abbrev";
+
+    /**
+     * The diff of the file contents, with fixed prefixes as git config may change them
+     */
+    private static final String CONTENT_DIFF_COMMAND = "git diff --no-color --no-ext-diff --no-renames --src-prefix=a/ --dst-prefix=b/ --unified=%d";
+
+    /**
+     * Staged and unstaged changes of tracked files, the working tree mode reads them from the index instead
+     */
+    public static final String WORKING_TREE_DIFF_COMMAND = BASE_DIFF_COMMAND + " " + HEAD;
+
     private final Project project;
     private final AffectedConfiguration configuration;
 
+    //read once, so the commands can be created on another thread than the one configuring the projects
+    private final Optional<String> currentCommitId;
+    private final Optional<String> previousCommitArgument;
+    private final GitDiffMode compareMode;
+    private final Optional<String> targetParameter;
+    private final File gitRoot;
+    private final File rootDir;
+
+    private Optional<String> resolvedPreviousCommitId;
+
     public GitCommandProvider(Project project, AffectedConfiguration configuration) {
         this.project = project;
         this.logger = project.getLogger();
         this.configuration = configuration;
+        this.currentCommitId = GitUtil.getCommitId(project);
+        this.previousCommitArgument = GitUtil.getPreviousCommitId(project);
+        this.compareMode = GitUtil.getCommitCompareMode(project);
+        this.targetParameter = ArgumentsExtractor.getTargetTaskParameter(project);
+        this.gitRoot = GitUtil.getGitRootDir(project);
+        this.rootDir = project.getRootProject().getProjectDir();
     }
 
     /**
@@ -43,15 +78,84 @@ public class GitCommandProvider {
      * @return the git diff command
      */
     public String getGitDiffCommand() {
-        GitDiffMode mode = GitUtil.getCommitCompareMode(project);
-        Optional<String> currentCommitId = GitUtil.getCommitId(project);
-        Optional<String> previousCommitId = GitUtil.getPreviousCommitId(project);
+        Optional<String> previousCommitId = getPreviousCommitId();
+        GitDiffMode mode = LastSuccessfulCommits.getMode(compareMode, previousCommitId);
 
         return evaluate(mode, currentCommitId, previousCommitId);
     }
 
     /**
-     * Method created such that we can write test for it
+     * Turns a git diff command created by this class into the raw diff of the same commits
+     *
+     * @return the git diff --raw command
+     */
+    public static String toRawDiffCommand(String diffCommand) {
+        return diffCommand.replace(BASE_DIFF_COMMAND, RAW_DIFF_COMMAND);
+    }
+
+    /**
+     * Turns a git diff command created by this class into the diff of the file contents of the same commits
+     *
+     * @param contextLines the unchanged lines to show around every change
+     * @return the git diff command printing the hunks
+     */
+    public static String toContentDiffCommand(String diffCommand, int contextLines) {
+        return diffCommand.replace(BASE_DIFF_COMMAND, String.format(CONTENT_DIFF_COMMAND, contextLines));
+    }
+
+    /**
+     * Gets the commits the git diff compares, so files can be read as they were at the base of the comparison.
+     *
+     * @return the base commit and the head commit, the head is null for the working tree
+     */
+    public Pair<String, String> getCompareRefs() {
+        Optional<String> previousCommitId = getPreviousCommitId();
+        GitDiffMode mode = LastSuccessfulCommits.getMode(compareMode, previousCommitId);
+
+        if (mode == GitDiffMode.WORKING_TREE) {
+            return new Pair<>(HEAD, null);
+        }
+
+        //fails the same way as the diff for invalid combinations
+        evaluate(mode, currentCommitId, previousCommitId);
+
+        String head = currentCommitId.orElse(HEAD);
+
+        switch (mode) {
+            case COMMIT:
+                return new Pair<>(previousCommitId.orElse(head) + "~", head);
+            case BRANCH_THREE_DOT:
+                List<String> mergeBase = AffectedStateService.get(project.getGradle()).runGitCommand(gitRoot,
+                        String.format("git merge-base %s %s", previousCommitId.get(), head));
+                return new Pair<>(mergeBase.get(0), head);
+            default:
+                return new Pair<>(previousCommitId.get(), head);
+        }
+    }
+
+    //resolves the last successful commit if requested, once as it runs git commands
+    private synchronized Optional<String> getPreviousCommitId() {
+        if (resolvedPreviousCommitId == null) {
+            //the target argument wins over the configured one, like in ConfigurationLoader, and is only needed for the last successful commit
+            String target = isIndependentOfConfiguration() ? targetParameter.orElse(null) : configuration.getTarget().getOrNull();
+            resolvedPreviousCommitId = new LastSuccessfulCommits(gitRoot, rootDir, logger)
+                    .resolve(previousCommitArgument, currentCommitId, target);
+        }
+        return resolvedPreviousCommitId;
+    }
+
+    /**
+     * Whether the commands only depend on command line arguments, so they can be created before the build script configured the plugin.
+     * The last successful commit is recorded per target, which may be configured by the build script
+     *
+     * @return true unless the last successful commit of a configured target is compared with
+     */
+    public boolean isIndependentOfConfiguration() {
+        return targetParameter.isPresent() || !previousCommitArgument.filter(LastSuccessfulCommits.LAST_SUCCESS::equals).isPresent();
+    }
+
+    /**
+     * Method created such that we can write test for it, also used before any project exists by the settings plugin
      *
      * @param mode             the mode
      * @param currentCommitId  the current commit ref if present
@@ -59,7 +163,7 @@ public class GitCommandProvider {
      * @return the git diff command
      */
     @VisibleForTesting
-    public String evaluate(GitDiffMode mode, Optional<String> currentCommitId, Optional<String> previousCommitId) {
+    public static String evaluate(GitDiffMode mode, Optional<String> currentCommitId, Optional<String> previousCommitId) {
         switch (mode) {
             case COMMIT:
                 return getCommitDiff(currentCommitId, previousCommitId);
@@ -74,7 +178,7 @@ public class GitCommandProvider {
         }
     }
 
-    private String getCommitDiff(Optional<String> currentCommitId, Optional<String> previousCommitId) {
+    private static String getCommitDiff(Optional<String> currentCommitId, Optional<String> previousCommitId) {
         //If only currentCommitId has been specified then we assume that it is the diff of that specific commit
         if (currentCommitId.isPresent() && previousCommitId.isPresent()) {
             return String.format("%s %s~ %s", BASE_DIFF_COMMAND, previousCommitId.get(), currentCommitId.get());
@@ -87,7 +191,7 @@ public class GitCommandProvider {
         }
     }
 
-    private String getBranchDiff(Optional<String> currentCommitId, Optional<String> previousCommitId) {
+    private static String getBranchDiff(Optional<String> currentCommitId, Optional<String> previousCommitId) {
         if (currentCommitId.isPresent() && previousCommitId.isPresent()) {
             return String.format("%s %s %s", BASE_DIFF_COMMAND, previousCommitId.get(), currentCommitId.get());
         } else if (previousCommitId.isPresent()) {
@@ -97,7 +201,7 @@ public class GitCommandProvider {
         }
     }
 
-    private String getBranchTwoDotDiff(Optional<String> currentCommitId, Optional<String> previousCommitId) {
+    private static String getBranchTwoDotDiff(Optional<String> currentCommitId, Optional<String> previousCommitId) {
         if (currentCommitId.isPresent() && previousCommitId.isPresent()) {
             return String.format("%s %s..%s", BASE_DIFF_COMMAND, previousCommitId.get(), currentCommitId.get());
         } else if (previousCommitId.isPresent()) {
@@ -107,7 +211,7 @@ public class GitCommandProvider {
         }
     }
 
-    private String getBranchThreeDotDiff(Optional<String> currentCommitId, Optional<String> previousCommitId) {
+    private static String getBranchThreeDotDiff(Optional<String> currentCommitId, Optional<String> previousCommitId) {
         if (currentCommitId.isPresent() && previousCommitId.isPresent()) {
             return String.format("%s %s...%s", BASE_DIFF_COMMAND, previousCommitId.get(), currentCommitId.get());
         } else if (previousCommitId.isPresent()) {
@@ -14,7 +14,12 @@ public enum GitDiffMode {
 
     BRANCH_TWO_DOT("branchTwoDotted"),
 
-    BRANCH_THREE_DOT("branchThreeDotted");
+    BRANCH_THREE_DOT("branchThreeDotted"),
+
+    /**
+     * Staged, unstaged and untracked changes compared to HEAD, read from the git index instead of a diff
+     */
+    WORKING_TREE("workingTree");
 
     private final String commandOption;
 
@@ -0,0 +1,35 @@
+package io.github.mklueh.affected.providers.git;
+
+import lombok.Data;
+
+/**
+ * A single entry of the git index with the stat data git recorded when the file was last staged.
+ * Seconds, inode and size are truncated to 32 bits by git, so they have to be compared the same way.
+ * The getters are auto-generated by Lombok
+ */
+@Data
+public class GitIndexEntry {
+
+    public static final int TYPE_MASK = 0170000;
+    public static final int TYPE_SYMLINK = 0120000;
+    public static final int TYPE_GITLINK = 0160000;
+
+    private final String path;
+    private final int mtimeSeconds;
+    private final int mtimeNanos;
+    private final int inode;
+    private final int mode;
+    private final int size;
+    private final byte[] objectId;
+    private final int stage;
+    private final boolean assumeValid;
+    private final boolean skipWorktree;
+
+    public boolean isSymlink() {
+        return (mode & TYPE_MASK) == TYPE_SYMLINK;
+    }
+
+    public boolean isGitlink() {
+        return (mode & TYPE_MASK) == TYPE_GITLINK;
+    }
+}
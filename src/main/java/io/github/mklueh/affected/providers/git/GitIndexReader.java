@@ -0,0 +1,128 @@
+package io.github.mklueh.affected.providers.git;
+
+import lombok.SneakyThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads the entries of a git index file (version 2, 3 and 4) directly, without spawning git.
+ * See https://git-scm.com/docs/index-format
+ */
+public class GitIndexReader {
+
+    private static final int SIGNATURE = 0x44495243; // "DIRC"
+
+    private static final int FLAG_ASSUME_VALID = 0x8000;
+    private static final int FLAG_EXTENDED = 0x4000;
+    private static final int FLAG_STAGE_MASK = 0x3000;
+    private static final int EXTENDED_FLAG_SKIP_WORKTREE = 0x4000;
+
+    /**
+     * Reads all entries of the given index file
+     *
+     * @return the entries in index order
+     */
+    @SneakyThrows
+    public static List<GitIndexEntry> read(File indexFile) {
+        try (FileChannel channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return read(buffer);
+        }
+    }
+
+    static List<GitIndexEntry> read(ByteBuffer buffer) {
+        if (buffer.getInt() != SIGNATURE) {
+            throw new IllegalStateException("Not a git index file");
+        }
+
+        int version = buffer.getInt();
+        if (version < 2 || version > 4) {
+            throw new IllegalStateException(String.format("Unsupported git index version %s", version));
+        }
+
+        int entryCount = buffer.getInt();
+        List<GitIndexEntry> entries = new ArrayList<>(entryCount);
+        byte[] previousPath = new byte[0];
+
+        for (int i = 0; i < entryCount; i++) {
+            int start = buffer.position();
+
+            buffer.position(start + 8); // ctime is not needed for change detection
+            int mtimeSeconds = buffer.getInt();
+            int mtimeNanos = buffer.getInt();
+            buffer.getInt(); // dev
+            int inode = buffer.getInt();
+            int mode = buffer.getInt();
+            buffer.position(buffer.position() + 8); // uid, gid
+            int size = buffer.getInt();
+            byte[] objectId = new byte[20];
+            buffer.get(objectId);
+            int flags = Short.toUnsignedInt(buffer.getShort());
+            int extendedFlags = 0;
+
+            if (version >= 3 && (flags & FLAG_EXTENDED) != 0) {
+                extendedFlags = Short.toUnsignedInt(buffer.getShort());
+            }
+
+            byte[] path;
+            if (version == 4) {
+                //version 4 prefix-compresses the path against the previous entry and has no padding
+                int strip = readOffset(buffer);
+                byte[] suffix = readNulTerminated(buffer);
+                path = Arrays.copyOf(previousPath, previousPath.length - strip + suffix.length);
+                System.arraycopy(suffix, 0, path, previousPath.length - strip, suffix.length);
+            } else {
+                path = readNulTerminated(buffer);
+                //entries are padded with NUL bytes to a multiple of eight
+                int entryLength = buffer.position() - start;
+                buffer.position(start + ((entryLength + 7) & ~7));
+            }
+            previousPath = path;
+
+            entries.add(new GitIndexEntry(
+                    new String(path, StandardCharsets.UTF_8),
+                    mtimeSeconds,
+                    mtimeNanos,
+                    inode,
+                    mode,
+                    size,
+                    objectId,
+                    (flags & FLAG_STAGE_MASK) >> 12,
+                    (flags & FLAG_ASSUME_VALID) != 0,
+                    (extendedFlags & EXTENDED_FLAG_SKIP_WORKTREE) != 0));
+        }
+
+        return entries;
+    }
+
+    private static byte[] readNulTerminated(ByteBuffer buffer) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        byte b;
+        while ((b = buffer.get()) != 0) {
+            bytes.write(b);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads the variable width offset encoding git uses in index version 4
+     */
+    private static int readOffset(ByteBuffer buffer) {
+        int c = Byte.toUnsignedInt(buffer.get());
+        int value = c & 0x7f;
+        while ((c & 0x80) != 0) {
+            value += 1;
+            c = Byte.toUnsignedInt(buffer.get());
+            value = (value << 7) + (c & 0x7f);
+        }
+        return value;
+    }
+}
@@ -1,10 +1,19 @@
 package io.github.mklueh.affected.providers.git;
 
 import io.github.mklueh.affected.configuration.ArgumentsExtractor;
+import lombok.SneakyThrows;
+import org.apache.commons.exec.CommandLine;
+import org.apache.commons.exec.DefaultExecutor;
+import org.apache.commons.exec.LogOutputStream;
+import org.apache.commons.exec.PumpStreamHandler;
 import org.gradle.api.Project;
 
 import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import static io.github.mklueh.affected.configuration.Arguments.*;
 
@@ -52,7 +61,16 @@ public class GitUtil {
      * @return a file that represents the git root of the project.
      */
     public static File getGitRootDir(Project project) {
-        File currentDir = project.getRootProject().getProjectDir();
+        return findGitRootDir(project.getRootProject().getProjectDir());
+    }
+
+    /**
+     * Finds the git root for the directory.
+     *
+     * @return a file that represents the git root of the directory or null if it is not within a git repository
+     */
+    public static File findGitRootDir(File dir) {
+        File currentDir = dir;
 
         //Keep going until we either hit a .git dir or the root of the file system on either Windows or Linux
         while (currentDir != null && !currentDir.getPath().equals("/")) {
@@ -64,4 +82,88 @@ public class GitUtil {
 
         return null;
     }
+
+    /**
+     * Finds the git directory of the git root, following the gitdir reference of worktrees and submodules.
+     *
+     * @return the directory that contains the index and the objects of the repository
+     */
+    @SneakyThrows
+    public static File getGitDir(File gitRoot) {
+        File dotGit = new File(gitRoot, ".git");
+
+        if (dotGit.isFile()) {
+            String content = Files.readString(dotGit.toPath(), StandardCharsets.UTF_8).trim();
+            if (content.startsWith("gitdir:")) {
+                File gitDir = new File(content.substring("gitdir:".length()).trim());
+                return gitDir.isAbsolute() ? gitDir : new File(gitRoot, gitDir.getPath());
+            }
+        }
+
+        return dotGit;
+    }
+
+    /**
+     * Checks whether only a part of the working tree is checked out by git sparse-checkout,
+     * in which case missing directories are not deleted but just not checked out.
+     *
+     * @return true if sparse checkout is enabled and has patterns
+     */
+    public static boolean isSparseCheckout(File gitRoot) {
+        if (!new File(getGitDir(gitRoot), "info/sparse-checkout").isFile()) {
+            return false;
+        }
+
+        try {
+            return runGitCommand(gitRoot, "git config --bool core.sparseCheckout").contains("true");
+        } catch (Exception e) {
+            //git config exits with 1 if the option is not set
+            return false;
+        }
+    }
+
+    /**
+     * Runs a git command in the given directory and collects its output.
+     *
+     * @return the lines the command printed to stdout
+     */
+    @SneakyThrows
+    public static List<String> runGitCommand(File gitRoot, String command) {
+        CollectingOutputStream stdout = new CollectingOutputStream();
+        CollectingOutputStream stderr = new CollectingOutputStream();
+        //We use Apache Commons Exec because we do not want to re-invent the wheel as ProcessBuilder hangs if the output or error buffer is full
+        DefaultExecutor exec = new DefaultExecutor();
+        exec.setStreamHandler(new PumpStreamHandler(stdout, stderr));
+        exec.setWorkingDirectory(gitRoot);
+        exec.execute(CommandLine.parse(command));
+
+        if (stderr.isNotEmpty()) {
+            throw new IllegalStateException(String.format("Failed to run %s because of \n%s", command, stderr));
+        }
+
+        return stdout.getLines();
+    }
+
+    /**
+     * Runs a git command in the given directory and passes every line to the consumer as soon as it is printed,
+     * for outputs too large to be collected.
+     */
+    @SneakyThrows
+    public static void runGitCommand(File gitRoot, String command, Consumer<String> lines) {
+        LogOutputStream stdout = new LogOutputStream() {
+            @Override
+            protected void processLine(String line, int level) {
+                lines.accept(line);
+            }
+        };
+        CollectingOutputStream stderr = new CollectingOutputStream();
+        DefaultExecutor exec = new DefaultExecutor();
+        exec.setStreamHandler(new PumpStreamHandler(stdout, stderr));
+        exec.setWorkingDirectory(gitRoot);
+        exec.execute(CommandLine.parse(command));
+
+        if (stderr.isNotEmpty()) {
+            throw new IllegalStateException(String.format("Failed to run %s because of \n%s", command, stderr));
+        }
+    }
 }
@@ -0,0 +1,152 @@
+package io.github.mklueh.affected.providers.git;
+
+import lombok.SneakyThrows;
+import org.gradle.api.logging.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+/**
+ * The commits of the last successful affected run per branch and target, so {@value #LAST_SUCCESS} can be used as
+ * previous commit to only check what changed since the last green build.
+ * <p>
+ * A recorded commit is only used if it is an ancestor of the compared commit, the nearest one of all branches wins,
+ * which also covers CI builds on a detached HEAD. Without any, the diff is against the empty tree and everything is affected.
+ */
+public class LastSuccessfulCommits {
+
+    public static final String DEFAULT_LOCATION = ".gradle/affected/last-success.properties";
+
+    /**
+     * The previous commit value that resolves to the last successful commit
+     */
+    public static final String LAST_SUCCESS = "lastSuccess";
+
+    //the well known id of the tree without any files, which every git repository can diff against
+    static final String EMPTY_TREE = "4b825dc642cb6eb9a060e54bf8d69288fbee4904";
+
+    private static final String HEAD = "HEAD";
+
+    private final File gitRoot;
+    private final File file;
+    private final Logger logger;
+
+    /**
+     * @param gitRoot the git root directory
+     * @param rootDir the root project directory, the state is saved in its .gradle directory
+     */
+    public LastSuccessfulCommits(File gitRoot, File rootDir, Logger logger) {
+        this.gitRoot = gitRoot;
+        this.file = new File(rootDir, DEFAULT_LOCATION);
+        this.logger = logger;
+    }
+
+    /**
+     * Resolves {@value #LAST_SUCCESS} to the nearest commit the target succeeded for that the compared commit is based on
+     *
+     * @param previousCommitId the configured previous commit, returned as is unless it is {@value #LAST_SUCCESS}
+     * @param currentCommitId  the configured current commit, HEAD if not present
+     * @param target           the target task
+     * @return the previous commit to compare with
+     */
+    public Optional<String> resolve(Optional<String> previousCommitId, Optional<String> currentCommitId, String target) {
+        if (!previousCommitId.filter(LAST_SUCCESS::equals).isPresent()) {
+            return previousCommitId;
+        }
+
+        String head = currentCommitId.orElse(HEAD);
+        String suffix = "@" + target;
+
+        Optional<String> lastSuccess = load().entrySet().stream()
+                .filter(e -> e.getKey().endsWith(suffix))
+                .map(Map.Entry::getValue)
+                .distinct()
+                .filter(commit -> isAncestor(commit, head))
+                .min(Comparator.comparingInt(commit -> countCommits(commit, head)));
+
+        if (lastSuccess.isEmpty()) {
+            logger.lifecycle("affected plugin: no successful {} run recorded for an ancestor of {}, all files are considered changed", target, head);
+            return Optional.of(EMPTY_TREE);
+        }
+
+        logger.lifecycle("affected plugin: comparing with {}, the last successful {} commit", lastSuccess.get(), target);
+        return lastSuccess;
+    }
+
+    /**
+     * The three dot diff needs a merge base, which the empty tree does not have, but comparing with an ancestor
+     * is the same with and without it
+     *
+     * @return the mode to use for the resolved previous commit
+     */
+    public static GitDiffMode getMode(GitDiffMode mode, Optional<String> resolvedPreviousCommitId) {
+        return mode == GitDiffMode.BRANCH_THREE_DOT && resolvedPreviousCommitId.filter(EMPTY_TREE::equals).isPresent()
+                ? GitDiffMode.BRANCH
+                : mode;
+    }
+
+    /**
+     * Records the commit as the last successful one of the current branch for the target
+     *
+     * @param currentCommitId the configured current commit, HEAD if not present
+     */
+    @SneakyThrows
+    public void record(Optional<String> currentCommitId, String target) {
+        String commit = GitUtil.runGitCommand(gitRoot, "git rev-parse " + currentCommitId.orElse(HEAD)).get(0);
+        String branch = GitUtil.runGitCommand(gitRoot, "git rev-parse --abbrev-ref HEAD").get(0);
+
+        Properties properties = new Properties();
+        properties.putAll(load());
+        properties.setProperty(branch + "@" + target, commit);
+
+        Path directory = file.getAbsoluteFile().getParentFile().toPath();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, file.getName(), ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            properties.store(writer, "affected plugin last successful commits by branch@target");
+        }
+        Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        logger.lifecycle("affected plugin: recorded {} as last successful {} commit of {}", commit, target, branch);
+    }
+
+    private Map<String, String> load() {
+        Properties properties = new Properties();
+
+        if (file.isFile()) {
+            try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            } catch (IOException e) {
+                logger.lifecycle("affected plugin: could not read {}: {}", file, e.getMessage());
+            }
+        }
+
+        return properties.stringPropertyNames().stream()
+                .collect(Collectors.toMap(name -> name, properties::getProperty));
+    }
+
+    //also false for commits that no longer exist, like after a rebase and garbage collection or in a shallow clone
+    private boolean isAncestor(String commit, String head) {
+        try {
+            GitUtil.runGitCommand(gitRoot, String.format("git merge-base --is-ancestor %s %s", commit, head));
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private int countCommits(String commit, String head) {
+        return Integer.parseInt(GitUtil.runGitCommand(gitRoot, String.format("git rev-list --count %s..%s", commit, head)).get(0).trim());
+    }
+}
@@ -0,0 +1,154 @@
+package io.github.mklueh.affected.providers.git;
+
+import io.github.mklueh.affected.configuration.AffectedConfiguration;
+import org.gradle.api.Project;
+import org.gradle.api.initialization.IncludedBuild;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Creates the directories a checkout needs to build the affected projects, as input for
+ * git sparse-checkout set --cone --stdin.
+ * <p>
+ * In cone mode the files directly in the git root and in every parent of a listed directory are always checked out,
+ * which covers the settings, build script and properties of the root project. Listed are the directories of the
+ * affected projects and everything they depend on, the target task inputs outside of their directories, buildSrc,
+ * the gradle directory, included builds and the directories of files that affect all projects.
+ */
+public class SparseCheckoutPatterns {
+
+    //build logic next to the root build script that every build needs
+    private static final String[] BUILD_LOGIC_DIRS = {"buildSrc", "gradle"};
+
+    /**
+     * Creates the directories for the affected projects and their upstream closure
+     *
+     * @param additionalDirs directories checked out as well, like the ones of affected pseudo projects
+     * @param dependencies   the projects a project directly depends on
+     * @param taskInputs     the files and directories outside of its directory the target tasks of a project use
+     * @return the directories relative to the git root, sorted and without directories already covered by a parent
+     */
+    public static List<String> create(Project rootProject, File gitRoot, AffectedConfiguration configuration, Set<Project> affectedProjects,
+                                      Set<File> additionalDirs, Function<Project, Set<Project>> dependencies,
+                                      Function<Project, Set<File>> taskInputs) {
+        Path gitRootPath = gitRoot.toPath().toAbsolutePath().normalize();
+        File rootDir = rootProject.getProjectDir();
+        List<String> dirs = new ArrayList<>();
+
+        for (Project project : closure(affectedProjects, dependencies)) {
+            if (project == rootProject) {
+                //all other directories of the root project would check out the whole repository
+                File sources = new File(rootDir, "src");
+                if (sources.isDirectory()) {
+                    dirs.add(toRelativePath(gitRootPath, sources));
+                }
+            } else {
+                dirs.add(toRelativePath(gitRootPath, project.getProjectDir()));
+            }
+
+            //cone mode only lists directories, a file input needs the whole directory containing it
+            taskInputs.apply(project).stream()
+                    .map(input -> input.isFile() ? input.getParentFile() : input)
+                    .forEach(dir -> dirs.add(toRelativePath(gitRootPath, dir)));
+        }
+
+        additionalDirs.forEach(dir -> dirs.add(toRelativePath(gitRootPath, dir)));
+
+        Stream.of(BUILD_LOGIC_DIRS)
+                .map(dir -> new File(rootDir, dir))
+                .filter(File::isDirectory)
+                .forEach(dir -> dirs.add(toRelativePath(gitRootPath, dir)));
+
+        rootProject.getGradle().getIncludedBuilds().stream()
+                .map(IncludedBuild::getProjectDir)
+                .forEach(dir -> dirs.add(toRelativePath(gitRootPath, dir)));
+
+        dirs.addAll(findAffectsAllDirs(gitRoot, configuration));
+
+        //a root project below the git root only gets its files if something inside is listed
+        String rootProjectDir = toRelativePath(gitRootPath, rootDir);
+        if (dirs.isEmpty() && !rootProjectDir.isEmpty()) {
+            dirs.add(rootProjectDir);
+        }
+
+        return toConeDirectories(dirs);
+    }
+
+    /**
+     * Normalizes the directories for cone mode, where a directory always includes everything below it
+     *
+     * @param dirs directories relative to the git root, the git root itself is represented by an empty string
+     * @return the sorted directories without the ones inside another listed directory
+     */
+    static List<String> toConeDirectories(Collection<String> dirs) {
+        Set<String> sorted = dirs.stream()
+                .map(dir -> dir.replace('\\', '/').replaceAll("^/+|/+$", ""))
+                .filter(dir -> !dir.isEmpty())
+                .collect(Collectors.toCollection(TreeSet::new));
+
+        //parents sort before their children
+        List<String> result = new ArrayList<>();
+        for (String dir : sorted) {
+            boolean covered = result.stream().anyMatch(parent -> dir.startsWith(parent + "/"));
+            if (!covered) {
+                result.add(dir);
+            }
+        }
+        return result;
+    }
+
+    private static Set<Project> closure(Set<Project> projects, Function<Project, Set<Project>> dependencies) {
+        Set<Project> result = new LinkedHashSet<>(projects);
+        Deque<Project> queue = new ArrayDeque<>(projects);
+
+        while (!queue.isEmpty()) {
+            for (Project dependency : dependencies.apply(queue.poll())) {
+                if (result.add(dependency)) {
+                    queue.add(dependency);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    //the parent directories of tracked files matching an affects all regex of any target, files in the git root are always included
+    private static Set<String> findAffectsAllDirs(File gitRoot, AffectedConfiguration configuration) {
+        Set<Pattern> patterns = new LinkedHashSet<>(configuration.getAffectsAllRegex().getOrElse(Collections.emptySet()));
+        configuration.getTargetAffectsAllRegex().getOrElse(Collections.emptyMap()).values().forEach(patterns::addAll);
+
+        if (patterns.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        Predicate<String> filter = patterns.stream()
+                .map(Pattern::asMatchPredicate)
+                .reduce(Predicate::or)
+                .orElse(x -> false);
+
+        return GitUtil.runGitCommand(gitRoot, "git ls-files").stream()
+                .filter(filter)
+                .filter(file -> file.contains("/"))
+                .map(file -> file.substring(0, file.lastIndexOf('/')))
+                .collect(Collectors.toSet());
+    }
+
+    private static String toRelativePath(Path gitRoot, File dir) {
+        return gitRoot.relativize(dir.toPath().toAbsolutePath().normalize()).toString().replace(File.separatorChar, '/');
+    }
+}
@@ -0,0 +1,164 @@
+package io.github.mklueh.affected.providers.git;
+
+import org.gradle.api.logging.Logger;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Replaces the path of a submodule whose commit changed by the files that changed inside the submodule,
+ * so the projects living in the submodule are affected precisely instead of the project containing its directory.
+ * <p>
+ * git diff --name-only only reports the path of the submodule. The commits are read from the raw diff
+ * and diffed inside the submodule, which is repeated for nested submodules. Submodules that are not checked out,
+ * or do not contain one of the commits, keep their path.
+ */
+public class SubmoduleChangesProvider {
+
+    //the file mode of a gitlink, the entry of a submodule in a tree
+    private static final String GITLINK_MODE = "160000";
+
+    //the commit of a submodule that did not exist
+    private static final String NO_COMMIT = "0000000000000000000000000000000000000000";
+
+    private final File gitRoot;
+    private final Logger logger;
+
+    //runs a git command in a directory, so outputs can be cached by the caller
+    private final BiFunction<File, String, List<String>> git;
+
+    public SubmoduleChangesProvider(File gitRoot, Logger logger, BiFunction<File, String, List<String>> git) {
+        this.gitRoot = gitRoot;
+        this.logger = logger;
+        this.git = git;
+    }
+
+    /**
+     * Expands the changed submodules into the files changed inside of them
+     *
+     * @param changes     the changed paths relative to the git root
+     * @param diffCommand the git diff --name-only command that found the changes
+     * @return the changed paths relative to the git root, with changed submodules replaced by their changed files
+     */
+    public List<String> expand(List<String> changes, String diffCommand) {
+        //only checked out submodules can be diffed, without any there is no need to run the raw diff
+        if (changes.stream().noneMatch(path -> isCheckedOutSubmodule(new File(gitRoot, path)))) {
+            return changes;
+        }
+
+        Set<String> expanded = new LinkedHashSet<>(changes);
+        for (RawChange change : readRawChanges(gitRoot, GitCommandProvider.toRawDiffCommand(diffCommand))) {
+            if (change.isGitlink()) {
+                List<String> files = expandSubmodule(gitRoot, "", change);
+                if (!files.isEmpty()) {
+                    expanded.remove(change.path);
+                    expanded.addAll(files);
+                }
+            }
+        }
+
+        return new ArrayList<>(expanded);
+    }
+
+    /**
+     * Finds the files changed inside the submodule, relative to the git root
+     *
+     * @return the changed files or an empty list if the submodule can not be diffed
+     */
+    private List<String> expandSubmodule(File parent, String prefix, RawChange change) {
+        File submodule = new File(parent, change.path);
+        String path = prefix + change.path;
+
+        if (!isCheckedOutSubmodule(submodule) || change.newCommit.equals(NO_COMMIT)) {
+            //a removed submodule only affects the project that contained it
+            return List.of();
+        }
+
+        try {
+            if (change.oldCommit.equals(NO_COMMIT)) {
+                //every file of an added submodule is new
+                return git.apply(submodule, "git ls-tree -r --name-only " + change.newCommit).stream()
+                        .map(file -> path + "/" + file)
+                        .collect(Collectors.toList());
+            }
+
+            List<String> files = new ArrayList<>();
+            for (RawChange inner : readRawChanges(submodule, String.format("git diff --raw --no-abbrev %s %s", change.oldCommit, change.newCommit))) {
+                List<String> nested = inner.isGitlink() ? expandSubmodule(submodule, path + "/", inner) : List.of();
+                if (nested.isEmpty()) {
+                    files.add(path + "/" + inner.path);
+                } else {
+                    files.addAll(nested);
+                }
+            }
+
+            logger.lifecycle("affected plugin: submodule {} changed {} files", path, files.size());
+            return files;
+        } catch (Exception e) {
+            //most likely a commit that has not been fetched
+            logger.lifecycle("affected plugin: could not diff submodule {}, using its path: {}", path, e.getMessage());
+            return List.of();
+        }
+    }
+
+    private List<RawChange> readRawChanges(File repository, String rawDiffCommand) {
+        return git.apply(repository, rawDiffCommand).stream()
+                .map(RawChange::parse)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    private static boolean isCheckedOutSubmodule(File dir) {
+        return new File(dir, ".git").exists();
+    }
+
+    /**
+     * A line of git diff --raw like :100644 100644 old new M path
+     */
+    static class RawChange {
+
+        final String oldMode;
+        final String newMode;
+        final String oldCommit;
+        final String newCommit;
+        final String path;
+
+        RawChange(String oldMode, String newMode, String oldCommit, String newCommit, String path) {
+            this.oldMode = oldMode;
+            this.newMode = newMode;
+            this.oldCommit = oldCommit;
+            this.newCommit = newCommit;
+            this.path = path;
+        }
+
+        /**
+         * Parses a raw diff line, renames and copies list the new path last
+         *
+         * @return the change or null if the line is not a raw diff line
+         */
+        static RawChange parse(String line) {
+            int tab = line.indexOf('\t');
+            if (!line.startsWith(":") || tab < 0) {
+                return null;
+            }
+
+            String[] fields = line.substring(1, tab).split(" ");
+            String[] paths = line.substring(tab + 1).split("\t");
+            if (fields.length < 5) {
+                return null;
+            }
+
+            return new RawChange(fields[0], fields[1], fields[2], fields[3], paths[paths.length - 1]);
+        }
+
+        boolean isGitlink() {
+            return GITLINK_MODE.equals(oldMode) || GITLINK_MODE.equals(newMode);
+        }
+    }
+}
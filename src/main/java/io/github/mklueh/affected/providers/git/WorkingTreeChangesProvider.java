@@ -0,0 +1,158 @@
+package io.github.mklueh.affected.providers.git;
+
+import lombok.SneakyThrows;
+import org.gradle.api.logging.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Detects uncommitted changes without letting git rehash the whole working tree.
+ * <p>
+ * Tracked files are compared against the stat data recorded in the git index in parallel,
+ * only files whose mtime, size or inode differ are hashed to rule out touched but unchanged files.
+ * Staged changes and untracked files are added using git commands that do not read file contents of tracked files.
+ */
+public class WorkingTreeChangesProvider {
+
+    private static final String STAGED_COMMAND = "git diff --cached --name-only HEAD";
+
+    private static final String UNTRACKED_COMMAND = "git ls-files --others --exclude-standard";
+
+    private final Logger logger;
+    private final File gitRoot;
+    private final File projectDir;
+    private final boolean unixAttributes;
+
+    public WorkingTreeChangesProvider(File gitRoot, File projectDir, Logger logger) {
+        this.gitRoot = gitRoot;
+        this.projectDir = projectDir;
+        this.logger = logger;
+        this.unixAttributes = FileSystems.getDefault().supportedFileAttributeViews().contains("unix");
+    }
+
+    /**
+     * Finds all staged, unstaged and untracked changes compared to HEAD
+     *
+     * @return the changed paths relative to the git root
+     */
+    @SneakyThrows
+    public List<String> findChangedFiles() {
+        File indexFile = new File(GitUtil.getGitDir(gitRoot), "index");
+        Set<String> changedFiles = new TreeSet<>(GitUtil.runGitCommand(gitRoot, STAGED_COMMAND));
+
+        if (indexFile.exists()) {
+            //entries written in the same second as the index can not be trusted, git calls this racy
+            FileTime indexModified = Files.getLastModifiedTime(indexFile.toPath());
+            List<GitIndexEntry> entries = GitIndexReader.read(indexFile);
+
+            long start = System.nanoTime();
+            changedFiles.addAll(entries.parallelStream()
+                    .filter(entry -> isModified(entry, indexModified))
+                    .map(GitIndexEntry::getPath)
+                    .collect(Collectors.toList()));
+            logger.info("affected plugin: checked {} index entries in {}ms", entries.size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+
+        changedFiles.addAll(GitUtil.runGitCommand(gitRoot, getUntrackedCommand()));
+        return List.copyOf(changedFiles);
+    }
+
+    private String getUntrackedCommand() {
+        String projectPath = gitRoot.toPath().relativize(projectDir.toPath()).toString();
+        return projectPath.isEmpty() ? UNTRACKED_COMMAND : String.format("%s -- %s", UNTRACKED_COMMAND, projectPath);
+    }
+
+    private boolean isModified(GitIndexEntry entry, FileTime indexModified) {
+        if (entry.getStage() != 0) {
+            return true; //unresolved merge conflict
+        }
+
+        if (entry.isAssumeValid() || entry.isSkipWorktree() || entry.isGitlink()) {
+            return false;
+        }
+
+        Path path = gitRoot.toPath().resolve(entry.getPath());
+
+        try {
+            if (!isStatDirty(entry, path) && !isRacy(entry, indexModified)) {
+                return false;
+            }
+            return !Arrays.equals(entry.getObjectId(), hashBlob(entry, path));
+        } catch (NoSuchFileException e) {
+            return true; //deleted
+        } catch (IOException e) {
+            logger.info("affected plugin: could not check {}, treating it as changed", entry.getPath(), e);
+            return true;
+        }
+    }
+
+    private boolean isStatDirty(GitIndexEntry entry, Path path) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        FileTime modified = attributes.lastModifiedTime();
+
+        if ((int) attributes.size() != entry.getSize()
+                || (int) modified.to(TimeUnit.SECONDS) != entry.getMtimeSeconds()) {
+            return true;
+        }
+
+        //git may be built without nanosecond support and then records zero
+        if (entry.getMtimeNanos() != 0 && modified.toInstant().getNano() != entry.getMtimeNanos()) {
+            return true;
+        }
+
+        //git on Windows does not record inodes
+        if (unixAttributes && entry.getInode() != 0) {
+            Map<String, Object> unix = Files.readAttributes(path, "unix:ino", LinkOption.NOFOLLOW_LINKS);
+            return ((Number) unix.get("ino")).intValue() != entry.getInode();
+        }
+
+        return false;
+    }
+
+    private boolean isRacy(GitIndexEntry entry, FileTime indexModified) {
+        return Integer.toUnsignedLong(entry.getMtimeSeconds()) >= indexModified.to(TimeUnit.SECONDS);
+    }
+
+    /**
+     * Hashes the file the same way git hashes a blob, so the result can be compared with the object id of the index entry
+     */
+    @SneakyThrows
+    private byte[] hashBlob(GitIndexEntry entry, Path path) throws IOException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-1");
+
+        if (entry.isSymlink()) {
+            byte[] target = Files.readSymbolicLink(path).toString().getBytes(StandardCharsets.UTF_8);
+            digest.update(String.format("blob %d\0", target.length).getBytes(StandardCharsets.US_ASCII));
+            return digest.digest(target);
+        }
+
+        digest.update(String.format("blob %d\0", Files.size(path)).getBytes(StandardCharsets.US_ASCII));
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(path)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return digest.digest();
+    }
+}
@@ -0,0 +1,179 @@
+package io.github.mklueh.affected.replay;
+
+import io.github.mklueh.affected.configuration.AffectedConfiguration;
+import io.github.mklueh.affected.configuration.AffectedConfigurationValidator;
+import io.github.mklueh.affected.configuration.AffectedMode;
+import io.github.mklueh.affected.configuration.Arguments;
+import io.github.mklueh.affected.configuration.ArgumentsExtractor;
+import io.github.mklueh.affected.configuration.ConfigurationLoader;
+import io.github.mklueh.affected.providers.ChangedFilesProvider;
+import io.github.mklueh.affected.providers.ProjectDependencyProvider;
+import io.github.mklueh.affected.providers.catalog.VersionCatalogChangesProvider;
+import io.github.mklueh.affected.providers.git.GitCommandProvider;
+import io.github.mklueh.affected.providers.git.GitDiffMode;
+import io.github.mklueh.affected.providers.git.GitUtil;
+import io.github.mklueh.affected.providers.git.SubmoduleChangesProvider;
+import io.github.mklueh.affected.utils.Pair;
+import lombok.SneakyThrows;
+import org.gradle.api.Project;
+import org.gradle.api.logging.Logger;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Computes the affected projects of past commits, to tune the regexes and the affected mode with real data
+ * and to measure how long the computation takes.
+ * <p>
+ * The commits of the first parent history are compared with their first parent, which for a merge is what it brought
+ * into the branch. The dependency graph is built once and shared by all commits, like the projects of a changed file.
+ * The regexes and settings of the current build script are used for every commit.
+ */
+public class AffectedReplay {
+
+    private static final int DEFAULT_COMMITS = 100;
+
+    private final Logger logger;
+    private final Project rootProject;
+    private final AffectedConfiguration configuration;
+    private final File gitRoot;
+
+    //projects by changed file, shared by all commits
+    private final Map<File, Set<Project>> changedFileProjects = new HashMap<>();
+
+    public AffectedReplay(Project project, AffectedConfiguration configuration) {
+        this.rootProject = project.getRootProject();
+        this.logger = project.getLogger();
+        this.configuration = configuration;
+
+        AffectedConfigurationValidator.validate(configuration, rootProject);
+
+        this.gitRoot = GitUtil.getGitRootDir(rootProject);
+        if (gitRoot == null) {
+            throw new IllegalStateException("The project does not have a git root");
+        }
+    }
+
+    /**
+     * Replays the commits and writes the report to the replay output file or stdout
+     */
+    @SneakyThrows
+    public void replay() {
+        long graphStart = System.nanoTime();
+        ProjectDependencyProvider projectDependencyProvider = new ProjectDependencyProvider(rootProject, configuration);
+        long graphMillis = toMillis(graphStart);
+
+        ReplayReport report = new ReplayReport(rootProject.getAllprojects().size(), graphMillis);
+        List<String> commits = findCommits();
+        logger.lifecycle("affected plugin: replaying {} commits, the dependency graph took {}ms", commits.size(), graphMillis);
+
+        for (String commit : commits) {
+            replayCommit(commit, projectDependencyProvider).ifPresent(report::add);
+        }
+
+        logger.lifecycle("affected plugin: {} of {} commits affected all projects {}",
+                report.getAffectsAllCommits(), report.getCommits().size(), report.getAffectsAllPatterns());
+        logger.lifecycle("affected plugin: affected projects {}", report.getPercentiles(ReplayedCommit::getAffectedProjects));
+        logger.lifecycle("affected plugin: git milliseconds {}", report.getPercentiles(ReplayedCommit::getGitMillis));
+        logger.lifecycle("affected plugin: compute milliseconds {}", report.getPercentiles(ReplayedCommit::getComputeMillis));
+
+        Optional<String> output = ArgumentsExtractor.extractParameterValue(rootProject, Arguments.REPLAY_OUTPUT);
+
+        if (output.isPresent()) {
+            File outputFile = rootProject.file(output.get());
+            String content = outputFile.getName().endsWith(".csv") ? report.toCsv() : report.toJson() + System.lineSeparator();
+            Files.createDirectories(outputFile.getAbsoluteFile().getParentFile().toPath());
+            Files.writeString(outputFile.toPath(), content, StandardCharsets.UTF_8);
+            logger.lifecycle("affected plugin: replay report written to {}", outputFile);
+        } else {
+            System.out.println(report.toJson());
+        }
+    }
+
+    //the first parent history from the current commit, newest first
+    private List<String> findCommits() {
+        int count = ArgumentsExtractor.getReplayCommitsParameter(rootProject).orElse(DEFAULT_COMMITS);
+        String start = GitUtil.getCommitId(rootProject).orElse("HEAD");
+        String merges = ArgumentsExtractor.isReplayMergesParameter(rootProject) ? " --merges" : "";
+
+        return GitUtil.runGitCommand(gitRoot, String.format("git rev-list --first-parent%s --max-count=%d %s", merges, count, start));
+    }
+
+    private Optional<ReplayedCommit> replayCommit(String commit, ProjectDependencyProvider projectDependencyProvider) {
+        String diffCommand = GitCommandProvider.evaluate(GitDiffMode.COMMIT, Optional.of(commit), Optional.empty());
+        long gitStart = System.nanoTime();
+        List<String> changes;
+
+        try {
+            changes = new SubmoduleChangesProvider(gitRoot, logger, GitUtil::runGitCommand)
+                    .expand(GitUtil.runGitCommand(gitRoot, diffCommand), diffCommand);
+        } catch (Exception e) {
+            //the first commit has no parent to compare with
+            logger.lifecycle("affected plugin: skipping commit {}: {}", commit, e.getMessage());
+            return Optional.empty();
+        }
+
+        long gitMillis = toMillis(gitStart);
+        long computeStart = System.nanoTime();
+
+        ChangedFilesProvider changedFilesProvider = ChangedFilesProvider.forChanges(rootProject, configuration, changes, diffCommand);
+        String shortCommit = commit.substring(0, Math.min(commit.length(), 12));
+
+        if (changedFilesProvider.allProjectsAffected()) {
+            String cause = changedFilesProvider.getAffectsAllFile();
+            return Optional.of(affectsAll(shortCommit, changes.size(), cause, findAffectsAllPattern(cause), gitMillis, computeStart));
+        }
+
+        Set<Project> directlyAffected = new HashSet<>();
+        for (File changedFile : changedFilesProvider.getChangedFiles()) {
+            directlyAffected.addAll(changedFileProjects.computeIfAbsent(changedFile, projectDependencyProvider::findProjectsOfChangedFile));
+        }
+
+        for (String versionCatalog : changedFilesProvider.getChangedVersionCatalogs()) {
+            Optional<Map<Project, String>> catalogAffected = new VersionCatalogChangesProvider(rootProject, configuration,
+                    new Pair<>(commit + "~", commit)).findAffectedProjects(versionCatalog);
+
+            if (catalogAffected.isEmpty()) {
+                return Optional.of(affectsAll(shortCommit, changes.size(), versionCatalog, "versionCatalog", gitMillis, computeStart));
+            }
+            directlyAffected.addAll(catalogAffected.get().keySet());
+        }
+
+        Set<Project> dependentAffected = AffectedMode.INCLUDE_DEPENDENTS == ConfigurationLoader.getAffectedMode(configuration, rootProject)
+                ? projectDependencyProvider.getAffectedDependentProjects(directlyAffected)
+                : Collections.emptySet();
+
+        Set<Project> affected = new HashSet<>(directlyAffected);
+        affected.addAll(dependentAffected);
+
+        return Optional.of(new ReplayedCommit(shortCommit, changes.size(), directlyAffected.size(), affected.size() - directlyAffected.size(),
+                affected.size(), false, null, null, gitMillis, toMillis(computeStart)));
+    }
+
+    private ReplayedCommit affectsAll(String commit, int changedFiles, String cause, String pattern, long gitMillis, long computeStart) {
+        int projects = rootProject.getAllprojects().size();
+        return new ReplayedCommit(commit, changedFiles, 0, 0, projects, true, cause, pattern, gitMillis, toMillis(computeStart));
+    }
+
+    //the configured regex that matched, the changed file is the first match of any of them
+    private String findAffectsAllPattern(String file) {
+        return configuration.getAffectsAllRegex().getOrElse(Collections.emptySet()).stream()
+                .filter(pattern -> pattern.matcher(file).matches())
+                .map(Pattern::pattern)
+                .findFirst()
+                .orElse(null);
+    }
+
+    private static long toMillis(long start) {
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+}
@@ -0,0 +1,147 @@
+package io.github.mklueh.affected.replay;
+
+import io.github.mklueh.affected.utils.JsonWriter;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Collects the replayed commits and summarizes them with percentiles, written as CSV with one row per commit
+ * or as JSON that includes the summary.
+ */
+class ReplayReport {
+
+    private static final int[] PERCENTILES = {50, 90, 99};
+
+    private static final String[] CSV_HEADER = {"commit", "changedFiles", "directlyAffectedProjects", "dependentAffectedProjects",
+            "affectedProjects", "affectsAll", "affectsAllCause", "affectsAllPattern", "gitMillis", "computeMillis"};
+
+    private final int projects;
+    private final long graphMillis;
+    private final List<ReplayedCommit> commits = new ArrayList<>();
+
+    /**
+     * @param projects    the number of projects of the build
+     * @param graphMillis the time it took to create the dependency graph shared by all commits
+     */
+    ReplayReport(int projects, long graphMillis) {
+        this.projects = projects;
+        this.graphMillis = graphMillis;
+    }
+
+    void add(ReplayedCommit commit) {
+        commits.add(commit);
+    }
+
+    List<ReplayedCommit> getCommits() {
+        return commits;
+    }
+
+    /**
+     * Gets the percentiles and the maximum of a value over all commits
+     *
+     * @return the values by p50, p90, p99 and max, empty if no commit was replayed
+     */
+    Map<String, Long> getPercentiles(ToLongFunction<ReplayedCommit> value) {
+        List<Long> sorted = commits.stream().map(value::applyAsLong).sorted().collect(Collectors.toList());
+        Map<String, Long> result = new LinkedHashMap<>();
+
+        if (sorted.isEmpty()) {
+            return result;
+        }
+
+        for (int percentile : PERCENTILES) {
+            result.put("p" + percentile, percentile(sorted, percentile));
+        }
+        result.put("max", sorted.get(sorted.size() - 1));
+        return result;
+    }
+
+    long getAffectsAllCommits() {
+        return commits.stream().filter(ReplayedCommit::isAffectsAll).count();
+    }
+
+    /**
+     * Counts the commits that affected all projects by the regex or version catalog that caused it
+     *
+     * @return the number of commits by cause
+     */
+    Map<String, Integer> getAffectsAllPatterns() {
+        Map<String, Integer> counts = new TreeMap<>();
+        commits.stream()
+                .filter(ReplayedCommit::isAffectsAll)
+                .forEach(commit -> counts.merge(String.valueOf(commit.getAffectsAllPattern()), 1, Integer::sum));
+        return counts;
+    }
+
+    String toCsv() {
+        StringBuilder csv = new StringBuilder(String.join(",", CSV_HEADER)).append('\n');
+
+        for (ReplayedCommit commit : commits) {
+            csv.append(Stream.of(commit.getCommit(), commit.getChangedFiles(), commit.getDirectlyAffectedProjects(),
+                            commit.getDependentAffectedProjects(), commit.getAffectedProjects(), commit.isAffectsAll(),
+                            commit.getAffectsAllCause(), commit.getAffectsAllPattern(), commit.getGitMillis(), commit.getComputeMillis())
+                    .map(ReplayReport::toCsvField)
+                    .collect(Collectors.joining(","))).append('\n');
+        }
+
+        return csv.toString();
+    }
+
+    String toJson() {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("commits", commits.size());
+        summary.put("projects", projects);
+        summary.put("graphMillis", graphMillis);
+        summary.put("affectsAllCommits", getAffectsAllCommits());
+        summary.put("affectsAllPatterns", getAffectsAllPatterns());
+        summary.put("affectedProjects", getPercentiles(ReplayedCommit::getAffectedProjects));
+        summary.put("gitMillis", getPercentiles(ReplayedCommit::getGitMillis));
+        summary.put("computeMillis", getPercentiles(ReplayedCommit::getComputeMillis));
+
+        List<Object> entries = new ArrayList<>();
+        for (ReplayedCommit commit : commits) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("commit", commit.getCommit());
+            entry.put("changedFiles", commit.getChangedFiles());
+            entry.put("directlyAffectedProjects", commit.getDirectlyAffectedProjects());
+            entry.put("dependentAffectedProjects", commit.getDependentAffectedProjects());
+            entry.put("affectedProjects", commit.getAffectedProjects());
+            entry.put("affectsAll", commit.isAffectsAll());
+            entry.put("affectsAllCause", commit.getAffectsAllCause());
+            entry.put("affectsAllPattern", commit.getAffectsAllPattern());
+            entry.put("gitMillis", commit.getGitMillis());
+            entry.put("computeMillis", commit.getComputeMillis());
+            entries.add(entry);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("summary", summary);
+        result.put("commits", entries);
+        return JsonWriter.toJson(result);
+    }
+
+    //nearest rank, so every percentile is a value that actually occurred
+    static long percentile(List<Long> sorted, int percentile) {
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.size());
+        return sorted.get(Math.max(rank, 1) - 1);
+    }
+
+    private static String toCsvField(Object value) {
+        if (value == null) {
+            return "";
+        }
+
+        String field = value.toString();
+        if (field.contains(",") || field.contains("\"") || field.contains("\n")) {
+            return "\"" + field.replace("\"", "\"\"") + "\"";
+        }
+        return field;
+    }
+}
@@ -0,0 +1,23 @@
+package io.github.mklueh.affected.replay;
+
+import lombok.Data;
+
+/**
+ * The affected projects of a single replayed commit and the time it took to find them.
+ * The getters are auto-generated by Lombok
+ */
+@Data
+class ReplayedCommit {
+
+    private final String commit;
+    private final int changedFiles;
+    private final int directlyAffectedProjects;
+    private final int dependentAffectedProjects;
+    private final int affectedProjects;
+    private final boolean affectsAll;
+    //the changed file and the regex that affected all projects, null otherwise
+    private final String affectsAllCause;
+    private final String affectsAllPattern;
+    private final long gitMillis;
+    private final long computeMillis;
+}
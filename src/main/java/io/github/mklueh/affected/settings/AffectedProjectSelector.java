@@ -0,0 +1,344 @@
+package io.github.mklueh.affected.settings;
+
+import io.github.mklueh.affected.configuration.AffectedConfigurationExtractor;
+import io.github.mklueh.affected.configuration.AffectedMode;
+import io.github.mklueh.affected.configuration.DetectionMode;
+import io.github.mklueh.affected.providers.BuildScriptDependencyExtractor;
+import io.github.mklueh.affected.providers.ChangedFilesProvider;
+import io.github.mklueh.affected.providers.cosmetic.CosmeticChangesFilter;
+import io.github.mklueh.affected.providers.git.GitCommandProvider;
+import io.github.mklueh.affected.providers.git.GitDiffMode;
+import io.github.mklueh.affected.providers.git.GitUtil;
+import io.github.mklueh.affected.providers.git.LastSuccessfulCommits;
+import io.github.mklueh.affected.providers.git.SubmoduleChangesProvider;
+import io.github.mklueh.affected.providers.git.WorkingTreeChangesProvider;
+import io.github.mklueh.affected.utils.LogUtil;
+import org.gradle.api.initialization.ProjectDescriptor;
+import org.gradle.api.initialization.Settings;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static io.github.mklueh.affected.configuration.Arguments.*;
+
+/**
+ * Selects the candidate projects to include before any project is configured.
+ * <p>
+ * The changed files are mapped to projects using the directories of the cached {@link ProjectGraph},
+ * the affected projects are extended by their dependents and then by everything they depend on.
+ * If the graph is missing or stale, the dependencies found in the build scripts can be used instead.
+ * All candidates are included if the plugin is not enabled, there is no usable graph, or all projects are affected.
+ */
+public class AffectedProjectSelector {
+
+    private static final Logger logger = Logging.getLogger(AffectedProjectSelector.class);
+
+    //used by Gradle even if it is not listed in versionCatalogs
+    private static final String DEFAULT_VERSION_CATALOG = "gradle/libs.versions.toml";
+
+    private static final Set<String> SETTINGS_SCRIPTS = Set.of("settings.gradle", "settings.gradle.kts");
+
+    private final Settings settings;
+    private final AffectedSettingsConfiguration configuration;
+    private final Map<String, String> properties;
+    private final Path rootDir;
+    private final File graphFile;
+
+    //candidate project directories by project path
+    private final Map<String, File> candidateProjects = new LinkedHashMap<>();
+
+    //candidates that are checked out, computed on first use
+    private Map<String, File> checkedOutProjects;
+
+    public AffectedProjectSelector(Settings settings, AffectedSettingsConfiguration configuration, File graphFile) {
+        this.settings = settings;
+        this.graphFile = graphFile;
+        this.configuration = configuration;
+        this.properties = settings.getStartParameter().getProjectProperties();
+        this.rootDir = settings.getRootDir().toPath();
+
+        configuration.getCandidateProjects().forEach((path, dir) -> candidateProjects.put(path,
+                dir != null ? dir : new File(settings.getRootDir(), path.substring(1).replace(':', File.separatorChar))));
+    }
+
+    /**
+     * Includes the candidate projects that are needed
+     *
+     * @return true if all candidate projects have been included
+     */
+    public boolean includeProjects() {
+        Optional<Set<String>> selectedProjects = selectProjects();
+        Set<String> includedProjects = selectedProjects.orElseGet(() -> getCheckedOutProjects().keySet());
+
+        for (String projectPath : includedProjects) {
+            settings.include(projectPath);
+            settings.project(projectPath).setProjectDir(candidateProjects.get(projectPath));
+        }
+
+        if (selectedProjects.isPresent()) {
+            logger.lifecycle("affected plugin: including {} of {} candidate projects", includedProjects.size(), candidateProjects.size());
+            if (LogUtil.shouldLog(configuration)) {
+                logger.lifecycle("affected plugin: included projects {}", new TreeSet<>(includedProjects));
+            }
+        }
+
+        return selectedProjects.isEmpty();
+    }
+
+    /**
+     * Selects the affected candidate projects and their upstream closure
+     *
+     * @return the project paths or an empty optional if all candidates have to be included
+     */
+    private Optional<Set<String>> selectProjects() {
+        if (!isEnabled()) {
+            return Optional.empty();
+        }
+
+        DetectionMode detectionMode = Optional.ofNullable(properties.get(DETECTION_MODE))
+                .map(DetectionMode::valueOf)
+                .orElse(AffectedConfigurationExtractor.getDetectionMode(configuration));
+
+        if (DetectionMode.FINGERPRINT == detectionMode) {
+            logger.lifecycle("affected plugin: fingerprint detection is not supported in settings, including all projects");
+            return Optional.empty();
+        }
+
+        Optional<ProjectGraph> cachedGraph = ProjectGraph.load(graphFile);
+        Optional<ProjectGraph> graph = cachedGraph.filter(g -> !g.isStale(rootDir, getCheckedOutProjects()));
+
+        if (graph.isEmpty() && isStaticDependencyGraphEnabled()) {
+            logger.lifecycle("affected plugin: project graph {} is missing or stale, using the dependencies found in the build scripts", graphFile);
+            graph = Optional.of(createStaticGraph());
+        }
+
+        if (graph.isEmpty()) {
+            logger.lifecycle("affected plugin: project graph {} is missing or stale, including all projects", graphFile);
+            return Optional.empty();
+        }
+
+        File gitRoot = GitUtil.findGitRootDir(settings.getRootDir());
+
+        if (gitRoot == null) {
+            logger.lifecycle("affected plugin: no git root found, including all projects");
+            return Optional.empty();
+        }
+
+        Predicate<String> ignoredFilter = ChangedFilesProvider.createIgnoredFilter(configuration);
+        List<String> changedFiles = findChangedFiles(gitRoot).stream()
+                .filter(Predicate.not(ignoredFilter))
+                .collect(Collectors.toList());
+
+        if (changedFiles.stream().anyMatch(ChangedFilesProvider.createAffectsAllFilter(configuration))) {
+            logger.lifecycle("affected plugin: all projects are affected, including all projects");
+            return Optional.empty();
+        }
+
+        //the included builds are only known after the settings, a stale graph still knows those of the last configuration
+        Set<String> includedBuildDirs = cachedGraph.map(ProjectGraph::getIncludedBuildDirs).orElse(Collections.emptySet());
+
+        Optional<String> unresolvedChange = findChangeResolvedAfterConfiguration(graph.get(), includedBuildDirs, gitRoot, changedFiles);
+        if (unresolvedChange.isPresent()) {
+            logger.lifecycle("affected plugin: {} changed, including all projects", unresolvedChange.get());
+            return Optional.empty();
+        }
+
+        Set<String> affectedProjects = findDirectlyAffectedProjects(graph.get(), gitRoot, changedFiles);
+
+        AffectedMode affectedMode = Optional.ofNullable(properties.get(AFFECTED_MODE))
+                .map(AffectedMode::valueOf)
+                .orElse(AffectedConfigurationExtractor.getAffectedMode(configuration));
+
+        if (AffectedMode.INCLUDE_DEPENDENTS == affectedMode) {
+            affectedProjects = closure(affectedProjects, graph.get().getDependents());
+        }
+
+        affectedProjects.addAll(configuration.getAlwaysRunProjects().getOrElse(Collections.emptySet()));
+
+        //affected projects can only be configured together with the projects they depend on, and so can the projects
+        //the settings include regularly, which are configured in every build
+        Map<String, File> regularProjects = new HashMap<>();
+        collectProjectDirs(settings.getRootProject(), regularProjects);
+        affectedProjects.addAll(regularProjects.keySet());
+
+        Map<String, Set<String>> dependencies = graph.get().getProjectDirs().keySet().stream()
+                .collect(Collectors.toMap(p -> p, graph.get()::getDependencies));
+
+        return Optional.of(closure(affectedProjects, dependencies).stream()
+                .filter(candidateProjects::containsKey)
+                .collect(Collectors.toSet()));
+    }
+
+    /**
+     * Gets the candidates whose directories exist, which are all of them unless only a part of the repository is checked out
+     *
+     * @return the candidate project directories by project path
+     */
+    private Map<String, File> getCheckedOutProjects() {
+        if (checkedOutProjects == null) {
+            File gitRoot = GitUtil.findGitRootDir(settings.getRootDir());
+            checkedOutProjects = new LinkedHashMap<>(candidateProjects);
+
+            //the directories outside of the sparse checkout patterns are not deleted, the projects are just not needed
+            if (gitRoot != null && GitUtil.isSparseCheckout(gitRoot)) {
+                checkedOutProjects.values().removeIf(dir -> !dir.exists());
+            }
+        }
+        return checkedOutProjects;
+    }
+
+    private boolean isEnabled() {
+        return properties.containsKey(ENABLE) || properties.containsKey(EXECUTION_MODE) || properties.containsKey(QUERY);
+    }
+
+    private boolean isStaticDependencyGraphEnabled() {
+        return Optional.ofNullable(properties.get(STATIC_DEPENDENCY_GRAPH))
+                .map(Boolean::parseBoolean)
+                .orElse(configuration.getStaticDependencyGraph().getOrElse(false));
+    }
+
+    /**
+     * Creates the graph of the candidates and the regularly included projects from their build scripts
+     */
+    private ProjectGraph createStaticGraph() {
+        Map<String, File> projectDirs = new HashMap<>(candidateProjects);
+        collectProjectDirs(settings.getRootProject(), projectDirs);
+
+        Map<String, Set<String>> dependencies = new BuildScriptDependencyExtractor(projectDirs).extract();
+
+        return new ProjectGraph(
+                projectDirs.entrySet().stream().collect(Collectors.toMap(Map.Entry::getKey, e -> ProjectGraph.toRelativePath(rootDir, e.getValue()))),
+                dependencies,
+                projectDirs.entrySet().stream().collect(Collectors.toMap(Map.Entry::getKey, e -> ProjectGraph.hashBuildScripts(e.getValue()))));
+    }
+
+    private static void collectProjectDirs(ProjectDescriptor descriptor, Map<String, File> projectDirs) {
+        projectDirs.put(descriptor.getPath(), descriptor.getProjectDir());
+        descriptor.getChildren().forEach(child -> collectProjectDirs(child, projectDirs));
+    }
+
+    private List<String> findChangedFiles(File gitRoot) {
+        GitDiffMode mode = Optional.ofNullable(properties.get(COMMIT_MODE))
+                .map(GitDiffMode::getMode)
+                .orElse(GitDiffMode.COMMIT);
+
+        if (GitDiffMode.WORKING_TREE == mode) {
+            return filterCosmeticChanges(gitRoot, new WorkingTreeChangesProvider(gitRoot, settings.getRootDir(), logger).findChangedFiles(),
+                    GitCommandProvider.WORKING_TREE_DIFF_COMMAND);
+        }
+
+        Optional<String> currentCommitId = Optional.ofNullable(properties.get(CURRENT_COMMIT));
+        String target = Optional.ofNullable(properties.get(TARGET_TASK)).orElse(configuration.getTarget().getOrNull());
+        Optional<String> previousCommitId = new LastSuccessfulCommits(gitRoot, settings.getRootDir(), logger)
+                .resolve(Optional.ofNullable(properties.get(PREVIOUS_COMMIT)), currentCommitId, target);
+
+        String diffCommand = GitCommandProvider.evaluate(LastSuccessfulCommits.getMode(mode, previousCommitId), currentCommitId, previousCommitId);
+        List<String> changes = new SubmoduleChangesProvider(gitRoot, logger, GitUtil::runGitCommand)
+                .expand(GitUtil.runGitCommand(gitRoot, diffCommand), diffCommand);
+        return filterCosmeticChanges(gitRoot, changes, diffCommand);
+    }
+
+    private List<String> filterCosmeticChanges(File gitRoot, List<String> changes, String diffCommand) {
+        boolean enabled = Optional.ofNullable(properties.get(IGNORE_COSMETIC_CHANGES))
+                .map(Boolean::parseBoolean)
+                .orElse(configuration.getIgnoreCosmeticChanges().getOrElse(false));
+
+        return enabled ? new CosmeticChangesFilter(gitRoot, logger).filter(changes, diffCommand) : changes;
+    }
+
+    /**
+     * Finds a changed file whose affected projects the project plugin only knows after configuring them,
+     * like the plugins of buildSrc and included builds, the aliases of a version catalog or the task inputs of shared files
+     *
+     * @return a description of the change or an empty optional if the changes can be mapped by the project directories
+     */
+    private Optional<String> findChangeResolvedAfterConfiguration(ProjectGraph graph, Set<String> includedBuildDirs, File gitRoot, List<String> changedFiles) {
+        Set<String> versionCatalogs = new HashSet<>(configuration.getVersionCatalogs().getOrElse(Collections.emptySet()));
+        versionCatalogs.add(DEFAULT_VERSION_CATALOG);
+
+        boolean taskInputOwnership = Optional.ofNullable(properties.get(TASK_INPUT_OWNERSHIP))
+                .map(Boolean::parseBoolean)
+                .orElse(configuration.getTaskInputOwnership().getOrElse(false));
+
+        List<String> subprojectDirs = graph.getProjectDirs().values().stream()
+                .filter(dir -> !dir.isEmpty())
+                .collect(Collectors.toList());
+
+        for (String file : changedFiles) {
+            String relativePath = ProjectGraph.toRelativePath(rootDir, new File(gitRoot, file));
+
+            //a build included since the graph was saved is declared in the settings
+            if (SETTINGS_SCRIPTS.contains(relativePath)) {
+                return Optional.of("settings script " + relativePath);
+            }
+            if (relativePath.startsWith("buildSrc/")) {
+                return Optional.of("buildSrc");
+            }
+            Optional<String> includedBuildDir = includedBuildDirs.stream()
+                    .filter(dir -> relativePath.startsWith(dir + "/"))
+                    .findFirst();
+            if (includedBuildDir.isPresent()) {
+                return Optional.of("included build " + includedBuildDir.get());
+            }
+            if (versionCatalogs.stream().anyMatch(catalog -> relativePath.equals(ProjectGraph.toRelativePath(rootDir, new File(settings.getRootDir(), catalog))))) {
+                return Optional.of("version catalog " + relativePath);
+            }
+            //a file outside of the subprojects affects the projects declaring it as task input
+            if (taskInputOwnership && !relativePath.startsWith("../") && subprojectDirs.stream().noneMatch(dir -> relativePath.startsWith(dir + "/"))) {
+                return Optional.of("shared file " + relativePath);
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    private Set<String> findDirectlyAffectedProjects(ProjectGraph graph, File gitRoot, List<String> changedFiles) {
+        //the deepest project directory containing the file is its project
+        List<Map.Entry<String, String>> projectDirs = graph.getProjectDirs().entrySet().stream()
+                .sorted(Comparator.comparingInt((Map.Entry<String, String> e) -> e.getValue().length()).reversed())
+                .collect(Collectors.toList());
+
+        return changedFiles.stream()
+                .map(file -> ProjectGraph.toRelativePath(rootDir, new File(gitRoot, file)))
+                .filter(file -> !file.startsWith("../"))
+                .map(file -> projectDirs.stream()
+                        .filter(e -> e.getValue().isEmpty() || file.startsWith(e.getValue() + "/"))
+                        .map(Map.Entry::getKey)
+                        .findFirst()
+                        .orElse(null))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+    }
+
+    private static Set<String> closure(Set<String> projects, Map<String, Set<String>> edges) {
+        Set<String> result = new HashSet<>(projects);
+        Deque<String> queue = new ArrayDeque<>(projects);
+
+        while (!queue.isEmpty()) {
+            for (String next : edges.getOrDefault(queue.poll(), Collections.emptySet())) {
+                if (result.add(next)) {
+                    queue.add(next);
+                }
+            }
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,58 @@
+package io.github.mklueh.affected.settings;
+
+import io.github.mklueh.affected.configuration.AffectedConfiguration;
+import org.gradle.api.provider.Property;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The configuration of the settings plugin.
+ * <p>
+ * Projects declared here instead of with the regular include are only included if they are affected
+ * or an affected project depends on them. The regexes, modes and run lists have the same meaning as in the project plugin.
+ */
+public abstract class AffectedSettingsConfiguration implements AffectedConfiguration {
+
+    private final Map<String, File> candidateProjects = new LinkedHashMap<>();
+
+    /**
+     * The file the project graph of the last full configuration is cached in.
+     * Defaults to .gradle/affected/project-graph.properties in the root directory
+     *
+     * @return the project graph file path
+     */
+    public abstract Property<String> getProjectGraph();
+
+    /**
+     * Declares projects that are only included if needed, located in the default project directory
+     *
+     * @param projectPaths the project paths like :app
+     */
+    public void include(String... projectPaths) {
+        for (String projectPath : projectPaths) {
+            candidateProjects.put(projectPath, null);
+        }
+    }
+
+    /**
+     * Declares a project that is only included if needed, located in the given project directory
+     *
+     * @param projectPath the project path like :app
+     * @param projectDir  the project directory
+     */
+    public void include(String projectPath, File projectDir) {
+        candidateProjects.put(projectPath, projectDir);
+    }
+
+    /**
+     * Gets the declared projects
+     *
+     * @return the custom project directory by project path, null for the default directory
+     */
+    public Map<String, File> getCandidateProjects() {
+        return Collections.unmodifiableMap(candidateProjects);
+    }
+}
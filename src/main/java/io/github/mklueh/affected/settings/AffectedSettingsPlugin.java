@@ -0,0 +1,35 @@
+package io.github.mklueh.affected.settings;
+
+import org.gradle.api.Plugin;
+import org.gradle.api.initialization.Settings;
+import org.gradle.api.invocation.Gradle;
+
+import java.io.File;
+
+/**
+ * Settings plugin that includes only the affected projects and the projects they depend on,
+ * so the other projects are not even configured.
+ */
+public class AffectedSettingsPlugin implements Plugin<Settings> {
+
+    /**
+     * Extra property on {@link Gradle} holding the project graph file the project plugin should update,
+     * only set if all projects have been included
+     */
+    public static final String PROJECT_GRAPH_TO_UPDATE = "affected.settings.projectGraphToUpdate";
+
+    @Override
+    public void apply(Settings settings) {
+        AffectedSettingsConfiguration configuration = settings.getExtensions()
+                .create("affectedSettings", AffectedSettingsConfiguration.class);
+
+        //the candidate projects are declared in the settings script, which has been evaluated by then
+        settings.getGradle().settingsEvaluated(s -> {
+            File graphFile = new File(s.getRootDir(), configuration.getProjectGraph().getOrElse(ProjectGraph.DEFAULT_LOCATION));
+
+            if (new AffectedProjectSelector(s, configuration, graphFile).includeProjects()) {
+                s.getGradle().getExtensions().getExtraProperties().set(PROJECT_GRAPH_TO_UPDATE, graphFile.getAbsolutePath());
+            }
+        });
+    }
+}
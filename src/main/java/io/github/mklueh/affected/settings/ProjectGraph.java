@@ -0,0 +1,244 @@
+package io.github.mklueh.affected.settings;
+
+import io.github.mklueh.affected.providers.ProjectDependencyProvider;
+import io.github.mklueh.affected.utils.HashUtil;
+import lombok.SneakyThrows;
+import org.gradle.api.Project;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * The project dependency graph of an earlier full configuration, cached so the settings plugin can select
+ * the projects to include before any project is configured.
+ * <p>
+ * Every project is stored with its directory, its direct project dependencies and a hash of its build scripts,
+ * a project that moved or whose build scripts changed since then makes the graph stale.
+ * The directories of the included builds are stored as well, as the settings can not list them before they are loaded.
+ */
+public class ProjectGraph {
+
+    public static final String DEFAULT_LOCATION = ".gradle/affected/project-graph.properties";
+
+    private static final String PROJECT_DIR_SUFFIX = ".projectDir";
+    private static final String DEPENDENCIES_SUFFIX = ".dependencies";
+    private static final String BUILD_SCRIPT_HASH_SUFFIX = ".buildScriptHash";
+    private static final String INCLUDED_BUILDS = "includedBuilds";
+
+    private static final String[] BUILD_SCRIPTS = {"build.gradle", "build.gradle.kts"};
+
+    private final Map<String, String> projectDirs;
+    private final Map<String, Set<String>> dependencies;
+    private final Map<String, String> buildScriptHashes;
+    private final Set<String> includedBuildDirs;
+
+    /**
+     * @param projectDirs       the project directories relative to the root directory by project path
+     * @param dependencies      the direct project dependency paths by project path
+     * @param buildScriptHashes the build script hashes by project path
+     */
+    public ProjectGraph(Map<String, String> projectDirs, Map<String, Set<String>> dependencies, Map<String, String> buildScriptHashes) {
+        this(projectDirs, dependencies, buildScriptHashes, Collections.emptySet());
+    }
+
+    /**
+     * @param includedBuildDirs the directories of the included builds relative to the root directory
+     */
+    public ProjectGraph(Map<String, String> projectDirs, Map<String, Set<String>> dependencies, Map<String, String> buildScriptHashes,
+                        Set<String> includedBuildDirs) {
+        this.projectDirs = projectDirs;
+        this.dependencies = dependencies;
+        this.buildScriptHashes = buildScriptHashes;
+        this.includedBuildDirs = includedBuildDirs;
+    }
+
+    /**
+     * Creates the graph of all projects of a fully configured build
+     *
+     * @return the project graph
+     */
+    public static ProjectGraph create(Project rootProject, ProjectDependencyProvider projectDependencyProvider) {
+        Path rootDir = rootProject.getProjectDir().toPath();
+        Map<String, String> projectDirs = new HashMap<>();
+        Map<String, Set<String>> dependencies = new HashMap<>();
+        Map<String, String> buildScriptHashes = new HashMap<>();
+
+        for (Project project : rootProject.getAllprojects()) {
+            projectDirs.put(project.getPath(), toRelativePath(rootDir, project.getProjectDir()));
+            dependencies.put(project.getPath(), projectDependencyProvider.getDependencies(project).stream()
+                    .map(Project::getPath)
+                    .collect(Collectors.toCollection(TreeSet::new)));
+            buildScriptHashes.put(project.getPath(), hashBuildScripts(project.getProjectDir()));
+        }
+
+        Set<String> includedBuildDirs = rootProject.getGradle().getIncludedBuilds().stream()
+                .map(includedBuild -> toRelativePath(rootDir, includedBuild.getProjectDir()))
+                .collect(Collectors.toCollection(TreeSet::new));
+
+        return new ProjectGraph(projectDirs, dependencies, buildScriptHashes, includedBuildDirs);
+    }
+
+    /**
+     * Converts the directory to a path relative to the root directory with / as separator
+     *
+     * @return the relative path, empty for the root directory itself
+     */
+    public static String toRelativePath(Path rootDir, File dir) {
+        return rootDir.relativize(dir.toPath()).toString().replace(File.separatorChar, '/');
+    }
+
+    /**
+     * Hashes the build scripts in the project directory
+     *
+     * @return the hash of the build script contents, also if there is no build script
+     */
+    @SneakyThrows
+    public static String hashBuildScripts(File projectDir) {
+        StringBuilder content = new StringBuilder();
+        for (String buildScript : BUILD_SCRIPTS) {
+            File file = new File(projectDir, buildScript);
+            if (file.isFile()) {
+                content.append(buildScript).append('\0').append(Files.readString(file.toPath(), StandardCharsets.UTF_8)).append('\0');
+            }
+        }
+        return HashUtil.sha256(content.toString());
+    }
+
+    /**
+     * Returns whether the graph covers the given projects in the same directories with unchanged build scripts
+     *
+     * @param projectDirs the project directories by project path
+     * @return true if the graph can not be used for the given projects
+     */
+    public boolean isStale(Path rootDir, Map<String, File> projectDirs) {
+        return projectDirs.entrySet().stream()
+                .anyMatch(e -> !toRelativePath(rootDir, e.getValue()).equals(this.projectDirs.get(e.getKey()))
+                        || !hashBuildScripts(e.getValue()).equals(buildScriptHashes.get(e.getKey())));
+    }
+
+    /**
+     * Gets the directory of every project in the graph
+     *
+     * @return the project directories relative to the root directory by project path
+     */
+    public Map<String, String> getProjectDirs() {
+        return projectDirs;
+    }
+
+    /**
+     * Gets the directories of the included builds
+     *
+     * @return the included build directories relative to the root directory
+     */
+    public Set<String> getIncludedBuildDirs() {
+        return includedBuildDirs;
+    }
+
+    /**
+     * Gets the projects the given project directly depends on
+     *
+     * @return the direct project dependency paths
+     */
+    public Set<String> getDependencies(String projectPath) {
+        return dependencies.getOrDefault(projectPath, Collections.emptySet());
+    }
+
+    /**
+     * Gets the projects directly depending on each project
+     *
+     * @return the dependent project paths by project path
+     */
+    public Map<String, Set<String>> getDependents() {
+        Map<String, Set<String>> dependents = new HashMap<>();
+        dependencies.forEach((project, projectDependencies) -> projectDependencies
+                .forEach(dependency -> dependents.computeIfAbsent(dependency, k -> new TreeSet<>()).add(project)));
+        return dependents;
+    }
+
+    /**
+     * Loads the graph if it has been saved before
+     *
+     * @return the graph or an empty optional if it does not exist or can not be read
+     */
+    public static Optional<ProjectGraph> load(File file) {
+        if (!file.isFile()) {
+            return Optional.empty();
+        }
+
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+
+        Map<String, String> projectDirs = new HashMap<>();
+        Map<String, Set<String>> dependencies = new HashMap<>();
+        Map<String, String> buildScriptHashes = new HashMap<>();
+        String includedBuilds = properties.getProperty(INCLUDED_BUILDS, "");
+        Set<String> includedBuildDirs = includedBuilds.isEmpty()
+                ? Collections.emptySet()
+                : Arrays.stream(includedBuilds.split(",")).collect(Collectors.toCollection(TreeSet::new));
+
+        for (String key : properties.stringPropertyNames()) {
+            String value = properties.getProperty(key);
+            if (key.endsWith(PROJECT_DIR_SUFFIX)) {
+                projectDirs.put(key.substring(0, key.length() - PROJECT_DIR_SUFFIX.length()), value);
+            } else if (key.endsWith(DEPENDENCIES_SUFFIX)) {
+                dependencies.put(key.substring(0, key.length() - DEPENDENCIES_SUFFIX.length()), value.isEmpty()
+                        ? Collections.emptySet()
+                        : Arrays.stream(value.split(",")).collect(Collectors.toCollection(TreeSet::new)));
+            } else if (key.endsWith(BUILD_SCRIPT_HASH_SUFFIX)) {
+                buildScriptHashes.put(key.substring(0, key.length() - BUILD_SCRIPT_HASH_SUFFIX.length()), value);
+            }
+        }
+
+        return Optional.of(new ProjectGraph(projectDirs, dependencies, buildScriptHashes, includedBuildDirs));
+    }
+
+    /**
+     * Saves the graph atomically, unless the same graph has already been saved
+     */
+    @SneakyThrows
+    public void save(File file) {
+        Properties properties = toProperties();
+
+        Optional<Properties> existing = load(file).map(ProjectGraph::toProperties);
+        if (existing.isPresent() && existing.get().equals(properties)) {
+            return;
+        }
+
+        Path directory = file.getAbsoluteFile().getParentFile().toPath();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, file.getName(), ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            properties.store(writer, "affected plugin project graph");
+        }
+        Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Properties toProperties() {
+        Properties properties = new Properties();
+        projectDirs.forEach((project, dir) -> properties.setProperty(project + PROJECT_DIR_SUFFIX, dir));
+        dependencies.forEach((project, projectDependencies) ->
+                properties.setProperty(project + DEPENDENCIES_SUFFIX, String.join(",", new TreeSet<>(projectDependencies))));
+        buildScriptHashes.forEach((project, hash) -> properties.setProperty(project + BUILD_SCRIPT_HASH_SUFFIX, hash));
+        properties.setProperty(INCLUDED_BUILDS, String.join(",", new TreeSet<>(includedBuildDirs)));
+        return properties;
+    }
+}
@@ -0,0 +1,358 @@
+package io.github.mklueh.affected.testselection;
+
+import io.github.mklueh.affected.utils.HashUtil;
+import lombok.Data;
+import lombok.SneakyThrows;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * The classes of a test classpath that belong to the build, with the classes each of them references.
+ * <p>
+ * Saved after every successful test run and updated incrementally, only class files whose size, modification time
+ * or CRC changed are read again. Classes that changed since then are the starting point of the test selection.
+ */
+public class ClassDependencyIndex {
+
+    private static final String CLASS_PREFIX = "class.";
+    private static final String RESOURCE_PREFIX = "resource.";
+    private static final String EXTERNAL = "external";
+
+    private final File file;
+
+    //the entries by class file location, a path or jar!entry relative to the root directory
+    private final Map<String, Entry> classes;
+
+    //stamp;hash by resource location
+    private final Map<String, String> resources;
+
+    //hash of the classpath entries outside of the build, like library jars
+    private final String external;
+
+    private ClassDependencyIndex(File file, Map<String, Entry> classes, Map<String, String> resources, String external) {
+        this.file = file;
+        this.classes = classes;
+        this.resources = resources;
+        this.external = external;
+    }
+
+    /**
+     * Loads the index saved after the last successful test run
+     *
+     * @return the index, without any classes if it has not been saved yet
+     */
+    public static ClassDependencyIndex load(File file) {
+        Map<String, Entry> classes = new HashMap<>();
+        Map<String, String> resources = new HashMap<>();
+        Properties properties = new Properties();
+
+        if (file.isFile()) {
+            try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            } catch (IOException e) {
+                //an unreadable index is the same as none, all tests run
+                properties.clear();
+            }
+        }
+
+        for (String name : properties.stringPropertyNames()) {
+            String value = properties.getProperty(name);
+            if (name.startsWith(CLASS_PREFIX)) {
+                String[] parts = value.split(";", -1);
+                Set<String> references = parts[3].isEmpty()
+                        ? Collections.emptySet()
+                        : Arrays.stream(parts[3].split(",")).collect(Collectors.toCollection(TreeSet::new));
+                classes.put(name.substring(CLASS_PREFIX.length()), new Entry(parts[0], parts[1], parts[2], references));
+            } else if (name.startsWith(RESOURCE_PREFIX)) {
+                resources.put(name.substring(RESOURCE_PREFIX.length()), value);
+            }
+        }
+
+        return new ClassDependencyIndex(file, classes, resources, properties.getProperty(EXTERNAL));
+    }
+
+    /**
+     * Whether the index has been saved before, without it there is nothing to compare with
+     */
+    public boolean exists() {
+        return external != null;
+    }
+
+    /**
+     * Scans the classpath, re-reading only the class files that changed since this index was saved
+     *
+     * @param classpath the classpath entries, those outside the root directory are only compared as a whole
+     * @param rootDir   the root project directory
+     * @return the updated index, which can be compared with this one
+     */
+    public ClassDependencyIndex update(Collection<File> classpath, Path rootDir) {
+        Map<String, Entry> updatedClasses = new HashMap<>();
+        Map<String, String> updatedResources = new HashMap<>();
+        StringBuilder externalStamps = new StringBuilder();
+
+        for (File entry : classpath) {
+            Path path = entry.toPath().toAbsolutePath().normalize();
+            if (!entry.exists()) {
+                continue;
+            }
+            if (!path.startsWith(rootDir)) {
+                externalStamps.append(path).append(':').append(entry.length()).append(':').append(entry.lastModified()).append('\n');
+            } else if (entry.isDirectory()) {
+                scanDirectory(path, rootDir, updatedClasses, updatedResources);
+            } else {
+                scanJar(path, rootDir, updatedClasses, updatedResources);
+            }
+        }
+
+        //only references to classes of the build are kept, the others can not change
+        Set<String> classNames = updatedClasses.values().stream().map(Entry::getClassName).collect(Collectors.toSet());
+        updatedClasses.replaceAll((location, e) -> new Entry(e.getStamp(), e.getHash(), e.getClassName(), e.getReferences().stream()
+                .filter(classNames::contains)
+                .collect(Collectors.toCollection(TreeSet::new))));
+
+        return new ClassDependencyIndex(file, updatedClasses, updatedResources, HashUtil.sha256(externalStamps.toString()));
+    }
+
+    /**
+     * Finds the classes that were added, removed or changed compared with the saved index
+     *
+     * @return the changed class names
+     */
+    public Set<String> findChangedClasses(ClassDependencyIndex saved) {
+        Set<String> changed = new TreeSet<>();
+        classes.forEach((location, entry) -> {
+            Entry savedEntry = saved.classes.get(location);
+            if (savedEntry == null || !savedEntry.getHash().equals(entry.getHash())) {
+                changed.add(entry.getClassName());
+            }
+        });
+        saved.classes.forEach((location, entry) -> {
+            if (!classes.containsKey(location)) {
+                changed.add(entry.getClassName());
+            }
+        });
+        return changed;
+    }
+
+    /**
+     * Whether resources or classpath entries outside of the build changed, which can affect any test
+     *
+     * @return true if the changes can not be traced to classes
+     */
+    public boolean hasUntraceableChanges(ClassDependencyIndex saved) {
+        return !external.equals(saved.external) || !resources.keySet().equals(saved.resources.keySet())
+                || resources.entrySet().stream().anyMatch(e -> !getHash(e.getValue()).equals(getHash(saved.resources.get(e.getKey()))));
+    }
+
+    /**
+     * Gets the classes located in the given directories
+     *
+     * @return the class names
+     */
+    public Set<String> getClassesIn(Collection<File> dirs, Path rootDir) {
+        Set<String> prefixes = dirs.stream()
+                .map(dir -> toLocation(rootDir, dir.toPath().toAbsolutePath().normalize()) + "/")
+                .collect(Collectors.toSet());
+        return classes.entrySet().stream()
+                .filter(e -> prefixes.stream().anyMatch(e.getKey()::startsWith))
+                .map(e -> e.getValue().getClassName())
+                .collect(Collectors.toCollection(TreeSet::new));
+    }
+
+    /**
+     * Selects the test classes that reference a changed class, directly or through other classes
+     *
+     * @param references  the referenced classes by class name
+     * @param changed     the changed class names
+     * @param testClasses the test class names
+     * @return the test classes to run
+     */
+    static Set<String> selectTests(Map<String, Set<String>> references, Set<String> changed, Set<String> testClasses) {
+        Map<String, Set<String>> referencedBy = new HashMap<>();
+        references.forEach((className, referenced) -> referenced
+                .forEach(r -> referencedBy.computeIfAbsent(r, k -> new HashSet<>()).add(className)));
+
+        Set<String> affected = new HashSet<>(changed);
+        Deque<String> queue = new ArrayDeque<>(changed);
+        while (!queue.isEmpty()) {
+            for (String dependent : referencedBy.getOrDefault(queue.poll(), Collections.emptySet())) {
+                if (affected.add(dependent)) {
+                    queue.add(dependent);
+                }
+            }
+        }
+
+        return testClasses.stream()
+                .filter(affected::contains)
+                .collect(Collectors.toCollection(TreeSet::new));
+    }
+
+    /**
+     * Gets the referenced classes of every class
+     *
+     * @return the referenced class names by class name
+     */
+    public Map<String, Set<String>> getReferences() {
+        return classes.values().stream()
+                .collect(Collectors.toMap(Entry::getClassName, Entry::getReferences, (a, b) -> {
+                    Set<String> merged = new TreeSet<>(a);
+                    merged.addAll(b);
+                    return merged;
+                }));
+    }
+
+    /**
+     * Saves the index atomically
+     */
+    @SneakyThrows
+    public void save() {
+        Properties properties = new Properties();
+        properties.setProperty(EXTERNAL, external);
+        classes.forEach((location, e) -> properties.setProperty(CLASS_PREFIX + location,
+                String.join(";", e.getStamp(), e.getHash(), e.getClassName(), String.join(",", e.getReferences()))));
+        resources.forEach((location, stampAndHash) -> properties.setProperty(RESOURCE_PREFIX + location, stampAndHash));
+
+        Path directory = file.getAbsoluteFile().getParentFile().toPath();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, file.getName(), ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            properties.store(writer, "affected plugin class dependency index");
+        }
+        Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @SneakyThrows
+    private void scanDirectory(Path dir, Path rootDir, Map<String, Entry> updatedClasses, Map<String, String> updatedResources) {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(dir)) {
+            files = walk.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+
+        for (Path path : files) {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            String stamp = attributes.size() + ":" + attributes.lastModifiedTime().toMillis();
+            String location = toLocation(rootDir, path);
+
+            if (path.toString().endsWith(".class")) {
+                updatedClasses.put(location, getEntry(location, stamp, () -> Files.readAllBytes(path), bytes -> HashUtil.sha256(bytes)));
+            } else {
+                updatedResources.put(location, getResource(location, stamp, () -> HashUtil.sha256(Files.readAllBytes(path))));
+            }
+        }
+    }
+
+    @SneakyThrows
+    private void scanJar(Path jar, Path rootDir, Map<String, Entry> updatedClasses, Map<String, String> updatedResources) {
+        try (ZipFile zip = new ZipFile(jar.toFile())) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry zipEntry = entries.nextElement();
+                if (zipEntry.isDirectory()) {
+                    continue;
+                }
+
+                //the CRC is the content hash, the modification time of jar entries is often fixed for reproducible builds
+                String crc = Long.toHexString(zipEntry.getCrc());
+                String stamp = zipEntry.getSize() + ":" + crc;
+                String location = toLocation(rootDir, jar) + "!" + zipEntry.getName();
+
+                if (zipEntry.getName().endsWith(".class")) {
+                    updatedClasses.put(location, getEntry(location, stamp, () -> readEntry(zip, zipEntry), bytes -> crc));
+                } else if (!zipEntry.getName().equals("META-INF/MANIFEST.MF")) {
+                    updatedResources.put(location, getResource(location, stamp, () -> crc));
+                }
+            }
+        }
+    }
+
+    @SneakyThrows
+    private Entry getEntry(String location, String stamp, ContentSupplier<byte[]> content, ContentHasher hasher) {
+        Entry saved = classes.get(location);
+        if (saved != null && saved.getStamp().equals(stamp)) {
+            return saved;
+        }
+
+        byte[] bytes = content.get();
+        String hash = hasher.hash(bytes);
+        if (saved != null && saved.getHash().equals(hash)) {
+            return new Entry(stamp, hash, saved.getClassName(), saved.getReferences());
+        }
+
+        ClassFileReader reader = ClassFileReader.read(bytes);
+        return new Entry(stamp, hash, reader.getClassName(), reader.getReferences());
+    }
+
+    @SneakyThrows
+    private String getResource(String location, String stamp, ContentSupplier<String> hash) {
+        String saved = resources.get(location);
+        if (saved != null && saved.startsWith(stamp + ";")) {
+            return saved;
+        }
+        return stamp + ";" + hash.get();
+    }
+
+    private static String getHash(String stampAndHash) {
+        return stampAndHash == null ? "" : stampAndHash.substring(stampAndHash.indexOf(';') + 1);
+    }
+
+    private static byte[] readEntry(ZipFile zip, ZipEntry entry) throws IOException {
+        try (InputStream input = zip.getInputStream(entry)) {
+            return input.readAllBytes();
+        }
+    }
+
+    private static String toLocation(Path rootDir, Path path) {
+        return rootDir.relativize(path).toString().replace(File.separatorChar, '/');
+    }
+
+    private interface ContentSupplier<T> {
+        T get() throws IOException;
+    }
+
+    private interface ContentHasher {
+        String hash(byte[] bytes);
+    }
+
+    /**
+     * A class file of the index
+     * The getters are auto-generated by Lombok
+     */
+    @Data
+    private static class Entry {
+
+        //size and modification time or CRC, to skip reading unchanged files
+        private final String stamp;
+
+        private final String hash;
+
+        private final String className;
+
+        private final Set<String> references;
+    }
+}
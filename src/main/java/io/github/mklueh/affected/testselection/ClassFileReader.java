@@ -0,0 +1,163 @@
+package io.github.mklueh.affected.testselection;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads the name of a class and the classes it references from the constant pool of its class file.
+ * <p>
+ * Every class used in code, field and method signatures, generics or annotations is either a class constant
+ * or part of a descriptor in the constant pool, so the rest of the class file does not have to be parsed.
+ */
+class ClassFileReader {
+
+    private static final int MAGIC = 0xCAFEBABE;
+
+    //Lpackage/Name; in field, method and generic signatures
+    private static final Pattern DESCRIPTOR_CLASS = Pattern.compile("L([\\w/$]+)[;<]");
+
+    private static final int UTF8 = 1;
+    private static final int INTEGER = 3;
+    private static final int FLOAT = 4;
+    private static final int LONG = 5;
+    private static final int DOUBLE = 6;
+    private static final int CLASS = 7;
+    private static final int STRING = 8;
+    private static final int FIELD_REF = 9;
+    private static final int METHOD_REF = 10;
+    private static final int INTERFACE_METHOD_REF = 11;
+    private static final int NAME_AND_TYPE = 12;
+    private static final int METHOD_HANDLE = 15;
+    private static final int METHOD_TYPE = 16;
+    private static final int DYNAMIC = 17;
+    private static final int INVOKE_DYNAMIC = 18;
+    private static final int MODULE = 19;
+    private static final int PACKAGE = 20;
+
+    private final String className;
+    private final Set<String> references;
+
+    private ClassFileReader(String className, Set<String> references) {
+        this.className = className;
+        this.references = references;
+    }
+
+    /**
+     * Reads the class file
+     *
+     * @return the reader with the class name and references
+     * @throws IllegalArgumentException if the bytes are not a valid class file
+     */
+    static ClassFileReader read(byte[] bytes) {
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            if (input.readInt() != MAGIC) {
+                throw new IllegalArgumentException("Not a class file");
+            }
+            input.readUnsignedShort(); //minor version
+            input.readUnsignedShort(); //major version
+
+            int count = input.readUnsignedShort();
+            String[] utf8 = new String[count];
+            //the name index of each class constant by its own index, 0 for other constants
+            int[] classNameIndexes = new int[count];
+
+            for (int i = 1; i < count; i++) {
+                int tag = input.readUnsignedByte();
+                switch (tag) {
+                    case UTF8:
+                        utf8[i] = input.readUTF();
+                        break;
+                    case CLASS:
+                        classNameIndexes[i] = input.readUnsignedShort();
+                        break;
+                    case STRING:
+                    case METHOD_TYPE:
+                    case MODULE:
+                    case PACKAGE:
+                        input.readUnsignedShort();
+                        break;
+                    case METHOD_HANDLE:
+                        input.readUnsignedByte();
+                        input.readUnsignedShort();
+                        break;
+                    case INTEGER:
+                    case FLOAT:
+                    case FIELD_REF:
+                    case METHOD_REF:
+                    case INTERFACE_METHOD_REF:
+                    case NAME_AND_TYPE:
+                    case DYNAMIC:
+                    case INVOKE_DYNAMIC:
+                        input.readInt();
+                        break;
+                    case LONG:
+                    case DOUBLE:
+                        input.readLong();
+                        //8 byte constants take two entries
+                        i++;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Invalid constant pool tag " + tag);
+                }
+            }
+
+            input.readUnsignedShort(); //access flags
+            int thisClass = input.readUnsignedShort();
+
+            Set<String> references = new TreeSet<>();
+            for (int nameIndex : classNameIndexes) {
+                if (nameIndex != 0) {
+                    addClassName(references, utf8[nameIndex]);
+                }
+            }
+            for (String value : utf8) {
+                if (value != null) {
+                    Matcher matcher = DESCRIPTOR_CLASS.matcher(value);
+                    while (matcher.find()) {
+                        references.add(toClassName(matcher.group(1)));
+                    }
+                }
+            }
+
+            String className = toClassName(utf8[classNameIndexes[thisClass]]);
+            references.remove(className);
+            return new ClassFileReader(className, references);
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalArgumentException("Invalid class file: " + e.getMessage(), e);
+        }
+    }
+
+    String getClassName() {
+        return className;
+    }
+
+    /**
+     * Gets the referenced classes, including JDK and library classes
+     *
+     * @return the binary class names like com.acme.Outer$Inner
+     */
+    Set<String> getReferences() {
+        return references;
+    }
+
+    //array classes are referenced as [Lpackage/Name; and primitive arrays like [I do not reference a class
+    private static void addClassName(Set<String> references, String internalName) {
+        if (internalName.startsWith("[")) {
+            Matcher matcher = DESCRIPTOR_CLASS.matcher(internalName);
+            if (matcher.find()) {
+                references.add(toClassName(matcher.group(1)));
+            }
+            return;
+        }
+        references.add(toClassName(internalName));
+    }
+
+    private static String toClassName(String internalName) {
+        return internalName.replace('/', '.');
+    }
+}
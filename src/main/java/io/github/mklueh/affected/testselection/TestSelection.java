@@ -0,0 +1,112 @@
+package io.github.mklueh.affected.testselection;
+
+import org.gradle.api.Project;
+import org.gradle.api.Task;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.tasks.testing.Test;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Restricts a {@link Test} task to the test classes that reference a class changed since its last successful run,
+ * directly or through other classes of the build, including those of upstream projects.
+ * <p>
+ * The selection runs once the classes are compiled, right before the test task. All tests run if there is no index yet,
+ * or if resources or libraries changed, which can not be traced to classes.
+ */
+public class TestSelection {
+
+    public static final String INDEX_DIRECTORY = ".gradle/affected/class-index";
+
+    private final Test test;
+    private final Path rootDir;
+    private final Logger logger;
+    private final File indexFile;
+
+    private ClassDependencyIndex current;
+
+    //false if no test references a changed class
+    private boolean hasTests = true;
+
+    private TestSelection(Test test) {
+        this.test = test;
+        this.rootDir = test.getProject().getRootProject().getProjectDir().toPath().toAbsolutePath().normalize();
+        this.logger = test.getLogger();
+        this.indexFile = rootDir.resolve(INDEX_DIRECTORY).resolve(test.getPath().substring(1).replace(':', '_') + ".properties").toFile();
+    }
+
+    /**
+     * Adds a selection task in front of every test task of the project
+     *
+     * @param shouldRun whether the project runs at all, the selection is skipped otherwise
+     */
+    public static void configure(Project project, BooleanSupplier shouldRun) {
+        project.getTasks().withType(Test.class).forEach(test -> {
+            TestSelection selection = new TestSelection(test);
+
+            String name = "affectedSelect" + Character.toUpperCase(test.getName().charAt(0)) + test.getName().substring(1);
+            Task selectionTask = project.getTasks().create(name, task -> {
+                task.setDescription("Selects the tests of " + test.getPath() + " that reference changed classes");
+                //builds the classes of the project and the upstream projects
+                task.dependsOn(test.getClasspath());
+                task.onlyIf(t -> shouldRun.getAsBoolean());
+                task.doLast(t -> selection.select());
+            });
+
+            test.dependsOn(selectionTask);
+            test.onlyIf(t -> selection.hasTests);
+            //only reached if all tests passed
+            test.doLast(t -> selection.save());
+        });
+    }
+
+    private void select() {
+        ClassDependencyIndex saved = ClassDependencyIndex.load(indexFile);
+        current = saved.update(test.getClasspath().getFiles(), rootDir);
+
+        if (!saved.exists()) {
+            logger.lifecycle("affected plugin: no class index for {} yet, running all tests", test.getPath());
+            return;
+        }
+
+        if (current.hasUntraceableChanges(saved)) {
+            logger.lifecycle("affected plugin: resources or libraries of {} changed, running all tests", test.getPath());
+            return;
+        }
+
+        Set<String> changed = current.findChangedClasses(saved);
+        Set<String> testClasses = current.getClassesIn(test.getTestClassesDirs().getFiles(), rootDir);
+        Set<String> selected = ClassDependencyIndex.selectTests(current.getReferences(), changed, testClasses);
+
+        logger.lifecycle("affected plugin: {} of {} test classes of {} reference the {} changed classes",
+                selected.size(), testClasses.size(), test.getPath(), changed.size());
+
+        if (selected.isEmpty()) {
+            hasTests = false;
+            save();
+            return;
+        }
+
+        //nested classes are run through their top level class
+        Set<String> patterns = new TreeSet<>();
+        for (String className : selected) {
+            String topLevel = className.contains("$") ? className.substring(0, className.indexOf('$')) : className;
+            patterns.add(topLevel);
+            patterns.add(topLevel + "$*");
+        }
+
+        test.getFilter().setFailOnNoMatchingTests(false);
+        patterns.forEach(test.getFilter()::includeTestsMatching);
+    }
+
+    private void save() {
+        //without a selection, the test task ran as part of a build without the affected plugin
+        if (current != null) {
+            current.save();
+        }
+    }
+}
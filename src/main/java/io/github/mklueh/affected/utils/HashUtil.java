@@ -0,0 +1,44 @@
+package io.github.mklueh.affected.utils;
+
+import lombok.SneakyThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+public class HashUtil {
+
+    /**
+     * Hashes the string with SHA-256
+     *
+     * @return the hex encoded hash
+     */
+    @SneakyThrows
+    public static String sha256(String input) {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        return toHex(digest.digest(input.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Hashes the bytes with SHA-256
+     *
+     * @return the hex encoded hash
+     */
+    @SneakyThrows
+    public static String sha256(byte[] input) {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        return toHex(digest.digest(input));
+    }
+
+    /**
+     * Encodes the bytes as lower case hex string
+     *
+     * @return the hex string
+     */
+    public static String toHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,111 @@
+package io.github.mklueh.affected.utils;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Minimal JSON serializer for maps, collections, strings, numbers, booleans and null,
+ * so the plugin does not need a JSON library on the build classpath
+ */
+public class JsonWriter {
+
+    /**
+     * Serializes the value as pretty printed JSON
+     *
+     * @return the JSON string
+     */
+    public static String toJson(Object value) {
+        StringBuilder builder = new StringBuilder();
+        write(builder, value, 0);
+        return builder.toString();
+    }
+
+    private static void write(StringBuilder builder, Object value, int indent) {
+        if (value == null) {
+            builder.append("null");
+        } else if (value instanceof Map) {
+            writeMap(builder, (Map<?, ?>) value, indent);
+        } else if (value instanceof Collection) {
+            writeCollection(builder, (Collection<?>) value, indent);
+        } else if (value instanceof Number || value instanceof Boolean) {
+            builder.append(value);
+        } else {
+            writeString(builder, value.toString());
+        }
+    }
+
+    private static void writeMap(StringBuilder builder, Map<?, ?> map, int indent) {
+        if (map.isEmpty()) {
+            builder.append("{}");
+            return;
+        }
+
+        builder.append("{\n");
+        Iterator<? extends Map.Entry<?, ?>> iterator = map.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<?, ?> entry = iterator.next();
+            indent(builder, indent + 1);
+            writeString(builder, String.valueOf(entry.getKey()));
+            builder.append(": ");
+            write(builder, entry.getValue(), indent + 1);
+            builder.append(iterator.hasNext() ? ",\n" : "\n");
+        }
+        indent(builder, indent);
+        builder.append('}');
+    }
+
+    private static void writeCollection(StringBuilder builder, Collection<?> collection, int indent) {
+        if (collection.isEmpty()) {
+            builder.append("[]");
+            return;
+        }
+
+        builder.append("[\n");
+        Iterator<?> iterator = collection.iterator();
+        while (iterator.hasNext()) {
+            indent(builder, indent + 1);
+            write(builder, iterator.next(), indent + 1);
+            builder.append(iterator.hasNext() ? ",\n" : "\n");
+        }
+        indent(builder, indent);
+        builder.append(']');
+    }
+
+    private static void writeString(StringBuilder builder, String value) {
+        builder.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    builder.append("\\\"");
+                    break;
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        builder.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        builder.append(c);
+                    }
+            }
+        }
+        builder.append('"');
+    }
+
+    private static void indent(StringBuilder builder, int indent) {
+        for (int i = 0; i < indent; i++) {
+            builder.append("  ");
+        }
+    }
+}
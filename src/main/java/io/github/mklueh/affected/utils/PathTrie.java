@@ -0,0 +1,57 @@
+package io.github.mklueh.affected.utils;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maps / separated paths to values, a lookup returns the values of the path and all of its parent paths.
+ * <p>
+ * The lookup walks one node per path segment, independent of the number of stored paths.
+ *
+ * @param <T> the value type
+ */
+public class PathTrie<T> {
+
+    private final Node<T> root = new Node<>();
+
+    /**
+     * Adds a value to the path, an empty path is the root and matches every lookup
+     */
+    public void put(String path, T value) {
+        Node<T> current = root;
+        for (String segment : split(path)) {
+            current = current.children.computeIfAbsent(segment, s -> new Node<>());
+        }
+        current.values.add(value);
+    }
+
+    /**
+     * Finds the values of the path and all of its parent paths
+     *
+     * @return the values, from the root to the path
+     */
+    public Set<T> find(String path) {
+        Set<T> found = new LinkedHashSet<>(root.values);
+        Node<T> current = root;
+        for (String segment : split(path)) {
+            current = current.children.get(segment);
+            if (current == null) {
+                break;
+            }
+            found.addAll(current.values);
+        }
+        return found;
+    }
+
+    private static String[] split(String path) {
+        return path.isEmpty() ? new String[0] : path.split("/");
+    }
+
+    private static class Node<T> {
+        private final Map<String, Node<T>> children = new HashMap<>();
+        private final Set<T> values = new HashSet<>();
+    }
+}
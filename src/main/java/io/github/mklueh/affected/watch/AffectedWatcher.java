@@ -0,0 +1,228 @@
+package io.github.mklueh.affected.watch;
+
+import io.github.mklueh.affected.configuration.AffectedConfiguration;
+import io.github.mklueh.affected.configuration.AffectedConfigurationValidator;
+import io.github.mklueh.affected.configuration.AffectedMode;
+import io.github.mklueh.affected.configuration.ArgumentsExtractor;
+import io.github.mklueh.affected.configuration.ConfigurationLoader;
+import io.github.mklueh.affected.execution.CommandLineExecutor;
+import io.github.mklueh.affected.providers.ChangedFilesProvider;
+import io.github.mklueh.affected.providers.ProjectDependencyProvider;
+import io.github.mklueh.affected.providers.git.GitUtil;
+import lombok.SneakyThrows;
+import org.gradle.api.Project;
+import org.gradle.api.logging.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * Long-running watcher that keeps the affected set up to date while files are being edited.
+ * <p>
+ * The path to project mapping and the dependents graph are built only once when watching starts.
+ * Every burst of file system events is collected until no further event arrives within the debounce window,
+ * after which the target task is run via command line on the projects affected by that burst.
+ * Like a regular run, never run projects and projects that are not allowed to run are skipped,
+ * and the always run projects run on every burst.
+ */
+public class AffectedWatcher {
+
+    private static final long DEFAULT_DEBOUNCE_MILLIS = 500;
+
+    private final Logger logger;
+    private final Project rootProject;
+    private final AffectedConfiguration configuration;
+    private final ProjectDependencyProvider projectDependencyProvider;
+    private final CommandLineExecutor commandLineExecutor;
+    private final AffectedMode affectedMode;
+    private final Predicate<String> ignoredFilter;
+    private final Predicate<String> affectsAllFilter;
+    private final Path gitRoot;
+    private final Set<Path> excludedDirectories;
+    private final long debounceMillis;
+    private final Set<String> allowedToRunNames;
+    private final Set<String> neverRunNames;
+    private final Set<String> alwaysRunPaths;
+
+    private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+
+    public AffectedWatcher(Project project, AffectedConfiguration configuration) {
+        this.rootProject = project.getRootProject();
+        this.logger = project.getLogger();
+        this.configuration = configuration;
+
+        AffectedConfigurationValidator.validate(configuration, rootProject);
+
+        File gitRootDir = GitUtil.getGitRootDir(rootProject);
+        if (gitRootDir == null) {
+            throw new IllegalStateException("The project does not have a git root");
+        }
+
+        this.gitRoot = gitRootDir.toPath();
+        this.projectDependencyProvider = new ProjectDependencyProvider(rootProject, configuration);
+        this.commandLineExecutor = new CommandLineExecutor(rootProject, configuration);
+        this.affectedMode = ConfigurationLoader.getAffectedMode(configuration, rootProject);
+        this.ignoredFilter = ChangedFilesProvider.createIgnoredFilter(configuration);
+        this.affectsAllFilter = ChangedFilesProvider.createAffectsAllFilter(configuration);
+        this.debounceMillis = ArgumentsExtractor.getWatchDebounceParameter(rootProject).orElse(DEFAULT_DEBOUNCE_MILLIS);
+        this.allowedToRunNames = ArgumentsExtractor.getEnabledModulesParameter(rootProject)
+                .orElse(configuration.getAllowedToRun().getOrElse(Collections.emptySet()));
+        this.neverRunNames = configuration.getNeverRunProjects().getOrElse(Collections.emptySet());
+        this.alwaysRunPaths = configuration.getAlwaysRunProjects().getOrElse(Collections.emptySet());
+        this.excludedDirectories = rootProject.getAllprojects().stream()
+                .flatMap(p -> Stream.of(p.getBuildDir(), new File(p.getProjectDir(), ".gradle")))
+                .map(File::toPath)
+                .collect(Collectors.toCollection(HashSet::new));
+        this.excludedDirectories.add(gitRoot.resolve(".git"));
+    }
+
+    /**
+     * Blocks and watches the project directories until the build is cancelled
+     */
+    @SneakyThrows
+    public void watch() {
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            registerRecursive(watchService, rootProject.getProjectDir().toPath());
+            logger.lifecycle("affected plugin: watching {} directories, debounce {}ms", watchedDirectories.size(), debounceMillis);
+
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = watchService.take();
+                Set<Path> changedPaths = new HashSet<>();
+                boolean overflow = collect(watchService, key, changedPaths);
+
+                //wait until the burst is over
+                WatchKey next;
+                while ((next = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS)) != null) {
+                    overflow |= collect(watchService, next, changedPaths);
+                }
+
+                onChangeBurst(changedPaths, overflow);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.lifecycle("affected plugin: watch stopped");
+        }
+    }
+
+    private boolean collect(WatchService watchService, WatchKey key, Set<Path> changedPaths) throws IOException {
+        Path directory = watchedDirectories.get(key);
+        boolean overflow = false;
+
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW || directory == null) {
+                overflow = true;
+                continue;
+            }
+
+            Path changed = directory.resolve((Path) event.context());
+
+            //new directories are not covered by the existing registrations
+            if (event.kind() == ENTRY_CREATE && Files.isDirectory(changed)) {
+                registerRecursive(watchService, changed);
+            }
+
+            changedPaths.add(changed);
+        }
+
+        if (!key.reset()) {
+            watchedDirectories.remove(key);
+        }
+
+        return overflow;
+    }
+
+    private void onChangeBurst(Set<Path> changedPaths, boolean overflow) {
+        Set<Path> relevantPaths = changedPaths.stream()
+                .filter(p -> !isExcluded(p))
+                .filter(p -> !ignoredFilter.test(toGitPath(p)))
+                .collect(Collectors.toSet());
+
+        if (relevantPaths.isEmpty() && !overflow) {
+            return;
+        }
+
+        Set<Project> burstAffectedProjects;
+
+        if (overflow || relevantPaths.stream().map(this::toGitPath).anyMatch(affectsAllFilter)) {
+            logger.lifecycle("affected plugin: all projects are affected");
+            burstAffectedProjects = new HashSet<>(rootProject.getAllprojects());
+        } else {
+            Set<Project> directlyAffectedProjects = relevantPaths.stream()
+                    .map(Path::toFile)
+                    .map(projectDependencyProvider::findProjectsOfChangedFile)
+                    .flatMap(Set::stream)
+                    .collect(Collectors.toSet());
+
+            burstAffectedProjects = new HashSet<>(directlyAffectedProjects);
+
+            if (AffectedMode.INCLUDE_DEPENDENTS == affectedMode) {
+                burstAffectedProjects.addAll(projectDependencyProvider.getAffectedDependentProjects(directlyAffectedProjects));
+            }
+        }
+
+        rootProject.getAllprojects().stream()
+                .filter(p -> alwaysRunPaths.contains(p.getPath()))
+                .forEach(burstAffectedProjects::add);
+
+        //never run has a higher order than allowed to run, as in a regular run
+        Set<Project> runProjects = burstAffectedProjects.stream()
+                .filter(p -> !neverRunNames.contains(p.getName()))
+                .filter(p -> allowedToRunNames.contains(p.getName()))
+                .collect(Collectors.toSet());
+
+        for (Project project : runProjects) {
+            try {
+                commandLineExecutor.run(project);
+            } catch (RuntimeException e) {
+                //keep watching, the next change will most likely fix it
+                logger.error("affected plugin: running {} failed: {}", project.getPath(), e.getMessage());
+            }
+        }
+
+        logger.lifecycle("affected plugin: ran {} of {} affected projects, waiting for changes", runProjects.size(), burstAffectedProjects.size());
+    }
+
+    private void registerRecursive(WatchService watchService, Path start) throws IOException {
+        Files.walkFileTree(start, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (isExcluded(dir)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                watchedDirectories.put(dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private boolean isExcluded(Path path) {
+        return excludedDirectories.stream().anyMatch(path::startsWith);
+    }
+
+    private String toGitPath(Path path) {
+        return gitRoot.relativize(path).toString().replace(File.separatorChar, '/');
+    }
+}
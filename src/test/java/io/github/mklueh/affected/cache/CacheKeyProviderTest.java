@@ -0,0 +1,66 @@
+package io.github.mklueh.affected.cache;
+
+import io.github.mklueh.affected.providers.fingerprint.FingerprintProvider;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+class CacheKeyProviderTest {
+
+    private static final Map<String, Set<String>> DEPENDENCIES = Map.of(":app", Set.of(":lib"), ":lib", Set.of());
+
+    @Test
+    void changesTheKeyOfDependentsWhenADependencyChanges() {
+        Map<String, String> fingerprints = fingerprints();
+        String appKey = getKey(fingerprints, ":app");
+
+        fingerprints.put(":lib", "lib-2");
+
+        Assertions.assertThat(getKey(fingerprints, ":app")).isNotEqualTo(appKey);
+    }
+
+    @Test
+    void changesEveryKeyWhenTheBuildLogicChanges() {
+        Map<String, String> fingerprints = fingerprints();
+        String appKey = getKey(fingerprints, ":app");
+        String libKey = getKey(fingerprints, ":lib");
+
+        //like the version catalog, which is only part of the root project and no project depends on the root project
+        fingerprints.put(FingerprintProvider.BUILD_LOGIC_KEY, "catalog-2");
+
+        Assertions.assertThat(getKey(fingerprints, ":app")).isNotEqualTo(appKey);
+        Assertions.assertThat(getKey(fingerprints, ":lib")).isNotEqualTo(libKey);
+    }
+
+    @Test
+    void changesEveryKeyWhenAnAffectsAllFileChanges() {
+        Map<String, String> fingerprints = fingerprints();
+        String libKey = getKey(fingerprints, ":lib");
+
+        fingerprints.put(FingerprintProvider.AFFECTS_ALL_KEY, "affects-all-2");
+
+        Assertions.assertThat(getKey(fingerprints, ":lib")).isNotEqualTo(libKey);
+    }
+
+    @Test
+    void keepsTheKeyWithoutChanges() {
+        Assertions.assertThat(getKey(fingerprints(), ":app")).isEqualTo(getKey(fingerprints(), ":app"));
+    }
+
+    private static String getKey(Map<String, String> fingerprints, String projectPath) {
+        return new CacheKeyProvider("test", "", fingerprints, DEPENDENCIES::get).getKey(projectPath);
+    }
+
+    private static Map<String, String> fingerprints() {
+        Map<String, String> fingerprints = new HashMap<>();
+        fingerprints.put(":", "root");
+        fingerprints.put(":app", "app");
+        fingerprints.put(":lib", "lib");
+        fingerprints.put(FingerprintProvider.AFFECTS_ALL_KEY, "affects-all");
+        fingerprints.put(FingerprintProvider.BUILD_LOGIC_KEY, "catalog");
+        return fingerprints;
+    }
+}
@@ -0,0 +1,66 @@
+package io.github.mklueh.affected.cache;
+
+import org.assertj.core.api.Assertions;
+import org.gradle.api.logging.Logging;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+
+class ComputationCacheTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void findsRecordedSuccesses() {
+        ComputationCache cache = createCache(1024);
+
+        cache.recordSuccess("a", ":app");
+
+        Assertions.assertThat(cache.isSuccessful("a")).isTrue();
+        Assertions.assertThat(cache.isSuccessful("b")).isFalse();
+    }
+
+    @Test
+    void missesWithoutCacheDirectory() {
+        ComputationCache cache = new ComputationCache(directory.resolve("missing").toFile(), 1024, Logging.getLogger(ComputationCacheTest.class));
+
+        Assertions.assertThat(cache.isSuccessful("a")).isFalse();
+        cache.evict();
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedEntriesOnlyWhenAsked() throws IOException {
+        ComputationCache cache = createCache(8);
+
+        cache.recordSuccess("old", ":old");
+        cache.recordSuccess("used", ":used");
+        cache.recordSuccess("new", ":new");
+        setLastModified("old", 1000);
+        setLastModified("used", 2000);
+        setLastModified("new", 3000);
+
+        //a hit makes the entry the most recently used one
+        Assertions.assertThat(cache.isSuccessful("used")).isTrue();
+        Assertions.assertThat(Files.list(directory).count()).isEqualTo(3);
+
+        cache.evict();
+
+        Assertions.assertThat(cache.isSuccessful("old")).isFalse();
+        Assertions.assertThat(cache.isSuccessful("new")).isFalse();
+        Assertions.assertThat(cache.isSuccessful("used")).isTrue();
+    }
+
+    private ComputationCache createCache(long maxSize) {
+        return new ComputationCache(directory.toFile(), maxSize, Logging.getLogger(ComputationCacheTest.class));
+    }
+
+    private void setLastModified(String key, long millis) throws IOException {
+        Files.setLastModifiedTime(directory.resolve(key + ".success"), FileTime.from(Instant.ofEpochMilli(millis)));
+    }
+}
@@ -0,0 +1,128 @@
+package io.github.mklueh.affected.execution;
+
+import io.github.mklueh.affected.configuration.AffectedConfiguration;
+import io.github.mklueh.affected.configuration.FailurePolicy;
+import io.github.mklueh.affected.configuration.PseudoProject;
+import org.apache.commons.exec.CommandLine;
+import org.apache.commons.exec.DefaultExecutor;
+import org.apache.commons.exec.ExecuteException;
+import org.assertj.core.api.Assertions;
+import org.gradle.api.Project;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@DisabledOnOs(OS.WINDOWS)
+class CommandLineExecutorTest {
+
+    @TempDir
+    Path projectDir;
+
+    private Project project;
+    private AffectedConfiguration configuration;
+
+    @BeforeEach
+    void setUp() {
+        project = ProjectBuilder.builder().withProjectDir(projectDir.toFile()).build();
+        configuration = project.getExtensions().create("affected", AffectedConfiguration.class);
+    }
+
+    @Test
+    void watchdogKillsTheChildrenOfATimedOutProcess() throws Exception {
+        DefaultExecutor exec = new DefaultExecutor();
+        exec.setWorkingDirectory(projectDir.toFile());
+        ProcessTreeWatchdog watchdog = new ProcessTreeWatchdog(500, () -> false);
+        exec.setWatchdog(watchdog);
+
+        //the shell waits for its child, which would leave a marker once it slept
+        long start = System.currentTimeMillis();
+        Assertions.assertThatThrownBy(() -> exec.execute(new CommandLine("sh")
+                        .addArguments(new String[]{"-c", "(sleep 2; touch child-ran) & wait"}, false)))
+                .isInstanceOf(ExecuteException.class);
+
+        Assertions.assertThat(watchdog.hasTimedOut()).isTrue();
+        Assertions.assertThat(System.currentTimeMillis() - start).isLessThan(TimeUnit.SECONDS.toMillis(2));
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(3));
+        Assertions.assertThat(projectDir.resolve("child-ran")).doesNotExist();
+    }
+
+    @Test
+    void projectTimeoutFailsTheProject() {
+        configuration.getProjectTimeout().set(1L);
+
+        Assertions.assertThatThrownBy(() -> runAll(Map.of(pseudoProject("slow", "sleep 30"), projectDir.toFile())))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("slow timed out");
+    }
+
+    @Test
+    void failFastCancelsTheQueuedProjects() {
+        configuration.getFailurePolicy().set(FailurePolicy.FAIL_FAST);
+        File marker = projectDir.resolve("queued-ran").toFile();
+
+        Map<PseudoProject, File> pseudoProjects = new LinkedHashMap<>();
+        pseudoProjects.put(pseudoProject("failing", "exit 1"), projectDir.toFile());
+        pseudoProjects.put(pseudoProject("queued", "touch queued-ran"), projectDir.toFile());
+
+        Assertions.assertThatThrownBy(() -> runAll(pseudoProjects))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("failing failed")
+                .hasMessageNotContaining("queued");
+        Assertions.assertThat(marker).doesNotExist();
+    }
+
+    @Test
+    void continueRunsTheQueuedProjects() {
+        configuration.getFailurePolicy().set(FailurePolicy.CONTINUE);
+        File marker = projectDir.resolve("queued-ran").toFile();
+
+        Map<PseudoProject, File> pseudoProjects = new LinkedHashMap<>();
+        pseudoProjects.put(pseudoProject("failing", "exit 1"), projectDir.toFile());
+        pseudoProjects.put(pseudoProject("queued", "touch queued-ran"), projectDir.toFile());
+
+        Assertions.assertThatThrownBy(() -> runAll(pseudoProjects))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("failing failed");
+        Assertions.assertThat(marker).exists();
+    }
+
+    @Test
+    void failsProjectsWhoseCommandCanNotBeStarted() {
+        configuration.getFailurePolicy().set(FailurePolicy.FAIL_FAST);
+        File marker = projectDir.resolve("queued-ran").toFile();
+
+        PseudoProject missing = new PseudoProject("missing");
+        missing.setCommand(List.of("affected-plugin-missing-command"));
+
+        Map<PseudoProject, File> pseudoProjects = new LinkedHashMap<>();
+        pseudoProjects.put(missing, projectDir.toFile());
+        pseudoProjects.put(pseudoProject("queued", "touch queued-ran"), projectDir.toFile());
+
+        Assertions.assertThatThrownBy(() -> runAll(pseudoProjects))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("missing failed");
+        Assertions.assertThat(marker).doesNotExist();
+    }
+
+    private void runAll(Map<PseudoProject, File> pseudoProjects) {
+        new CommandLineExecutor(project, configuration).runAll(Map.of(), pseudoProjects, p -> {
+        });
+    }
+
+    private static PseudoProject pseudoProject(String name, String script) {
+        PseudoProject pseudoProject = new PseudoProject(name);
+        pseudoProject.setCommand(List.of("sh", "-c", script));
+        return pseudoProject;
+    }
+}
@@ -0,0 +1,44 @@
+package io.github.mklueh.affected.execution;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+class ProjectOutputTest {
+
+    @Test
+    void formatPrefixesEveryLine() {
+        ProjectOutput output = write(new ProjectOutput(":app", 1024), "first\nsecond\n");
+
+        Assertions.assertThat(output.format(true, -1))
+                .isEqualTo("> :app succeeded\n[:app] first\n[:app] second");
+    }
+
+    @Test
+    void keepsOnlyTheTailOfSuccessfulProjects() {
+        ProjectOutput output = write(new ProjectOutput(":app", 1024), "1\n2\n3\n");
+
+        Assertions.assertThat(output.format(true, 1))
+                .isEqualTo("> :app succeeded\n[:app] ... 2 lines omitted\n[:app] 3");
+        Assertions.assertThat(output.format(false, 1))
+                .isEqualTo("> :app failed\n[:app] 1\n[:app] 2\n[:app] 3");
+    }
+
+    @Test
+    void dropsTheOldestOutputWhenFull() {
+        ProjectOutput output = write(new ProjectOutput(":app", 8), "line1\nline2\nline3\n");
+
+        Assertions.assertThat(output.format(false, -1))
+                .isEqualTo("> :app failed\n[:app] ... 10 bytes truncated\n[:app] line3");
+    }
+
+    private static ProjectOutput write(ProjectOutput output, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        //write in small chunks so the ring buffer wraps around
+        for (int offset = 0; offset < bytes.length; offset += 3) {
+            output.write(bytes, offset, Math.min(3, bytes.length - offset));
+        }
+        return output;
+    }
+}
@@ -0,0 +1,52 @@
+package io.github.mklueh.affected.providers;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+class BuildScriptDependencyExtractorTest {
+
+    private final BuildScriptDependencyExtractor extractor = new BuildScriptDependencyExtractor(Map.of(
+            ":", new File("."),
+            ":app", new File("app"),
+            ":core-api", new File("core-api"),
+            ":libs:json_utils", new File("libs/json_utils")));
+
+    @Test
+    void findsProjectReferencesAndAccessors() {
+        String script = "dependencies {\n" +
+                "    implementation project(':core-api')\n" +
+                "    implementation(project(path = \":libs:json_utils\", configuration = \"default\"))\n" +
+                "    testImplementation(projects.app.dependencyProject)\n" +
+                "    // implementation project(':commented')\n" +
+                "    /* implementation projects.commented */\n" +
+                "}";
+
+        Assertions.assertThat(extractor.findReferences(":other", script))
+                .containsExactlyInAnyOrder(":core-api", ":libs:json_utils", ":app");
+    }
+
+    @Test
+    void resolvesRelativeReferencesAndCamelCaseAccessors() {
+        Assertions.assertThat(extractor.findReferences(":libs", "implementation project('json_utils')"))
+                .containsExactly(":libs:json_utils");
+        Assertions.assertThat(extractor.findReferences(":app", "implementation(projects.libs.jsonUtils)"))
+                .containsExactly(":libs:json_utils");
+        Assertions.assertThat(BuildScriptDependencyExtractor.toAccessor(":core-api")).isEqualTo("coreApi");
+    }
+
+    @Test
+    void reportsDisagreementsInBothDirections() {
+        List<String> disagreements = BuildScriptDependencyExtractor.findDisagreements(
+                Map.of(":app", Set.of(":core-api")),
+                Map.of(":app", Set.of(":libs:json_utils")));
+
+        Assertions.assertThat(disagreements).containsExactly(
+                ":app -> :core-api only found in the build script",
+                ":app -> :libs:json_utils only found in the configured model");
+    }
+}
@@ -0,0 +1,54 @@
+package io.github.mklueh.affected.providers;
+
+import io.github.mklueh.affected.providers.git.GitIndexEntry;
+import io.github.mklueh.affected.providers.git.GitIndexReader;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class GitIndexReaderTest {
+
+    @TempDir
+    Path repository;
+
+    @ParameterizedTest
+    @ValueSource(ints = {2, 3, 4})
+    public void test(int version) throws Exception {
+        Files.createDirectories(repository.resolve("module/src"));
+        Files.writeString(repository.resolve("build.gradle"), "plugins {}");
+        Files.writeString(repository.resolve("module/src/Main.java"), "class Main {}");
+        Files.writeString(repository.resolve("module/src/MainTest.java"), "class MainTest {}");
+
+        git("init", "-q");
+        git("add", ".");
+        git("update-index", "--index-version", String.valueOf(version));
+
+        List<GitIndexEntry> entries = GitIndexReader.read(new File(repository.toFile(), ".git/index"));
+
+        Assertions.assertThat(entries.stream().map(GitIndexEntry::getPath).collect(Collectors.toList()))
+                .containsExactly("build.gradle", "module/src/Main.java", "module/src/MainTest.java");
+        Assertions.assertThat(entries.get(1).getSize())
+                .isEqualTo("class Main {}".length());
+    }
+
+    private void git(String... args) throws IOException, InterruptedException {
+        String[] command = new String[args.length + 1];
+        command[0] = "git";
+        System.arraycopy(args, 0, command, 1, args.length);
+
+        Process process = new ProcessBuilder(command)
+                .directory(repository.toFile())
+                .inheritIO()
+                .start();
+
+        Assertions.assertThat(process.waitFor()).isZero();
+    }
+}
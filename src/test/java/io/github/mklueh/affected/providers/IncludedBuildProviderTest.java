@@ -0,0 +1,98 @@
+package io.github.mklueh.affected.providers;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+
+class IncludedBuildProviderTest {
+
+    @TempDir
+    Path includedBuildDir;
+
+    @Test
+    void matchesModulesByTheDeclaredGroup() throws IOException {
+        write("build.gradle", "allprojects {\n    group = 'com.acme'\n}");
+        write("core/build.gradle", "plugins { id 'java-library' }");
+        write("api/build.gradle.kts", "group = \"com.acme.api\"");
+
+        Map<Path, IncludedBuildProvider.Module> modules = IncludedBuildProvider.findModules(includedBuildDir, "shared", Map.of());
+
+        IncludedBuildProvider.Module core = modules.get(includedBuildDir.resolve("core"));
+        Assertions.assertThat(core.getId()).isEqualTo("com.acme:core");
+        Assertions.assertThat(core.isConsumedBy("com.acme", "core")).isTrue();
+        Assertions.assertThat(core.isConsumedBy("org.other", "core")).isFalse();
+        Assertions.assertThat(modules.get(includedBuildDir.resolve("api")).isConsumedBy("com.acme.api", "api")).isTrue();
+        Assertions.assertThat(modules.get(includedBuildDir).getId()).isEqualTo("com.acme:shared");
+    }
+
+    @Test
+    void usesTheGroupPropertyOrTheDefaultGroup() throws IOException {
+        write("libs/core/build.gradle", "plugins { id 'java-library' }");
+
+        Map<Path, IncludedBuildProvider.Module> modules = IncludedBuildProvider.findModules(includedBuildDir, "shared", Map.of());
+
+        Assertions.assertThat(modules.get(includedBuildDir.resolve("libs/core")).getId()).isEqualTo("shared.libs:core");
+        //the root project has no default group
+        Assertions.assertThat(modules.get(includedBuildDir).isConsumedBy("any.group", "shared")).isTrue();
+
+        write("gradle.properties", "group=com.acme");
+        modules = IncludedBuildProvider.findModules(includedBuildDir, "shared", Map.of());
+
+        Assertions.assertThat(modules.get(includedBuildDir.resolve("libs/core")).getId()).isEqualTo("com.acme:core");
+    }
+
+    @Test
+    void matchesTheCoordinatesOfDependencySubstitutions() throws IOException {
+        write("core/build.gradle", "group = 'com.acme'");
+
+        Path rootDir = includedBuildDir.getParent();
+        Map<Path, Map<String, String>> substitutions = IncludedBuildProvider.findSubstitutions(rootDir,
+                "includeBuild('" + includedBuildDir.getFileName() + "') {\n"
+                        + "    dependencySubstitution {\n"
+                        + "        substitute module('org.legacy:core-lib') with project(':core')\n"
+                        + "        substitute(module(\"org.legacy:base:1.0\")).using(project(\":\"))\n"
+                        + "    }\n"
+                        + "}\n"
+                        + "includeBuild(\"other\") {\n"
+                        + "    dependencySubstitution {\n"
+                        + "        substitute(module(\"org.other:util\")).using(project(\":core\"))\n"
+                        + "    }\n"
+                        + "}");
+
+        Assertions.assertThat(substitutions.get(includedBuildDir))
+                .containsOnly(Map.entry("org.legacy:core-lib", ":core"), Map.entry("org.legacy:base", ":"));
+        Assertions.assertThat(substitutions.get(rootDir.resolve("other"))).containsOnly(Map.entry("org.other:util", ":core"));
+
+        Map<Path, IncludedBuildProvider.Module> modules = IncludedBuildProvider.findModules(includedBuildDir, "shared", substitutions.get(includedBuildDir));
+
+        Assertions.assertThat(modules.get(includedBuildDir.resolve("core")).isConsumedBy("org.legacy", "core-lib")).isTrue();
+        Assertions.assertThat(modules.get(includedBuildDir.resolve("core")).isConsumedBy("com.acme", "core")).isTrue();
+        Assertions.assertThat(modules.get(includedBuildDir.resolve("core")).isConsumedBy("org.other", "util")).isFalse();
+        Assertions.assertThat(modules.get(includedBuildDir).isConsumedBy("org.legacy", "base")).isTrue();
+    }
+
+    @Test
+    void findsTheModulesAModuleDependsOn() throws IOException {
+        write("build.gradle", "allprojects {\n    group = 'com.acme'\n}");
+        write("util/build.gradle", "plugins { id 'java-library' }");
+        write("http/build.gradle", "dependencies { api project(':util') }");
+        write("client/build.gradle.kts", "dependencies { implementation(\"com.acme:http:1.0\") }");
+
+        Map<Path, IncludedBuildProvider.Module> modules = IncludedBuildProvider.findModules(includedBuildDir, "shared", Map.of());
+
+        Assertions.assertThat(IncludedBuildProvider.findModuleDependencies(includedBuildDir, modules, modules.values()))
+                .containsOnly(Map.entry("com.acme:http", Set.of("com.acme:util")), Map.entry("com.acme:client", Set.of("com.acme:http")));
+    }
+
+    private void write(String path, String content) throws IOException {
+        Path file = includedBuildDir.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+    }
+}
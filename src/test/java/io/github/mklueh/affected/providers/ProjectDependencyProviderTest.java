@@ -0,0 +1,63 @@
+package io.github.mklueh.affected.providers;
+
+import io.github.mklueh.affected.configuration.PropagationMode;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Set;
+
+class ProjectDependencyProviderTest {
+
+    //:b depends on :a with api, :c on :b with implementation, :d on :c with testImplementation, :e on :d with implementation
+    private static final Map<String, Set<String>> DEPENDENTS = Map.of(
+            ":a", Set.of(":b"),
+            ":b", Set.of(":c"),
+            ":c", Set.of(":d"),
+            ":d", Set.of(":e"));
+
+    private static final Map<String, Set<String>> CONFIGURATIONS = Map.of(
+            ":a>:b", Set.of("api"),
+            ":b>:c", Set.of("implementation"),
+            ":c>:d", Set.of("testImplementation"),
+            ":d>:e", Set.of("implementation"));
+
+    @Test
+    void transitivePropagatesThroughEveryDependency() {
+        Assertions.assertThat(findAffectedDependents(Set.of(":a"), PropagationMode.TRANSITIVE))
+                .containsOnly(Map.entry(":b", ":a"), Map.entry(":c", ":b"), Map.entry(":d", ":c"), Map.entry(":e", ":d"));
+    }
+
+    @Test
+    void compileStopsAfterAnImplementationDependency() {
+        Assertions.assertThat(findAffectedDependents(Set.of(":a"), PropagationMode.COMPILE))
+                .containsOnly(Map.entry(":b", ":a"), Map.entry(":c", ":b"));
+    }
+
+    @Test
+    void runtimeStopsAfterATestDependency() {
+        Assertions.assertThat(findAffectedDependents(Set.of(":a"), PropagationMode.RUNTIME))
+                .containsOnly(Map.entry(":b", ":a"), Map.entry(":c", ":b"), Map.entry(":d", ":c"));
+    }
+
+    @Test
+    void reachesDependentsThroughTheNearestChangedProject() {
+        Map<String, Set<String>> dependents = Map.of(":a", Set.of(":b", ":c"), ":b", Set.of(":c"));
+
+        Map<String, String> causes = ProjectDependencyProvider.findAffectedDependents(Set.of(":a"), dependents,
+                (dependency, dependent) -> Set.of("api"), PropagationMode.COMPILE);
+
+        Assertions.assertThat(causes).containsOnly(Map.entry(":b", ":a"), Map.entry(":c", ":a"));
+    }
+
+    @Test
+    void doesNotMapChangedProjectsToACause() {
+        Assertions.assertThat(findAffectedDependents(Set.of(":a", ":c"), PropagationMode.TRANSITIVE))
+                .containsOnly(Map.entry(":b", ":a"), Map.entry(":d", ":c"), Map.entry(":e", ":d"));
+    }
+
+    private static Map<String, String> findAffectedDependents(Set<String> changed, PropagationMode propagationMode) {
+        return ProjectDependencyProvider.findAffectedDependents(changed, DEPENDENTS,
+                (dependency, dependent) -> CONFIGURATIONS.getOrDefault(dependency + ">" + dependent, Set.of()), propagationMode);
+    }
+}
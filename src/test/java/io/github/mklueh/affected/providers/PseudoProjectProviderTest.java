@@ -0,0 +1,71 @@
+package io.github.mklueh.affected.providers;
+
+import io.github.mklueh.affected.configuration.PseudoProject;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+class PseudoProjectProviderTest {
+
+    private static final Path ROOT = Path.of("/repo");
+
+    @Test
+    void mapsFilesToTheDeepestPseudoProject() {
+        PseudoProjectProvider provider = new PseudoProjectProvider(ROOT,
+                List.of(pseudoProject("web", "web", Set.of()), pseudoProject("widgets", "web/widgets", Set.of())),
+                List.of("api"));
+
+        Assertions.assertThat(provider.findPseudoProject("web/package.json")).map(PseudoProject::getName).contains("web");
+        Assertions.assertThat(provider.findPseudoProject("web/widgets/src/index.ts")).map(PseudoProject::getName).contains("widgets");
+        Assertions.assertThat(provider.findPseudoProject("api/src/main/java/Api.java")).isEmpty();
+        Assertions.assertThat(provider.findPseudoProject("webapp/index.html")).isEmpty();
+    }
+
+    @Test
+    void keepsFilesOfSubprojectsNestedInsidePseudoProjects() {
+        PseudoProjectProvider provider = new PseudoProjectProvider(ROOT,
+                List.of(pseudoProject("infra", "infra", Set.of()), pseudoProject("frontend", "app/src/main/frontend", Set.of())),
+                List.of("app", "infra/lambda"));
+
+        Assertions.assertThat(provider.findPseudoProject("infra/main.tf")).map(PseudoProject::getName).contains("infra");
+        Assertions.assertThat(provider.findPseudoProject("infra/lambda/build.gradle")).isEmpty();
+        Assertions.assertThat(provider.findPseudoProject("app/src/main/frontend/app.ts")).map(PseudoProject::getName).contains("frontend");
+        Assertions.assertThat(provider.findPseudoProject("app/src/main/java/App.java")).isEmpty();
+    }
+
+    @Test
+    void findsPseudoProjectsDependingOnAffectedProjects() {
+        PseudoProjectProvider provider = new PseudoProjectProvider(ROOT,
+                List.of(pseudoProject("frontend", null, Set.of(":api")), pseudoProject("infra", null, Set.of(":lambda"))),
+                List.of("api", "lambda"));
+
+        Assertions.assertThat(provider.findDependentPseudoProjects(Set.of(":api", ":core"))).containsExactlyEntriesOf(Map.of("frontend", ":api"));
+        Assertions.assertThat(provider.findDependentPseudoProjects(Set.of(":core"))).isEmpty();
+    }
+
+    @Test
+    void defaultsTheDirectoryToTheName() {
+        Assertions.assertThat(pseudoProject("frontend", null, Set.of()).getDirectory()).isEqualTo("frontend");
+        Assertions.assertThat(pseudoProject("frontend", "/web/frontend/", Set.of()).getDirectory()).isEqualTo("web/frontend");
+    }
+
+    @Test
+    void rejectsPseudoProjectsWithoutCommand() {
+        PseudoProject pseudoProject = new PseudoProject("frontend");
+
+        Assertions.assertThatThrownBy(() -> new PseudoProjectProvider(ROOT, List.of(pseudoProject), List.of()))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static PseudoProject pseudoProject(String name, String directory, Set<String> dependencies) {
+        PseudoProject pseudoProject = new PseudoProject(name);
+        pseudoProject.setDirectory(directory);
+        pseudoProject.setCommand(List.of("npm", "test"));
+        pseudoProject.setDependencies(dependencies);
+        return pseudoProject;
+    }
+}
@@ -0,0 +1,77 @@
+package io.github.mklueh.affected.providers;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+class TaskInputOwnershipIndexTest {
+
+    @TempDir
+    Path rootDir;
+
+    @Test
+    void indexesDirectoriesOnlyContainingInputs() throws IOException {
+        Path userProto = write("proto/v1/user.proto");
+        Path orderProto = write("proto/v2/order.proto");
+        Path checkstyle = write("config/checkstyle/checkstyle.xml");
+        write("config/checkstyle/README.md");
+        Path versions = write("libs/versions.txt");
+
+        Map<Path, Set<String>> inputs = Map.of(
+                userProto, Set.of(":app"),
+                orderProto, Set.of(":core"),
+                checkstyle, Set.of(":app"),
+                versions, Set.of(":core"));
+        List<Path> projectDirs = List.of(rootDir, rootDir.resolve("app"), rootDir.resolve("libs/core"));
+
+        Assertions.assertThat(TaskInputOwnershipIndex.findInputDirectories(inputs, projectDirs, List.of())).containsOnly(
+                Map.entry(rootDir.resolve("proto/v1"), Set.of(":app")),
+                Map.entry(rootDir.resolve("proto/v2"), Set.of(":core")),
+                Map.entry(rootDir.resolve("proto"), Set.of(":app", ":core")));
+    }
+
+    @Test
+    void findsTheOwnersOfInputFiles() {
+        TaskInputOwnershipIndex index = new TaskInputOwnershipIndex("key",
+                Map.of("config/checkstyle/checkstyle.xml", Set.of(":app"), "gradle.properties", Set.of(":core")), Map.of());
+
+        Assertions.assertThat(index.findOwners("config/checkstyle/checkstyle.xml")).containsExactly(":app");
+        Assertions.assertThat(index.findOwners("config/checkstyle/README.md")).isEmpty();
+        Assertions.assertThat(index.findOwners("gradle.properties")).containsExactly(":core");
+        Assertions.assertThat(index.findOwners("settings.gradle")).isEmpty();
+    }
+
+    @Test
+    void findsTheOwnersOfFilesAddedToAnInputDirectory() {
+        TaskInputOwnershipIndex index = new TaskInputOwnershipIndex("key",
+                Map.of("proto/v1/user.proto", Set.of(":app")),
+                Map.of("proto/v1", Set.of(":app"), "proto/v2", Set.of(":core"), "proto", Set.of(":app", ":core")));
+
+        Assertions.assertThat(index.findOwners("proto/v1/order.proto")).containsExactly(":app");
+        Assertions.assertThat(index.findOwners("proto/v3/order.proto")).containsExactlyInAnyOrder(":app", ":core");
+        Assertions.assertThat(index.findOwners("docker/Dockerfile")).isEmpty();
+    }
+
+    @Test
+    void findsTheInputsOfAProject() {
+        TaskInputOwnershipIndex index = new TaskInputOwnershipIndex("key",
+                Map.of("config/checkstyle/checkstyle.xml", Set.of(":app", ":core"), "gradle.properties", Set.of(":core")),
+                Map.of("proto/v1", Set.of(":app")));
+
+        Assertions.assertThat(index.findInputs(":app")).containsExactly("config/checkstyle/checkstyle.xml", "proto/v1");
+        Assertions.assertThat(index.findInputs(":other")).isEmpty();
+    }
+
+    private Path write(String path) throws IOException {
+        Path file = rootDir.resolve(path);
+        Files.createDirectories(file.getParent());
+        return Files.writeString(file, path);
+    }
+}
@@ -0,0 +1,73 @@
+package io.github.mklueh.affected.providers.catalog;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class VersionCatalogTest {
+
+    private static final String BASE = "[versions]\n" +
+            "jackson = \"2.14.0\"\n" +
+            "kotlin = { strictly = \"1.8.0\" } # rich version\n" +
+            "jvmTarget = \"11\"\n" +
+            "\n" +
+            "[libraries]\n" +
+            "jackson-databind = { module = \"com.fasterxml.jackson.core:jackson-databind\", version.ref = \"jackson\" }\n" +
+            "jackson_core = { group = \"com.fasterxml.jackson.core\", name = \"jackson-core\", version = { ref = \"jackson\" } }\n" +
+            "guava = \"com.google.guava:guava:31.1-jre\"\n" +
+            "junit = { module = \"org.junit.jupiter:junit-jupiter\", version = \"5.9.0\" }\n" +
+            "\n" +
+            "[bundles]\n" +
+            "jackson = [\n" +
+            "    \"jackson-databind\",\n" +
+            "    \"jackson.core\",\n" +
+            "]\n" +
+            "testing = [\"junit\"]\n" +
+            "\n" +
+            "[plugins]\n" +
+            "kotlin-jvm = { id = \"org.jetbrains.kotlin.jvm\", version.ref = \"kotlin\" }\n" +
+            "shadow = \"com.github.johnrengelman.shadow:7.1.2\"\n";
+
+    @Test
+    void sameCatalogHasNoChanges() {
+        Assertions.assertThat(VersionCatalog.parse(BASE).compareTo(VersionCatalog.parse(BASE)).isEmpty()).isTrue();
+    }
+
+    @Test
+    void versionRefChangeAffectsLibrariesAndBundles() {
+        VersionCatalogChanges changes = VersionCatalog.parse(BASE.replace("2.14.0", "2.15.0"))
+                .compareTo(VersionCatalog.parse(BASE));
+
+        Assertions.assertThat(changes.getLibraries()).containsExactly("jackson.core", "jackson.databind");
+        Assertions.assertThat(changes.getBundles()).containsExactly("jackson");
+        Assertions.assertThat(changes.getModules())
+                .containsExactly("com.fasterxml.jackson.core:jackson-core", "com.fasterxml.jackson.core:jackson-databind");
+        Assertions.assertThat(changes.getPlugins()).isEmpty();
+    }
+
+    @Test
+    void pluginAndBundleChanges() {
+        VersionCatalogChanges changes = VersionCatalog.parse(BASE
+                        .replace("strictly = \"1.8.0\"", "strictly = \"1.8.10\"")
+                        .replace("testing = [\"junit\"]", "testing = [\"junit\", \"guava\"]"))
+                .compareTo(VersionCatalog.parse(BASE));
+
+        Assertions.assertThat(changes.getPluginIds()).containsExactly("org.jetbrains.kotlin.jvm");
+        Assertions.assertThat(changes.getBundles()).containsExactly("testing");
+        Assertions.assertThat(changes.getModules()).containsExactly("com.google.guava:guava", "org.junit.jupiter:junit-jupiter");
+        Assertions.assertThat(changes.getLibraries()).isEmpty();
+    }
+
+    @Test
+    void unreferencedVersionChangeCanNotBeTraced() {
+        VersionCatalogChanges changes = VersionCatalog.parse(BASE.replace("jvmTarget = \"11\"", "jvmTarget = \"17\""))
+                .compareTo(VersionCatalog.parse(BASE));
+
+        Assertions.assertThat(changes.getUnreferencedVersions()).containsExactly("jvmTarget");
+    }
+
+    @Test
+    void invalidCatalogIsRejected() {
+        Assertions.assertThatIllegalArgumentException()
+                .isThrownBy(() -> VersionCatalog.parse("[libraries]\nguava = { module = \"com.google.guava:guava\""));
+    }
+}
@@ -0,0 +1,25 @@
+package io.github.mklueh.affected.providers.cosmetic;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class SourceNormalizerTest {
+
+    private static final String SOURCE = "/*\n * Copyright 2020\n */\npackage a;\n\nimport java.util.List;\nimport java.util.Map;\n\n"
+            + "class A {\n    String s = \"x  y\"; // note\n    int f(int a){return a+1;}\n}\n";
+
+    @Test
+    void ignoresWhitespaceCommentsAndImportOrder() {
+        String reformatted = "/*\n * Copyright 2021\n */\npackage a;\n\nimport java.util.Map;\nimport java.util.List;\n\n"
+                + "class A {\n    String s = \"x  y\";\n\n    int f(int a) {\n        return a + 1; /* one */\n    }\n}\n";
+
+        Assertions.assertThat(SourceNormalizer.isCosmeticChange(SOURCE, reformatted)).isTrue();
+    }
+
+    @Test
+    void detectsChangesInCodeAndLiterals() {
+        Assertions.assertThat(SourceNormalizer.isCosmeticChange(SOURCE, SOURCE.replace("a+1", "a+2"))).isFalse();
+        Assertions.assertThat(SourceNormalizer.isCosmeticChange(SOURCE, SOURCE.replace("\"x  y\"", "\"x y\""))).isFalse();
+        Assertions.assertThat(SourceNormalizer.isCosmeticChange(SOURCE, SOURCE.replace("import java.util.Map;\n", ""))).isFalse();
+    }
+}
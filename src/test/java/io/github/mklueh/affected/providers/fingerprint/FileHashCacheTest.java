@@ -0,0 +1,37 @@
+package io.github.mklueh.affected.providers.fingerprint;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+class FileHashCacheTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void hashesTheFileContent() throws IOException {
+        FileHashCache cache = new FileHashCache(directory.resolve("file-hashes.tsv").toFile());
+        Path first = Files.writeString(directory.resolve("first.txt"), "content");
+        Path second = Files.writeString(directory.resolve("second.txt"), "content");
+
+        Assertions.assertThat(cache.getHash(first)).isNotEmpty().isEqualTo(cache.getHash(second));
+    }
+
+    @Test
+    void skipsFilesDeletedSinceTheyWereFound() throws IOException {
+        FileHashCache cache = new FileHashCache(directory.resolve("file-hashes.tsv").toFile());
+        Path file = Files.writeString(directory.resolve("file.txt"), "content");
+        Assertions.assertThat(cache.getHash(file)).isNotEmpty();
+
+        Files.delete(file);
+
+        Assertions.assertThat(cache.getHash(file)).isEmpty();
+        cache.save();
+        Assertions.assertThat(directory.resolve("file-hashes.tsv")).hasContent("");
+    }
+}
@@ -0,0 +1,70 @@
+package io.github.mklueh.affected.providers.fingerprint;
+
+import io.github.mklueh.affected.configuration.AffectedConfiguration;
+import org.assertj.core.api.Assertions;
+import org.gradle.api.Project;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
+class FingerprintProviderTest {
+
+    @TempDir
+    Path rootDir;
+
+    private Project rootProject;
+    private Project app;
+    private Project lib;
+    private AffectedConfiguration configuration;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Files.createDirectories(rootDir.resolve("app"));
+        Files.createDirectories(rootDir.resolve("lib"));
+        Files.writeString(rootDir.resolve("app/App.java"), "class App {}");
+        Files.writeString(rootDir.resolve("lib/Lib.java"), "class Lib {}");
+
+        rootProject = ProjectBuilder.builder().withProjectDir(rootDir.toFile()).build();
+        app = ProjectBuilder.builder().withName("app").withParent(rootProject).withProjectDir(rootDir.resolve("app").toFile()).build();
+        lib = ProjectBuilder.builder().withName("lib").withParent(rootProject).withProjectDir(rootDir.resolve("lib").toFile()).build();
+        configuration = rootProject.getExtensions().create("affected", AffectedConfiguration.class);
+
+        new FingerprintProvider(rootProject, configuration).saveManifest(p -> true, p -> true);
+    }
+
+    @Test
+    void advancesTheFingerprintsOfSucceededProjects() throws IOException {
+        Files.writeString(rootDir.resolve("lib/Lib.java"), "class Lib { int changed; }");
+
+        FingerprintProvider provider = new FingerprintProvider(rootProject, configuration);
+        Assertions.assertThat(provider.getChangedProjects()).containsExactly(lib);
+        provider.saveManifest(Set.of(lib, app)::contains, p -> true);
+
+        Assertions.assertThat(new FingerprintProvider(rootProject, configuration).hasChanges()).isFalse();
+    }
+
+    @Test
+    void keepsTheFingerprintOfAFailedChangedProject() throws IOException {
+        Files.writeString(rootDir.resolve("lib/Lib.java"), "class Lib { int changed; }");
+
+        new FingerprintProvider(rootProject, configuration).saveManifest(lib::equals, p -> false);
+
+        Assertions.assertThat(new FingerprintProvider(rootProject, configuration).getChangedProjects()).containsExactly(lib);
+    }
+
+    @Test
+    void runsAFailedDependentAgain() throws IOException {
+        Files.writeString(rootDir.resolve("lib/Lib.java"), "class Lib { int changed; }");
+
+        //app only ran because lib changed, and failed
+        new FingerprintProvider(rootProject, configuration).saveManifest(Set.of(lib, app)::contains, lib::equals);
+
+        Assertions.assertThat(new FingerprintProvider(rootProject, configuration).getChangedProjects()).containsExactly(app);
+    }
+}
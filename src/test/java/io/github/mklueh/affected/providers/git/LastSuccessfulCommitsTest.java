@@ -0,0 +1,106 @@
+package io.github.mklueh.affected.providers.git;
+
+import org.assertj.core.api.Assertions;
+import org.gradle.api.logging.Logging;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+class LastSuccessfulCommitsTest {
+
+    private static final Optional<String> LAST_SUCCESS = Optional.of(LastSuccessfulCommits.LAST_SUCCESS);
+
+    @TempDir
+    Path repository;
+
+    private LastSuccessfulCommits lastSuccessfulCommits;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        git("init", "-q");
+        lastSuccessfulCommits = new LastSuccessfulCommits(repository.toFile(), repository.toFile(), Logging.getLogger(LastSuccessfulCommitsTest.class));
+    }
+
+    @Test
+    void resolvesTheNearestRecordedAncestor() throws Exception {
+        String first = commit("first");
+        git("checkout", "-q", "-B", "main");
+        String second = commit("second");
+        lastSuccessfulCommits.record(Optional.of(first), "test");
+
+        git("checkout", "-q", "-b", "feature");
+        String third = commit("third");
+        lastSuccessfulCommits.record(Optional.of(second), "test");
+
+        Assertions.assertThat(lastSuccessfulCommits.resolve(LAST_SUCCESS, Optional.of(third), "test")).contains(second);
+        Assertions.assertThat(lastSuccessfulCommits.resolve(LAST_SUCCESS, Optional.empty(), "test")).contains(second);
+    }
+
+    @Test
+    void ignoresCommitsThatAreNoAncestorOrOfAnotherTarget() throws Exception {
+        String first = commit("first");
+        git("checkout", "-q", "-B", "main");
+        lastSuccessfulCommits.record(Optional.of(first), "test");
+        String second = commit("second");
+
+        git("checkout", "-q", "-b", "feature");
+        String third = commit("third");
+        lastSuccessfulCommits.record(Optional.of(third), "test");
+        lastSuccessfulCommits.record(Optional.of(third), "javadoc");
+
+        Assertions.assertThat(lastSuccessfulCommits.resolve(LAST_SUCCESS, Optional.of(second), "test")).contains(first);
+        Assertions.assertThat(lastSuccessfulCommits.resolve(LAST_SUCCESS, Optional.of(second), "javadoc")).contains(LastSuccessfulCommits.EMPTY_TREE);
+    }
+
+    @Test
+    void recordsPerBranchAndTarget() throws Exception {
+        String first = commit("first");
+        git("checkout", "-q", "-B", "main");
+        lastSuccessfulCommits.record(Optional.empty(), "test");
+
+        String content = Files.readString(repository.resolve(LastSuccessfulCommits.DEFAULT_LOCATION), StandardCharsets.UTF_8);
+
+        Assertions.assertThat(content).contains("main@test=" + first);
+    }
+
+    @Test
+    void fallsBackToTheEmptyTreeWithoutRecordedCommits() throws Exception {
+        String first = commit("first");
+
+        Assertions.assertThat(lastSuccessfulCommits.resolve(LAST_SUCCESS, Optional.of(first), "test")).contains(LastSuccessfulCommits.EMPTY_TREE);
+    }
+
+    @Test
+    void keepsOtherPreviousCommits() {
+        Assertions.assertThat(lastSuccessfulCommits.resolve(Optional.of("origin/main"), Optional.empty(), "test")).contains("origin/main");
+        Assertions.assertThat(lastSuccessfulCommits.resolve(Optional.empty(), Optional.empty(), "test")).isEmpty();
+    }
+
+    private String commit(String name) throws Exception {
+        Files.writeString(repository.resolve(name + ".txt"), name);
+        git("add", ".");
+        git("-c", "user.name=test", "-c", "user.email=test@example.com", "commit", "-q", "-m", name);
+        return git("rev-parse", "HEAD");
+    }
+
+    private String git(String... args) throws IOException, InterruptedException {
+        String[] command = new String[args.length + 1];
+        command[0] = "git";
+        System.arraycopy(args, 0, command, 1, args.length);
+
+        Process process = new ProcessBuilder(command)
+                .directory(repository.toFile())
+                .redirectErrorStream(true)
+                .start();
+
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8).trim();
+        Assertions.assertThat(process.waitFor()).as(output).isZero();
+        return output;
+    }
+}
@@ -0,0 +1,16 @@
+package io.github.mklueh.affected.providers.git;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+class SparseCheckoutPatternsTest {
+
+    @Test
+    void removesDirectoriesInsideOtherDirectories() {
+        List<String> dirs = SparseCheckoutPatterns.toConeDirectories(List.of("libs/core", "libs", "libs-extra/api", "app/", "app/src", ""));
+
+        Assertions.assertThat(dirs).containsExactly("app", "libs", "libs-extra/api");
+    }
+}
@@ -0,0 +1,185 @@
+package io.github.mklueh.affected.providers.git;
+
+import org.assertj.core.api.Assertions;
+import org.gradle.api.logging.Logging;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+class SubmoduleChangesProviderTest {
+
+    @TempDir
+    Path directory;
+
+    private File main;
+    private File lib;
+    private File inner;
+    private SubmoduleChangesProvider provider;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        main = createRepository("main");
+        lib = createRepository("lib");
+        inner = createRepository("inner");
+        provider = new SubmoduleChangesProvider(main, Logging.getLogger(SubmoduleChangesProviderTest.class),
+                (dir, command) -> git(dir, command.substring("git ".length()).split(" ")));
+    }
+
+    @Test
+    void replacesABumpedSubmoduleByItsChangedFiles() throws Exception {
+        commit(lib, "a.txt", "first");
+        commit(main, "build.gradle", "root");
+        addSubmodule(main, lib, "libs/lib");
+        String before = commit(main, null, "add lib");
+
+        commit(lib, "a.txt", "second");
+        commit(lib, "b.txt", "second");
+        bumpSubmodule(main, "libs/lib");
+        String after = commit(main, null, "bump lib");
+
+        Assertions.assertThat(expand(before, after)).containsExactly("libs/lib/a.txt", "libs/lib/b.txt");
+    }
+
+    @Test
+    void listsEveryFileOfAnAddedSubmodule() throws Exception {
+        commit(lib, "a.txt", "first");
+        commit(lib, "b.txt", "first");
+        String before = commit(main, "build.gradle", "root");
+        addSubmodule(main, lib, "libs/lib");
+        String after = commit(main, null, "add lib");
+
+        Assertions.assertThat(expand(before, after)).containsExactly(".gitmodules", "libs/lib/a.txt", "libs/lib/b.txt");
+    }
+
+    @Test
+    void expandsNestedSubmodules() throws Exception {
+        commit(inner, "x.txt", "first");
+        commit(lib, "a.txt", "first");
+        addSubmodule(lib, inner, "deps/inner");
+        commit(lib, null, "add inner");
+        commit(main, "build.gradle", "root");
+        addSubmodule(main, lib, "libs/lib");
+        git(main, "-c", "protocol.file.allow=always", "submodule", "update", "-q", "--init", "--recursive");
+        String before = commit(main, null, "add lib");
+
+        commit(inner, "x.txt", "second");
+        bumpSubmodule(new File(main, "libs/lib"), "deps/inner");
+        commit(new File(main, "libs/lib"), "a.txt", "second");
+        git(main, "add", "libs/lib");
+        String after = commit(main, null, "bump lib");
+
+        Assertions.assertThat(expand(before, after)).containsExactly("libs/lib/a.txt", "libs/lib/deps/inner/x.txt");
+    }
+
+    @Test
+    void keepsTheSubmodulePathIfACommitIsUnreachable() throws Exception {
+        commit(lib, "a.txt", "first");
+        commit(main, "build.gradle", "root");
+        addSubmodule(main, lib, "libs/lib");
+        String before = commit(main, null, "add lib");
+
+        File checkout = new File(main, "libs/lib");
+        String fetched = git(checkout, "rev-parse", "HEAD").get(0);
+        commit(checkout, "a.txt", "second");
+        git(main, "add", "libs/lib");
+        String after = commit(main, null, "bump lib");
+
+        //the new commit of the submodule is lost, like a commit that has not been fetched
+        git(checkout, "checkout", "-q", fetched);
+        git(checkout, "reflog", "expire", "--expire=now", "--all");
+        git(checkout, "branch", "-q", "-D", "master");
+        git(checkout, "gc", "-q", "--prune=now");
+
+        Assertions.assertThat(expand(before, after)).containsExactly("libs/lib");
+    }
+
+    @Test
+    void keepsChangesWithoutSubmodules() throws Exception {
+        String before = commit(main, "build.gradle", "root");
+        String after = commit(main, "settings.gradle", "settings");
+
+        Assertions.assertThat(expand(before, after)).containsExactly("settings.gradle");
+    }
+
+    @Test
+    void parsesRawDiffLines() {
+        SubmoduleChangesProvider.RawChange change = SubmoduleChangesProvider.RawChange.parse(
+                ":160000 160000 1111111111111111111111111111111111111111 2222222222222222222222222222222222222222 M\tlibs/lib");
+        SubmoduleChangesProvider.RawChange rename = SubmoduleChangesProvider.RawChange.parse(
+                ":100644 100644 1111111111111111111111111111111111111111 2222222222222222222222222222222222222222 R100\told.txt\tnew.txt");
+
+        Assertions.assertThat(change.isGitlink()).isTrue();
+        Assertions.assertThat(change.oldCommit).isEqualTo("1111111111111111111111111111111111111111");
+        Assertions.assertThat(change.newCommit).isEqualTo("2222222222222222222222222222222222222222");
+        Assertions.assertThat(change.path).isEqualTo("libs/lib");
+        Assertions.assertThat(rename.isGitlink()).isFalse();
+        Assertions.assertThat(rename.path).isEqualTo("new.txt");
+        Assertions.assertThat(SubmoduleChangesProvider.RawChange.parse("libs/lib")).isNull();
+    }
+
+    private List<String> expand(String before, String after) throws Exception {
+        String diffCommand = String.format("git diff --name-only %s %s", before, after);
+        return provider.expand(git(main, diffCommand.substring("git ".length()).split(" ")), diffCommand);
+    }
+
+    private File createRepository(String name) throws Exception {
+        File repository = Files.createDirectories(directory.resolve(name)).toFile();
+        git(repository, "init", "-q", "-b", "master");
+        return repository;
+    }
+
+    private void addSubmodule(File repository, File submodule, String path) throws Exception {
+        git(repository, "-c", "protocol.file.allow=always", "submodule", "add", "-q", submodule.getAbsolutePath(), path);
+    }
+
+    /**
+     * Stages the latest commit of the submodule's origin
+     */
+    private void bumpSubmodule(File repository, String path) throws Exception {
+        File checkout = new File(repository, path);
+        git(checkout, "fetch", "-q", "origin", "master");
+        git(checkout, "checkout", "-q", "FETCH_HEAD");
+        git(repository, "add", path);
+    }
+
+    /**
+     * Commits the staged changes, after writing the file if one is given
+     */
+    private String commit(File repository, String file, String content) throws Exception {
+        if (file != null) {
+            Files.writeString(repository.toPath().resolve(file), content);
+            git(repository, "add", file);
+        }
+        git(repository, "-c", "user.name=test", "-c", "user.email=test@example.com", "commit", "-q", "--allow-empty", "-m", content);
+        return git(repository, "rev-parse", "HEAD").get(0);
+    }
+
+    private static List<String> git(File repository, String... args) {
+        String[] command = new String[args.length + 1];
+        command[0] = "git";
+        System.arraycopy(args, 0, command, 1, args.length);
+
+        try {
+            Process process = new ProcessBuilder(command)
+                    .directory(repository)
+                    .redirectErrorStream(true)
+                    .start();
+
+            String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8).trim();
+            if (process.waitFor() != 0) {
+                throw new IllegalStateException(String.join(" ", command) + " failed: " + output);
+            }
+            return output.isEmpty() ? List.of() : Arrays.asList(output.split("\n"));
+        } catch (IOException | InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package io.github.mklueh.affected.replay;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+class ReplayReportTest {
+
+    @Test
+    void usesTheNearestRankAsPercentile() {
+        List<Long> sorted = List.of(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L);
+
+        Assertions.assertThat(ReplayReport.percentile(sorted, 50)).isEqualTo(5);
+        Assertions.assertThat(ReplayReport.percentile(sorted, 90)).isEqualTo(9);
+        Assertions.assertThat(ReplayReport.percentile(sorted, 99)).isEqualTo(10);
+        Assertions.assertThat(ReplayReport.percentile(List.of(7L), 50)).isEqualTo(7);
+    }
+
+    @Test
+    void summarizesCommitsAndQuotesCsvFields() {
+        ReplayReport report = new ReplayReport(10, 5);
+        report.add(new ReplayedCommit("a1", 3, 1, 2, 3, false, null, null, 4, 1));
+        report.add(new ReplayedCommit("b2", 1, 0, 0, 10, true, "gradle/a,b.gradle", "gradle/.*", 2, 3));
+
+        Assertions.assertThat(report.getPercentiles(ReplayedCommit::getAffectedProjects)).isEqualTo(Map.of("p50", 3L, "p90", 10L, "p99", 10L, "max", 10L));
+        Assertions.assertThat(report.getAffectsAllPatterns()).isEqualTo(Map.of("gradle/.*", 1));
+        Assertions.assertThat(report.toCsv().split("\n")).containsExactly(
+                "commit,changedFiles,directlyAffectedProjects,dependentAffectedProjects,affectedProjects,affectsAll,affectsAllCause,affectsAllPattern,gitMillis,computeMillis",
+                "a1,3,1,2,3,false,,,4,1",
+                "b2,1,0,0,10,true,\"gradle/a,b.gradle\",gradle/.*,2,3");
+    }
+}
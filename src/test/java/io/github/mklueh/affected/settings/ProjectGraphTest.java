@@ -0,0 +1,57 @@
+package io.github.mklueh.affected.settings;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+
+class ProjectGraphTest {
+
+    @TempDir
+    Path rootDir;
+
+    @Test
+    void savedGraphCanBeLoaded() throws IOException {
+        File app = createProject("app");
+        File lib = createProject("lib");
+        File graphFile = rootDir.resolve(ProjectGraph.DEFAULT_LOCATION).toFile();
+
+        new ProjectGraph(
+                Map.of(":app", "app", ":lib", "lib"),
+                Map.of(":app", Set.of(":lib"), ":lib", Set.of()),
+                Map.of(":app", ProjectGraph.hashBuildScripts(app), ":lib", ProjectGraph.hashBuildScripts(lib)),
+                Set.of("build-logic", "../shared"))
+                .save(graphFile);
+
+        ProjectGraph graph = ProjectGraph.load(graphFile).orElseThrow();
+
+        Assertions.assertThat(graph.getDependencies(":app")).containsExactly(":lib");
+        Assertions.assertThat(graph.getDependents()).containsEntry(":lib", Set.of(":app"));
+        Assertions.assertThat(graph.getIncludedBuildDirs()).containsExactlyInAnyOrder("build-logic", "../shared");
+        Assertions.assertThat(graph.isStale(rootDir, Map.of(":app", app, ":lib", lib))).isFalse();
+    }
+
+    @Test
+    void changedBuildScriptOrUnknownProjectMakesGraphStale() throws IOException {
+        File app = createProject("app");
+        ProjectGraph graph = new ProjectGraph(Map.of(":app", "app"), Map.of(":app", Set.of()),
+                Map.of(":app", ProjectGraph.hashBuildScripts(app)));
+
+        Assertions.assertThat(graph.isStale(rootDir, Map.of(":other", createProject("other")))).isTrue();
+
+        Files.writeString(app.toPath().resolve("build.gradle"), "dependencies { implementation project(':lib') }");
+        Assertions.assertThat(graph.isStale(rootDir, Map.of(":app", app))).isTrue();
+    }
+
+    private File createProject(String name) throws IOException {
+        Path dir = Files.createDirectories(rootDir.resolve(name));
+        Files.writeString(dir.resolve("build.gradle"), "plugins { id 'java' }");
+        return dir.toFile();
+    }
+}
@@ -0,0 +1,52 @@
+package io.github.mklueh.affected.testselection;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+class ClassFileReaderTest {
+
+    @Test
+    void readsClassNameAndReferencedClasses() throws IOException {
+        ClassFileReader reader = ClassFileReader.read(readClassFile(Fixture.class));
+
+        Assertions.assertThat(reader.getClassName()).isEqualTo(Fixture.class.getName());
+        Assertions.assertThat(reader.getReferences())
+                .contains(Map.class.getName(), List.class.getName(), ClassDependencyIndex.class.getName(), Deprecated.class.getName())
+                .doesNotContain(Fixture.class.getName());
+    }
+
+    @Test
+    void selectsTestsReferencingChangedClassesTransitively() {
+        Map<String, Set<String>> references = Map.of(
+                "app.ServiceTest", Set.of("app.Service"),
+                "app.Service", Set.of("lib.Repository"),
+                "app.OtherTest", Set.of("app.Other"));
+
+        Assertions.assertThat(ClassDependencyIndex.selectTests(references, Set.of("lib.Repository"), Set.of("app.ServiceTest", "app.OtherTest")))
+                .containsExactly("app.ServiceTest");
+        Assertions.assertThat(ClassDependencyIndex.selectTests(references, Set.of("app.OtherTest"), Set.of("app.ServiceTest", "app.OtherTest")))
+                .containsExactly("app.OtherTest");
+    }
+
+    private static byte[] readClassFile(Class<?> type) throws IOException {
+        try (InputStream input = type.getResourceAsStream("/" + type.getName().replace('.', '/') + ".class")) {
+            return input.readAllBytes();
+        }
+    }
+
+    @SuppressWarnings("unused")
+    static class Fixture {
+
+        private Map<String, List<ClassDependencyIndex>> indexes;
+
+        @Deprecated
+        void annotated() {
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package io.github.mklueh.affected.utils;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+class JsonWriterTest {
+
+    @Test
+    void writesNestedValues() {
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("path", ":app");
+        entry.put("cause", null);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("affectsAll", false);
+        result.put("count", 1);
+        result.put("projects", Arrays.asList(entry));
+        result.put("empty", Collections.emptyList());
+
+        Assertions.assertThat(JsonWriter.toJson(result)).isEqualTo("{\n" +
+                "  \"affectsAll\": false,\n" +
+                "  \"count\": 1,\n" +
+                "  \"projects\": [\n" +
+                "    {\n" +
+                "      \"path\": \":app\",\n" +
+                "      \"cause\": null\n" +
+                "    }\n" +
+                "  ],\n" +
+                "  \"empty\": []\n" +
+                "}");
+    }
+
+    @Test
+    void escapesStrings() {
+        Assertions.assertThat(JsonWriter.toJson("a\"b\\c\nd\u0001"))
+                .isEqualTo("\"a\\\"b\\\\c\\nd\\u0001\"");
+    }
+}
@@ -0,0 +1,29 @@
+package io.github.mklueh.affected.utils;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class PathTrieTest {
+
+    @Test
+    void findsValuesOfPathAndParentDirectories() {
+        PathTrie<String> trie = new PathTrie<>();
+        trie.put("config/checkstyle", ":app");
+        trie.put("config/checkstyle/checkstyle.xml", ":lib");
+        trie.put("proto/api.proto", ":api");
+
+        Assertions.assertThat(trie.find("config/checkstyle/checkstyle.xml")).containsExactlyInAnyOrder(":app", ":lib");
+        Assertions.assertThat(trie.find("config/checkstyle/suppressions.xml")).containsExactly(":app");
+        Assertions.assertThat(trie.find("proto/api.proto")).containsExactly(":api");
+    }
+
+    @Test
+    void findsNothingForSiblingsAndParentsOfStoredPaths() {
+        PathTrie<String> trie = new PathTrie<>();
+        trie.put("proto/api.proto", ":api");
+
+        Assertions.assertThat(trie.find("proto/other.proto")).isEmpty();
+        Assertions.assertThat(trie.find("proto")).isEmpty();
+        Assertions.assertThat(trie.find("docker/Dockerfile")).isEmpty();
+    }
+}